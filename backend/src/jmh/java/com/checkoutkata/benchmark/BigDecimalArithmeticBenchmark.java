@@ -0,0 +1,82 @@
+package com.checkoutkata.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Cost of the arithmetic behind one offer line: groups times offer price plus
+ * remainder times unit price, summed over 100 lines.
+ * The long variant works in pence and is the baseline for the BigDecimal variants.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BigDecimalArithmeticBenchmark {
+
+    private static final int LINES = 100;
+
+    private final int[] quantities = new int[LINES];
+    private final int[] offerQuantities = new int[LINES];
+    private final BigDecimal[] unitPrices = new BigDecimal[LINES];
+    private final BigDecimal[] offerPrices = new BigDecimal[LINES];
+    private final long[] unitPence = new long[LINES];
+    private final long[] offerPence = new long[LINES];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < LINES; i++) {
+            quantities[i] = 1 + i % 7;
+            offerQuantities[i] = 2 + i % 3;
+            unitPence[i] = 10 + (i * 37L) % 990;
+            offerPence[i] = unitPence[i] * offerQuantities[i] - 5;
+            unitPrices[i] = BigDecimal.valueOf(unitPence[i], 2);
+            offerPrices[i] = BigDecimal.valueOf(offerPence[i], 2);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalValueOfMultiplyAdd() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < LINES; i++) {
+            int groups = quantities[i] / offerQuantities[i];
+            int remainder = quantities[i] % offerQuantities[i];
+            total = total.add(BigDecimal.valueOf(groups).multiply(offerPrices[i])
+                    .add(BigDecimal.valueOf(remainder).multiply(unitPrices[i])));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalStreamReduce() {
+        return IntStream.range(0, LINES)
+                .mapToObj(i -> BigDecimal.valueOf(quantities[i] / offerQuantities[i]).multiply(offerPrices[i])
+                        .add(BigDecimal.valueOf(quantities[i] % offerQuantities[i]).multiply(unitPrices[i])))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public long longMinorUnits() {
+        long total = 0;
+        for (int i = 0; i < LINES; i++) {
+            int groups = quantities[i] / offerQuantities[i];
+            int remainder = quantities[i] % offerQuantities[i];
+            total += groups * offerPence[i] + remainder * unitPence[i];
+        }
+        return total;
+    }
+}
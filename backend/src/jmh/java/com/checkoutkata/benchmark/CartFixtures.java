@@ -0,0 +1,88 @@
+package com.checkoutkata.benchmark;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.repository.ItemPriceVersionRepository;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OfferRepository;
+import com.checkoutkata.repository.OfferVersionRepository;
+import com.checkoutkata.service.CatalogHistory;
+import com.checkoutkata.service.OfferSolver;
+import com.checkoutkata.service.HotPathMetrics;
+import com.checkoutkata.service.PricingEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Deterministic catalogs and carts shared by the pricing benchmarks.
+ */
+final class CartFixtures {
+
+    private CartFixtures() {
+    }
+
+    /**
+     * Creates items with ids 1..count and prices between 0.10 and 9.99.
+     */
+    static List<Item> items(int count) {
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Item item = new Item("Item " + i, BigDecimal.valueOf(10 + (i * 37L) % 990, 2));
+            item.setId((long) i);
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Creates an "N for X" offer for every other item, with N between 2 and 4
+     * and X a little below N times the unit price.
+     */
+    static List<Offer> offers(List<Item> items) {
+        List<Offer> offers = new ArrayList<>(items.size() / 2 + 1);
+        for (int i = 0; i < items.size(); i += 2) {
+            Item item = items.get(i);
+            int quantity = 2 + i % 3;
+            BigDecimal price = item.getUnitPrice()
+                    .multiply(BigDecimal.valueOf(quantity))
+                    .subtract(BigDecimal.valueOf(5, 2));
+            offers.add(new Offer(item, quantity, price.max(BigDecimal.ZERO)));
+        }
+        return offers;
+    }
+
+    /**
+     * Creates one cart line per item with quantities between 1 and 7.
+     */
+    static List<CartItem> cart(List<Item> items) {
+        List<CartItem> lines = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            lines.add(new CartItem("benchmark", items.get(i), 1 + i % 7));
+        }
+        return lines;
+    }
+
+    /**
+     * Creates a pricing engine whose catalog is loaded from the given items and offers.
+     */
+    static PricingEngine pricingEngine(List<Item> items, List<Offer> offers) {
+        ItemRepository itemRepository = mock(ItemRepository.class);
+        OfferRepository offerRepository = mock(OfferRepository.class);
+        when(itemRepository.findAll()).thenReturn(items);
+        when(offerRepository.findAllWithBundleItems()).thenReturn(offers);
+        PricingEngine pricingEngine = new PricingEngine(itemRepository, offerRepository, new OfferSolver(Duration.ofMillis(2)),
+                new HotPathMetrics(new SimpleMeterRegistry(), 1.0), new CatalogHistory(mock(ItemPriceVersionRepository.class),
+                mock(OfferVersionRepository.class), mock(PlatformTransactionManager.class)));
+        pricingEngine.getCatalog();
+        return pricingEngine;
+    }
+}
@@ -0,0 +1,56 @@
+package com.checkoutkata.benchmark;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.service.PricingEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prices carts of 1, 100 and 10,000 distinct lines against the in-memory catalog,
+ * with and without offers on the items.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CartPricingBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int lines;
+
+    @Param({"false", "true"})
+    private boolean withOffers;
+
+    private PricingEngine pricingEngine;
+    private List<CartItem> cart;
+
+    @Setup
+    public void setUp() {
+        List<Item> items = CartFixtures.items(lines);
+        List<Offer> offers = withOffers ? CartFixtures.offers(items) : List.of();
+        pricingEngine = CartFixtures.pricingEngine(items, offers);
+        cart = CartFixtures.cart(items);
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotal() {
+        return pricingEngine.calculateTotal(cart);
+    }
+}
@@ -0,0 +1,93 @@
+package com.checkoutkata.benchmark;
+
+import com.checkoutkata.CheckoutKataApplication;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.dto.ScanRequest;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OfferRepository;
+import com.checkoutkata.service.CartService;
+import com.checkoutkata.service.PricingEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full service path against the embedded H2 database: Spring transactions,
+ * JPA repositories and pricing, without the HTTP layer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CartServiceBenchmark {
+
+    private static final String CART_ID = "benchmark";
+
+    @Param({"1", "100", "1000"})
+    private int lines;
+
+    private ConfigurableApplicationContext context;
+    private CartService cartService;
+    private PricingEngine pricingEngine;
+    private Long scannedItemId;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(CheckoutKataApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark_" + lines);
+        cartService = context.getBean(CartService.class);
+        pricingEngine = context.getBean(PricingEngine.class);
+
+        List<Item> items = context.getBean(ItemRepository.class).saveAll(CartFixtures.items(lines).stream()
+                .map(item -> new Item(item.getName(), item.getUnitPrice()))
+                .toList());
+        List<Offer> offers = CartFixtures.offers(items);
+        context.getBean(OfferRepository.class).saveAll(offers);
+        pricingEngine.invalidate();
+
+        cartService.addToCart(CART_ID, items.stream()
+                .map(item -> new ScanRequest(item.getId(), 1 + (int) (item.getId() % 7)))
+                .toList());
+        scannedItemId = items.get(0).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotal() {
+        return cartService.calculateTotal(CART_ID);
+    }
+
+    @Benchmark
+    public BigDecimal repriceFromDatabase() {
+        return pricingEngine.calculateTotal(cartService.getCartContents(CART_ID));
+    }
+
+    @Benchmark
+    public Object scanItem() {
+        return cartService.addToCart(CART_ID, scannedItemId);
+    }
+}
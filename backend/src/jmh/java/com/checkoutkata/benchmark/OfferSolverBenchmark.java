@@ -0,0 +1,113 @@
+package com.checkoutkata.benchmark;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.domain.OfferType;
+import com.checkoutkata.service.OfferSolver;
+import com.checkoutkata.service.PriceCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prices 200 bundled cart lines against offer sets built to defeat greedy selection:
+ * <ul>
+ *     <li>chain: every item shares a bundle with its neighbour, so all lines form one group</li>
+ *     <li>overlapping: every item sits in several bundles of three with tiered single-item offers</li>
+ *     <li>disjoint: independent pairs, the easy case for comparison</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OfferSolverBenchmark {
+
+    private static final int LINES = 200;
+
+    @Param({"chain", "overlapping", "disjoint"})
+    private String offerSet;
+
+    /** The configured budget, and a generous one showing the cost of solving to the optimum. */
+    @Param({"2", "50"})
+    private long budgetMillis;
+
+    private PriceCatalog catalog;
+    private OfferSolver solver;
+    private Map<Long, Integer> quantities;
+
+    @Setup
+    public void setUp() {
+        List<Item> items = CartFixtures.items(LINES);
+        List<Offer> offers = new ArrayList<>();
+        quantities = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            quantities.put(item.getId(), 1 + i % 4);
+            switch (offerSet) {
+                case "chain" -> {
+                    if (i + 1 < items.size()) {
+                        offers.add(bundle(item, List.of(items.get(i + 1)), 5 + i % 7));
+                    }
+                }
+                case "overlapping" -> {
+                    for (int step = 1; step <= 3; step++) {
+                        offers.add(bundle(item, List.of(items.get((i + step) % LINES),
+                                items.get((i + 2 * step) % LINES)), 3 + (i + step) % 9));
+                    }
+                    offers.add(new Offer(item, 2, item.getUnitPrice().multiply(BigDecimal.valueOf(2))
+                            .subtract(BigDecimal.valueOf(3, 2)).max(BigDecimal.ZERO)));
+                }
+                default -> {
+                    if (i % 2 == 0) {
+                        offers.add(bundle(item, List.of(items.get(i + 1)), 5 + i % 7));
+                    }
+                }
+            }
+        }
+        catalog = PriceCatalog.of(items, offers);
+        solver = new OfferSolver(Duration.ofMillis(budgetMillis));
+    }
+
+    @Benchmark
+    public long solve() {
+        return solver.solve(catalog, quantities);
+    }
+
+    @Benchmark
+    public long greedy() {
+        return solver.greedy(catalog, quantities);
+    }
+
+    /**
+     * Creates a bundle priced a few cents below the sum of its unit prices.
+     */
+    private static Offer bundle(Item item, List<Item> others, int centsOff) {
+        BigDecimal listPrice = item.getUnitPrice();
+        for (Item other : others) {
+            listPrice = listPrice.add(other.getUnitPrice());
+        }
+        Offer offer = new Offer(OfferType.BUNDLE, item, 1,
+                listPrice.subtract(BigDecimal.valueOf(centsOff, 2)).max(BigDecimal.ZERO));
+        offer.setBundleItems(others);
+        return offer;
+    }
+}
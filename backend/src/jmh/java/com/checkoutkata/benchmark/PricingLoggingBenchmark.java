@@ -0,0 +1,112 @@
+package com.checkoutkata.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.service.PricingEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of pricing a 100-line cart with offers under two logging setups:
+ * <ul>
+ *     <li>{@code SYNC_PER_LINE}: the previous setup, every priced line logged and written
+ *     to a file on the calling thread</li>
+ *     <li>{@code ASYNC_GUARDED}: the current setup, per-line events at disabled DEBUG and
+ *     the remaining output handed to an async appender</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PricingLoggingBenchmark {
+
+    public enum Logging { SYNC_PER_LINE, ASYNC_GUARDED }
+
+    private static final String PATTERN = "%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5level %pid --- [%thread] %-40.40logger{39} : %msg%n";
+
+    @Param({"SYNC_PER_LINE", "ASYNC_GUARDED"})
+    private Logging logging;
+
+    private PricingEngine pricingEngine;
+    private List<CartItem> cart;
+    private Logger logger;
+    private Appender<ILoggingEvent> appender;
+    private File logFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Item> items = CartFixtures.items(100);
+        pricingEngine = CartFixtures.pricingEngine(items, CartFixtures.offers(items));
+        cart = CartFixtures.cart(items);
+
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        logFile = File.createTempFile("pricing-logging", ".log");
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        FileAppender<ILoggingEvent> file = new FileAppender<>();
+        file.setContext(context);
+        file.setFile(logFile.getPath());
+        file.setEncoder(encoder);
+        file.start();
+
+        if (logging == Logging.SYNC_PER_LINE) {
+            appender = file;
+        } else {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.addAppender(file);
+            async.start();
+            appender = async;
+        }
+        logger = context.getLogger("com.checkoutkata");
+        logger.setAdditive(false);
+        logger.setLevel(logging == Logging.SYNC_PER_LINE ? Level.DEBUG : Level.INFO);
+        logger.addAppender(appender);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        logger.detachAppender(appender);
+        appender.stop();
+        logger.setLevel(null);
+        logger.setAdditive(true);
+        Files.deleteIfExists(logFile.toPath());
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotal() {
+        return pricingEngine.calculateTotal(cart);
+    }
+}
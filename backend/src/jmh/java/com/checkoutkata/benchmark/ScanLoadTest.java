@@ -0,0 +1,198 @@
+package com.checkoutkata.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * HTTP load test of a running application: many tills scanning items into
+ * their own carts at the same time, each sending its next request as soon as
+ * the previous one is answered.
+ * <p>
+ * Run it once against the application started with
+ * {@code spring.threads.virtual.enabled=false} and once with {@code true} to
+ * compare platform and virtual request threads. It reports throughput, latency
+ * percentiles and the live thread count of the server, sampled through the
+ * actuator metrics endpoint.
+ * <p>
+ * Arguments: base URL, number of clients, duration in seconds. The first sixth
+ * of the run ramps the clients up and is not measured.
+ */
+public class ScanLoadTest {
+
+    /** Scans before a till clears its cart and starts the next customer. */
+    private static final int SCANS_PER_CART = 50;
+    /** Latencies are recorded in buckets of this many microseconds. */
+    private static final int BUCKET_MICROS = 100;
+    private static final int BUCKETS = 600_000;
+
+    private final URI baseUri;
+    private final int clients;
+    private final long measureFrom;
+    private final long end;
+    private final HttpClient http;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong maxThreads = new AtomicLong();
+    private long[] itemIds;
+
+    private ScanLoadTest(URI baseUri, int clients, Duration duration, ExecutorService executor) {
+        this.baseUri = baseUri;
+        this.clients = clients;
+        long start = System.nanoTime();
+        this.measureFrom = start + duration.toNanos() / 6;
+        this.end = start + duration.toNanos();
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(executor)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI baseUri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080");
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 60);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        try {
+            new ScanLoadTest(baseUri, clients, duration, executor).run(scheduler);
+        } finally {
+            scheduler.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+
+    private void run(ScheduledExecutorService scheduler) throws Exception {
+        itemIds = loadItemIds();
+        if (itemIds.length == 0) {
+            throw new IllegalStateException("No items to scan at " + baseUri);
+        }
+        System.out.printf("Scanning %d items with %d clients against %s%n", itemIds.length, clients, baseUri);
+
+        scheduler.scheduleAtFixedRate(this::sampleThreads, 0, 1, TimeUnit.SECONDS);
+        List<CompletableFuture<Void>> tills = new ArrayList<>(clients);
+        long rampUpNanos = measureFrom - System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            tills.add(done);
+            String cartId = "load-" + i;
+            scheduler.schedule(() -> scan(cartId, 0, done), rampUpNanos * i / clients, TimeUnit.NANOSECONDS);
+        }
+        CompletableFuture.allOf(tills.toArray(CompletableFuture[]::new)).join();
+        sampleThreads();
+        report();
+    }
+
+    /**
+     * Sends the next request of a till and chains the one after it on completion.
+     */
+    private void scan(String cartId, int scanned, CompletableFuture<Void> done) {
+        if (System.nanoTime() >= end) {
+            done.complete(null);
+            return;
+        }
+        HttpRequest request;
+        if (scanned == SCANS_PER_CART) {
+            request = HttpRequest.newBuilder(baseUri.resolve("/cart/" + cartId)).DELETE().build();
+        } else {
+            long itemId = itemIds[ThreadLocalRandom.current().nextInt(itemIds.length)];
+            request = HttpRequest.newBuilder(baseUri.resolve("/cart/" + cartId + "/scan/" + itemId))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+        }
+        long start = System.nanoTime();
+        http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            record(start, error == null && response.statusCode() < 400);
+            scan(cartId, scanned == SCANS_PER_CART ? 0 : scanned + 1, done);
+        });
+    }
+
+    private void record(long start, boolean ok) {
+        if (start < measureFrom) {
+            return;
+        }
+        requests.incrementAndGet();
+        if (!ok) {
+            errors.incrementAndGet();
+        }
+        long micros = (System.nanoTime() - start) / 1000;
+        latencies.incrementAndGet((int) Math.min(micros / BUCKET_MICROS, BUCKETS - 1));
+    }
+
+    private long[] loadItemIds() throws IOException, InterruptedException {
+        List<Long> ids = new ArrayList<>();
+        Long after = null;
+        do {
+            String query = "/items?limit=1000" + (after == null ? "" : "&after=" + after);
+            JsonNode page = objectMapper.readTree(get(query));
+            page.get("content").forEach(item -> ids.add(item.get("id").asLong()));
+            after = page.hasNonNull("nextCursor") ? page.get("nextCursor").asLong() : null;
+        } while (after != null);
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private void sampleThreads() {
+        try {
+            JsonNode metric = objectMapper.readTree(get("/actuator/metrics/jvm.threads.live"));
+            long live = metric.get("measurements").get(0).get("value").asLong();
+            maxThreads.accumulateAndGet(live, Math::max);
+        } catch (IOException e) {
+            // The server is too busy to answer, the next sample will tell
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(path)).timeout(Duration.ofSeconds(30)).build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("GET " + path + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private void report() {
+        long count = requests.get();
+        double seconds = (end - measureFrom) / 1e9;
+        System.out.printf("Requests:      %d (%d failed)%n", count, errors.get());
+        System.out.printf("Throughput:    %.0f requests/s%n", count / seconds);
+        System.out.printf("Latency p50:   %.1f ms%n", percentile(count, 0.50));
+        System.out.printf("Latency p99:   %.1f ms%n", percentile(count, 0.99));
+        System.out.printf("Latency p99.9: %.1f ms%n", percentile(count, 0.999));
+        System.out.printf("Server threads (max live): %d%n", maxThreads.get());
+    }
+
+    private double percentile(long count, double fraction) {
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += latencies.get(bucket);
+            if (seen >= rank && seen > 0) {
+                return (bucket + 1) * BUCKET_MICROS / 1000.0;
+            }
+        }
+        return 0;
+    }
+}
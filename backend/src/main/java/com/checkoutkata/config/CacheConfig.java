@@ -0,0 +1,42 @@
+package com.checkoutkata.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the read-through catalog cache.
+ * Items are cached by id in a bounded Caffeine cache with statistics enabled, so
+ * hits, misses and evictions are published as cache metrics by the actuator.
+ * The cache is transaction aware: evictions made by a mutation are applied after
+ * it commits, so a concurrent reader cannot re-cache the old row in between.
+ * Setting {@code catalog.cache.enabled=false} replaces it with a no-op cache.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String ITEMS_CACHE = "items";
+
+    private static final Logger log = LoggerFactory.getLogger(CacheConfig.class);
+
+    @Bean
+    public CacheManager cacheManager(@Value("${catalog.cache.enabled:true}") boolean enabled,
+                                     @Value("${catalog.cache.spec:maximumSize=10000,recordStats}") String spec) {
+        if (!enabled) {
+            log.info("Catalog cache disabled");
+            return new NoOpCacheManager();
+        }
+        CaffeineCacheManager caffeine = new CaffeineCacheManager(ITEMS_CACHE);
+        caffeine.setCacheSpecification(spec);
+        log.info("Catalog cache enabled with spec: {}", spec);
+        return new TransactionAwareCacheManagerProxy(caffeine);
+    }
+}
@@ -1,42 +1,56 @@
 package com.checkoutkata.config;
 
-import com.checkoutkata.controller.CartController;
-import com.checkoutkata.domain.Item;
-import com.checkoutkata.domain.Offer;
-import com.checkoutkata.repository.ItemRepository;
-import com.checkoutkata.repository.OfferRepository;
+import com.checkoutkata.service.CatalogImportService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.InputStream;
 
+/**
+ * Loads the catalog at startup through the bulk import pipeline.
+ * The item and offer files are configured with catalog.import.items and
+ * catalog.import.offers; an empty location skips that file.
+ */
 @Component
 public class DataLoader implements CommandLineRunner {
 
-    private static final Logger logger = LoggerFactory.getLogger(CartController.class);
+    private static final Logger logger = LoggerFactory.getLogger(DataLoader.class);
 
-    private final ItemRepository itemRepository;
-    private final OfferRepository offerRepository;
+    private final CatalogImportService catalogImportService;
+    private final ResourceLoader resourceLoader;
+    private final String itemsLocation;
+    private final String offersLocation;
 
-    public DataLoader(ItemRepository itemRepository, OfferRepository offerRepository1) {
-        this.itemRepository = itemRepository;
-        this.offerRepository = offerRepository1;
+    public DataLoader(CatalogImportService catalogImportService, ResourceLoader resourceLoader,
+                      @Value("${catalog.import.items:}") String itemsLocation,
+                      @Value("${catalog.import.offers:}") String offersLocation) {
+        this.catalogImportService = catalogImportService;
+        this.resourceLoader = resourceLoader;
+        this.itemsLocation = itemsLocation;
+        this.offersLocation = offersLocation;
     }
 
     @Override
-    public void run(String... args) {
+    public void run(String... args) throws IOException {
         logger.info("Running DataLoader");
 
-        // Items
-        Item apple = itemRepository.save(new Item("Apple", BigDecimal.valueOf(0.30)));
-        Item banana = itemRepository.save(new Item("Banana", BigDecimal.valueOf(0.50)));
-        Item peach = itemRepository.save(new Item("Peach", BigDecimal.valueOf(0.60)));
-        Item kiwi = itemRepository.save(new Item("Kiwi", BigDecimal.valueOf(0.20)));
-
-        // Offers
-        offerRepository.save(new Offer(apple, 2, BigDecimal.valueOf(0.45)));
-        offerRepository.save(new Offer(banana, 3, BigDecimal.valueOf(1.30)));
+        if (!itemsLocation.isBlank()) {
+            Resource items = resourceLoader.getResource(itemsLocation);
+            try (InputStream in = items.getInputStream()) {
+                catalogImportService.importItems(in, CatalogImportService.Format.fromFileName(items.getFilename()));
+            }
+        }
+        if (!offersLocation.isBlank()) {
+            Resource offers = resourceLoader.getResource(offersLocation);
+            try (InputStream in = offers.getInputStream()) {
+                catalogImportService.importOffers(in, CatalogImportService.Format.fromFileName(offers.getFilename()));
+            }
+        }
     }
 }
@@ -0,0 +1,230 @@
+package com.checkoutkata.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Makes the cart mutation endpoints safe to retry. A POST, PUT or DELETE under
+ * {@code /cart} carrying an {@code Idempotency-Key} header is handled once; a
+ * retry with the same key gets the stored status and body back, marked with
+ * {@code Idempotent-Replayed: true}, without reaching the controller.
+ * <ul>
+ *     <li>A retry arriving while the first request is still running gets 409 Conflict.</li>
+ *     <li>Reusing a key for a different method, path, query or body gets 422 Unprocessable Entity.</li>
+ *     <li>Server errors are not stored, so the request can be retried with the same key.</li>
+ *     <li>A body larger than {@code cart.idempotency.max-body-size} gets 413 Payload Too Large.</li>
+ * </ul>
+ * The body is read before the request is claimed, so it can be hashed into the
+ * fingerprint, and handed on to the controller from memory. Spring's
+ * ContentCachingRequestWrapper does not fit here: it only caches what the
+ * controller reads, after the key has been claimed.
+ * Keys are kept in a bounded, expiring Caffeine cache ({@code cart.idempotency.spec}).
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String REPLAYED = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyFilter.class);
+
+    private final Cache<String, Entry> responses;
+    private final int maxBodySize;
+
+    public IdempotencyFilter(@Value("${cart.idempotency.spec:maximumSize=100000,expireAfterWrite=10m}") String spec,
+                             @Value("${cart.idempotency.max-body-size:1MB}") DataSize maxBodySize,
+                             MeterRegistry registry) {
+        if (maxBodySize.isNegative() || maxBodySize.toBytes() >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Idempotent request body size must be between 0 and 2GB: " + maxBodySize);
+        }
+        this.maxBodySize = (int) maxBodySize.toBytes();
+        this.responses = Caffeine.from(spec).recordStats().build();
+        CaffeineCacheMetrics.monitor(registry, responses, "idempotency");
+        log.info("Idempotency keys cached with spec: {}", spec);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (request.getHeader(IDEMPOTENCY_KEY) == null || HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.equals("/cart") && !path.startsWith("/cart/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid " + IDEMPOTENCY_KEY);
+            return;
+        }
+        // Checked before reading, and reading stops past the limit, for bodies without a length
+        byte[] body = request.getContentLengthLong() > maxBodySize ? null
+                : request.getInputStream().readNBytes(maxBodySize + 1);
+        if (body == null || body.length > maxBodySize) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(),
+                    "Body of a request with an " + IDEMPOTENCY_KEY + " is limited to " + maxBodySize + " bytes");
+            return;
+        }
+        String target = request.getQueryString() == null ? request.getRequestURI()
+                : request.getRequestURI() + "?" + request.getQueryString();
+        Entry claim = new Entry(request.getMethod() + " " + target, sha256(body));
+        Entry existing = responses.asMap().putIfAbsent(key, claim);
+        if (existing != null) {
+            replay(existing, claim, key, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean handled = false;
+        try {
+            chain.doFilter(new CachedBodyRequest(request, body), wrapper);
+            handled = true;
+        } finally {
+            if (handled && wrapper.getStatus() < HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+                claim.response = new StoredResponse(wrapper.getStatus(), wrapper.getContentType(),
+                        wrapper.getContentAsByteArray());
+            } else {
+                responses.asMap().remove(key, claim);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void replay(Entry existing, Entry claim, String key, HttpServletResponse response)
+            throws IOException {
+        if (!existing.request.equals(claim.request)) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                    IDEMPOTENCY_KEY + " already used for " + existing.request);
+            return;
+        }
+        if (!MessageDigest.isEqual(existing.bodyHash, claim.bodyHash)) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                    IDEMPOTENCY_KEY + " already used for " + existing.request + " with another body");
+            return;
+        }
+        StoredResponse stored = existing.response;
+        if (stored == null) {
+            response.sendError(HttpStatus.CONFLICT.value(), "A request with this " + IDEMPOTENCY_KEY + " is in progress");
+            return;
+        }
+        response.setStatus(stored.status());
+        response.setHeader(REPLAYED, "true");
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+        log.debug("Replayed response for {} {}", existing.request, key);
+    }
+
+    private static byte[] sha256(byte[] body) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every Java platform", e);
+        }
+    }
+
+    /** Request claimed by a key; the response is set once it has been handled. */
+    private static final class Entry {
+
+        /** Method, path and query of the request. */
+        private final String request;
+        private final byte[] bodyHash;
+        private volatile StoredResponse response;
+
+        private Entry(String request, byte[] bodyHash) {
+            this.request = request;
+            this.bodyHash = bodyHash;
+        }
+    }
+
+    /** Request whose body, already read for the fingerprint, is served again from memory. */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is in memory, so it is all available at once
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws UnsupportedEncodingException {
+            String encoding = getCharacterEncoding() == null ? StandardCharsets.UTF_8.name() : getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), encoding));
+        }
+    }
+
+    private record StoredResponse(int status, String contentType, byte[] body) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.checkoutkata.config;
+
+import com.checkoutkata.repository.QueryCounter;
+import com.checkoutkata.service.HotPathMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationPredicate;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.aop.ObservedAspect;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Configuration of the hot-path metrics and traces.
+ * Services annotated with {@code @Observed} get a timer per method and, when
+ * sampled by the tracer, a span. Each HTTP request records the number of SQL
+ * statements Hibernate prepared for it as {@code http.server.requests.queries},
+ * tagged with the request pattern, so N+1 regressions show up as a growing count.
+ * Service observations and query counts honour {@code metrics.sample-rate}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /** Observations made by the {@code @Observed} services. */
+    private static final Set<String> SERVICE_OBSERVATIONS = Set.of("cart.service", "item.service", "offer.service");
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsConfig.class);
+
+    @Bean
+    public ObservedAspect observedAspect(ObservationRegistry observationRegistry) {
+        return new ObservedAspect(observationRegistry);
+    }
+
+    @Bean
+    public ObservationPredicate serviceObservationSampling(HotPathMetrics metrics) {
+        return (name, context) -> !SERVICE_OBSERVATIONS.contains(name) || metrics.sample();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCounter());
+    }
+
+    @Bean
+    public FilterRegistrationBean<QueryCountFilter> queryCountFilter(MeterRegistry registry, HotPathMetrics metrics) {
+        FilterRegistrationBean<QueryCountFilter> registration =
+                new FilterRegistrationBean<>(new QueryCountFilter(registry, metrics));
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE);
+        log.info("Counting SQL statements per request");
+        return registration;
+    }
+
+    /**
+     * Records the statements counted by {@link QueryCounter} once a sampled request has been handled.
+     */
+    static class QueryCountFilter extends OncePerRequestFilter {
+
+        private final MeterRegistry registry;
+        private final HotPathMetrics metrics;
+
+        QueryCountFilter(MeterRegistry registry, HotPathMetrics metrics) {
+            this.registry = registry;
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            if (!metrics.sample()) {
+                chain.doFilter(request, response);
+                return;
+            }
+            QueryCounter.start();
+            int queries;
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                queries = QueryCounter.stop();
+            }
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder("http.server.requests.queries")
+                    .description("SQL statements prepared by Hibernate per request")
+                    .tag("method", request.getMethod())
+                    .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                    .register(registry)
+                    .record(queries);
+        }
+    }
+}
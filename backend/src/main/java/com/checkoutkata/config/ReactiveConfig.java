@@ -0,0 +1,78 @@
+package com.checkoutkata.config;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Option;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * Configuration of the non-blocking data access path used by the reactive API.
+ * An R2DBC connection factory is opened on the same database as the JDBC data
+ * source, so both API variants see the same carts and catalog.
+ * <p>
+ * The connection factory and its transaction manager are deliberately not beans:
+ * Spring Boot backs off its JDBC data source and JPA transaction manager as soon
+ * as either exists, which is also why R2dbcAutoConfiguration is excluded.
+ */
+@Configuration
+public class ReactiveConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveConfig.class);
+
+    private final ConnectionFactory connectionFactory;
+
+    public ReactiveConfig(@Value("${reactive.r2dbc.url:r2dbc:h2:mem:///checkout_kata_db}") String url,
+                          @Value("${spring.datasource.username:}") String username,
+                          @Value("${spring.datasource.password:}") String password) {
+        this.connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build());
+        log.info("Reactive data access on {}", url);
+    }
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient() {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator() {
+        return TransactionalOperator.create(new ReadWriteTransactionManager(connectionFactory));
+    }
+
+    /**
+     * Transaction manager that leaves the read-only option out of read-write transactions.
+     * Spring always sets it, and H2 logs a warning for every transaction that carries
+     * it, since H2 only supports read-only access on the connection URL.
+     */
+    private static class ReadWriteTransactionManager extends R2dbcTransactionManager {
+
+        ReadWriteTransactionManager(ConnectionFactory connectionFactory) {
+            super(connectionFactory);
+        }
+
+        @Override
+        protected io.r2dbc.spi.TransactionDefinition createTransactionDefinition(TransactionDefinition definition) {
+            io.r2dbc.spi.TransactionDefinition transactionDefinition = super.createTransactionDefinition(definition);
+            if (definition.isReadOnly()) {
+                return transactionDefinition;
+            }
+            return new io.r2dbc.spi.TransactionDefinition() {
+                @Override
+                public <T> T getAttribute(Option<T> option) {
+                    return READ_ONLY.equals(option) ? null : transactionDefinition.getAttribute(option);
+                }
+            };
+        }
+    }
+}
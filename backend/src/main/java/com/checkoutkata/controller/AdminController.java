@@ -0,0 +1,84 @@
+package com.checkoutkata.controller;
+
+import com.checkoutkata.dto.BulkPriceUpdate;
+import com.checkoutkata.dto.BulkUpdateResult;
+import com.checkoutkata.dto.ImportResult;
+import com.checkoutkata.service.BulkPriceUpdateService;
+import com.checkoutkata.service.CatalogImportService;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Controller for catalog administration.
+ * Provides bulk import endpoints accepting CSV (text/csv) or JSON lines
+ * (application/x-ndjson) request bodies, streamed straight into the import pipeline,
+ * and an atomic bulk price update endpoint.
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    private final CatalogImportService catalogImportService;
+    private final BulkPriceUpdateService bulkPriceUpdateService;
+
+    public AdminController(CatalogImportService catalogImportService, BulkPriceUpdateService bulkPriceUpdateService) {
+        this.catalogImportService = catalogImportService;
+        this.bulkPriceUpdateService = bulkPriceUpdateService;
+    }
+
+    /**
+     * Imports items, updating the price of existing items with the same name.
+     * @param contentType Content type of the body, text/csv or application/x-ndjson
+     * @param body Records with the fields name and unitPrice
+     * @return ResponseEntity with the import outcome, or 400 if the content type is not supported
+     * @throws IOException if reading the body fails
+     */
+    @PostMapping("/import/items")
+    public ResponseEntity<ImportResult> importItems(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                    InputStream body) throws IOException {
+        try {
+            return ResponseEntity.ok(catalogImportService.importItems(body, CatalogImportService.Format.fromContentType(contentType)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Imports offers, updating existing offers with the same item, type and quantity.
+     * @param contentType Content type of the body, text/csv or application/x-ndjson
+     * @param body Records with the fields itemName, type, quantity, totalPrice, freeQuantity and percentOff
+     * @return ResponseEntity with the import outcome, or 400 if the content type is not supported
+     * @throws IOException if reading the body fails
+     */
+    @PostMapping("/import/offers")
+    public ResponseEntity<ImportResult> importOffers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                     InputStream body) throws IOException {
+        try {
+            return ResponseEntity.ok(catalogImportService.importOffers(body, CatalogImportService.Format.fromContentType(contentType)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Changes item prices and offer terms in one transaction and publishes them as a new catalog version.
+     * @param update Item prices to set and offer fields to change; omitted offer fields are kept
+     * @return ResponseEntity with the number of changes and the new catalog version,
+     *         400 if a change is invalid, or 404 if an item or offer does not exist
+     */
+    @PostMapping("/prices")
+    public ResponseEntity<BulkUpdateResult> updatePrices(@RequestBody BulkPriceUpdate update) {
+        try {
+            return ResponseEntity.ok(bulkPriceUpdateService.apply(update));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
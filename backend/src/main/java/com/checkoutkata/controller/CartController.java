@@ -1,97 +1,192 @@
 package com.checkoutkata.controller;
 
 import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.dto.CartSummary;
+import com.checkoutkata.dto.CartUpdate;
+import com.checkoutkata.dto.Receipt;
+import com.checkoutkata.dto.ScanRequest;
+import com.checkoutkata.service.CartOperations;
 import com.checkoutkata.service.CartService;
+import com.checkoutkata.service.CartUpdates;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 /**
- * CartController handles requests related to the shopping cart.
+ * CartController handles requests related to shopping carts.
+ * Every endpoint is available under {@code /cart/{cartId}/...} for a named cart
+ * and under {@code /cart/...} for the default cart.
  */
 @RestController
 @RequestMapping("/cart")
 public class CartController {
 
-    private final CartService cartService;
+    /** Interval of the comments that keep idle update streams open through proxies. */
+    private static final Duration KEEP_ALIVE = Duration.ofSeconds(30);
 
-    public CartController(CartService cartService) {
+    private final CartOperations cartService;
+    private final CartUpdates cartUpdates;
+
+    public CartController(CartOperations cartService, CartUpdates cartUpdates) {
         this.cartService = cartService;
+        this.cartUpdates = cartUpdates;
     }
 
     /**
      * Adds an item to the cart by scanning its ID.
      *
+     * @param cartId the ID of the cart, or the default cart if absent
      * @param id the ID of the item to be added
      * @return the added CartItem
      */
-    @PostMapping("scan/{id}")
-    public ResponseEntity<CartItem> scanItem(@PathVariable Long id) {
-        CartItem cartItem = cartService.addToCart(id);
+    @PostMapping({"scan/{id}", "/{cartId}/scan/{id}"})
+    public ResponseEntity<CartItem> scanItem(@PathVariable(required = false) String cartId, @PathVariable Long id) {
+        CartItem cartItem = cartService.addToCart(resolveCartId(cartId), id);
         return ResponseEntity.ok(cartItem);
     }
 
+    /**
+     * Adds a batch of scanned items to the cart in a single round trip.
+     *
+     * @param cartId the ID of the cart, or the default cart if absent
+     * @param scans the scanned item IDs and quantities; duplicates are collapsed
+     * @return the cart contents and total after the batch, or 400 if the batch is invalid
+     */
+    @PostMapping({"/scan/batch", "/{cartId}/scan/batch"})
+    public ResponseEntity<CartSummary> scanItems(@PathVariable(required = false) String cartId,
+                                                 @RequestBody List<ScanRequest> scans) {
+        try {
+            return ResponseEntity.ok(cartService.addToCart(resolveCartId(cartId), scans));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Retrieves all items currently in the shopping cart.
      *
+     * @param cartId the ID of the cart, or the default cart if absent
      * @return ResponseEntity containing a list of CartItems in the cart
      * @see CartItem
-     * @see CartService#getCartContents()
+     * @see CartOperations#getCartContents(String)
      */
-    @GetMapping("/contents")
-    public ResponseEntity<List<CartItem>> getCartContents() {
-        List<CartItem> contents = cartService.getCartContents();
+    @GetMapping({"/contents", "/{cartId}/contents"})
+    public ResponseEntity<List<CartItem>> getCartContents(@PathVariable(required = false) String cartId) {
+        List<CartItem> contents = cartService.getCartContents(resolveCartId(cartId));
         return ResponseEntity.ok(contents);
     }
 
     /**
-     * Retrieves the total price of the items in the cart.
+     * Retrieves the total price of the items in the cart, optionally with the
+     * prices and offers that were live at a past moment.
+     *
+     * @param cartId the ID of the cart, or the default cart if absent
+     * @param asOf ISO-8601 moment whose prices and offers apply, the current ones if absent
+     * @return a map containing the total price, or 400 if the moment is in the future or before the price history
+     */
+    @GetMapping({"/total", "/{cartId}/total"})
+    public ResponseEntity<Map<String, BigDecimal>> getCartTotal(@PathVariable(required = false) String cartId,
+                                                                @RequestParam(required = false)
+                                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                                Instant asOf) {
+        if (asOf == null) {
+            return ResponseEntity.ok(Map.of("total", cartService.calculateTotal(resolveCartId(cartId))));
+        }
+        try {
+            return ResponseEntity.ok(Map.of("total", cartService.calculateTotal(resolveCartId(cartId), asOf)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Streams the changes of the cart as server-sent events, starting with a
+     * snapshot of its contents and total. The stream ends after the async request
+     * timeout; EventSource clients reconnect on their own and get a new snapshot.
      *
-     * @return a map containing the total price
+     * @param cartId the ID of the cart, or the default cart if absent
+     * @return the stream of cart updates
+     * @see CartUpdate
      */
-    @GetMapping("/total")
-    public ResponseEntity<Map<String, BigDecimal>> getCartTotal() {
-        return ResponseEntity.ok(Map.of("total", cartService.calculateTotal()));
+    @GetMapping(value = {"/updates", "/{cartId}/updates"}, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<CartUpdate>> streamUpdates(@PathVariable(required = false) String cartId) {
+        String resolved = resolveCartId(cartId);
+        // merge subscribes in order, so the snapshot is published once the subscription is in place
+        Flux<CartUpdate> updates = Flux.merge(cartUpdates.subscribe(resolved),
+                Mono.fromRunnable(() -> cartService.publishSnapshot(resolved)));
+        return Flux.merge(
+                updates.map(update -> ServerSentEvent.builder(update).event(update.type().name()).build()),
+                Flux.interval(KEEP_ALIVE).map(tick -> ServerSentEvent.<CartUpdate>builder().comment("keep-alive").build()));
     }
 
     /**
      * Clears the cart.
      *
+     * @param cartId the ID of the cart, or the default cart if absent
      * @return a ResponseEntity with no content
      */
-    @DeleteMapping
-    public ResponseEntity<Void> clearCart() {
-        cartService.clearCart();
+    @DeleteMapping({"", "/{cartId}"})
+    public ResponseEntity<Void> clearCart(@PathVariable(required = false) String cartId) {
+        cartService.clearCart(resolveCartId(cartId));
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Checks out the cart: prices it once, records the order and clears the cart.
+     *
+     * @param cartId the ID of the cart, or the default cart if absent
+     * @return the itemized receipt, or 400 if the cart is empty
+     */
+    @PostMapping({"/checkout", "/{cartId}/checkout"})
+    public ResponseEntity<Receipt> checkout(@PathVariable(required = false) String cartId) {
+        try {
+            return ResponseEntity.ok(cartService.checkout(resolveCartId(cartId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Deletes a specific item from the cart.
      *
+     * @param cartId the ID of the cart, or the default cart if absent
      * @param id the ID of the item to be deleted
      * @return a ResponseEntity with no content
      */
-    @DeleteMapping("/items/{id}")
-    public ResponseEntity<Void> deleteCartItem(@PathVariable Long id) {
-        cartService.deleteCartItem(id);
+    @DeleteMapping({"/items/{id}", "/{cartId}/items/{id}"})
+    public ResponseEntity<Void> deleteCartItem(@PathVariable(required = false) String cartId, @PathVariable Long id) {
+        cartService.deleteCartItem(resolveCartId(cartId), id);
         return ResponseEntity.noContent().build();
     }
 
     /**
      * Deletes a specific item from the cart by reducing its quantity.
      *
+     * @param cartId the ID of the cart, or the default cart if absent
      * @param id the ID of the item to be reduced
      * @param quantity the quantity to reduce
      * @return the updated CartItem or no content if not found
      */
-    @PutMapping("/items/{id}/decrease")
-    public ResponseEntity<?> deleteCartItemByQuantity(@PathVariable Long id, @RequestParam int quantity) {
-        CartItem result = cartService.deleteCartItemByQuantity(id, quantity);
+    @PutMapping({"/items/{id}/decrease", "/{cartId}/items/{id}/decrease"})
+    public ResponseEntity<?> deleteCartItemByQuantity(@PathVariable(required = false) String cartId,
+                                                      @PathVariable Long id, @RequestParam int quantity) {
+        CartItem result = cartService.deleteCartItemByQuantity(resolveCartId(cartId), id, quantity);
         return result == null ?
                 ResponseEntity.noContent().build() :
                 ResponseEntity.ok(result);
     }
 
+    private static String resolveCartId(String cartId) {
+        return cartId == null ? CartService.DEFAULT_CART_ID : cartId;
+    }
+
 }
@@ -1,13 +1,17 @@
 package com.checkoutkata.controller;
 
 import com.checkoutkata.domain.Item;
+import com.checkoutkata.dto.CursorPage;
+import com.checkoutkata.service.CatalogExportService;
 import com.checkoutkata.service.ItemService;
 import jakarta.persistence.EntityNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -18,9 +22,11 @@ public class ItemController {
 
     private static final Logger logger = LoggerFactory.getLogger(ItemController.class);
     private final ItemService itemService;
+    private final CatalogExportService catalogExportService;
 
-    public ItemController(ItemService itemService) {
+    public ItemController(ItemService itemService, CatalogExportService catalogExportService) {
         this.itemService = itemService;
+        this.catalogExportService = catalogExportService;
     }
 
     /**
@@ -33,6 +39,32 @@ public class ItemController {
         return ResponseEntity.ok(items);
     }
 
+    /**
+     * Retrieves one page of items ordered by id.
+     * @param after ID of the last item of the previous page, omitted for the first page
+     * @param limit Maximum number of items to return, at most 1000
+     * @return ResponseEntity with the page and the cursor of the next page, or 400 if limit is out of range
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<CursorPage<Item>> getItemsPage(@RequestParam(required = false) Long after,
+                                                         @RequestParam int limit) {
+        try {
+            return ResponseEntity.ok(itemService.getItemsPage(after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Streams all items as newline-delimited JSON, for catalog sync jobs.
+     * @return ResponseEntity streaming one item per line
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamItems() {
+        StreamingResponseBody body = catalogExportService::writeItems;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     /**
      * Retrieves a specific item by its ID.
      * @param id ID of the item to retrieve
@@ -48,12 +80,16 @@ public class ItemController {
     /**
      * Creates a new item in the inventory.
      * @param item Item to create
-     * @return ResponseEntity with created item and 201 status
+     * @return ResponseEntity with created item and 201 status, or 400 if the price is negative or the name exists
      */
     @PostMapping
     public ResponseEntity<Item> createItem(@RequestBody Item item) {
-        Item created = itemService.createItem(item);
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        try {
+            Item created = itemService.createItem(item);
+            return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
@@ -76,7 +112,7 @@ public class ItemController {
      * Updates the name of an existing item.
      * @param id ID of the item to update
      * @param item Item object containing new name
-     * @return ResponseEntity with updated item, or 404 if not found
+     * @return ResponseEntity with updated item, 404 if not found, or 400 if the name is empty or exists
      */
     @PutMapping("/{id}/name")
     public ResponseEntity<Item> updateItemName(@PathVariable Long id, @RequestBody Item item) {
@@ -85,6 +121,8 @@ public class ItemController {
             return ResponseEntity.ok(updated);
         } catch (EntityNotFoundException ex) {
             return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
         }
     }
 
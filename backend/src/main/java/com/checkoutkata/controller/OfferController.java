@@ -1,10 +1,14 @@
 package com.checkoutkata.controller;
 
 import com.checkoutkata.domain.Offer;
+import com.checkoutkata.dto.CursorPage;
+import com.checkoutkata.service.CatalogExportService;
 import com.checkoutkata.service.OfferService;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -18,9 +22,11 @@ import java.util.List;
 public class OfferController {
 
     private final OfferService offerService;
+    private final CatalogExportService catalogExportService;
 
-    public OfferController(OfferService offerService) {
+    public OfferController(OfferService offerService, CatalogExportService catalogExportService) {
         this.offerService = offerService;
+        this.catalogExportService = catalogExportService;
     }
 
     /**
@@ -68,6 +74,32 @@ public class OfferController {
         return ResponseEntity.ok(offerService.getAllOffers());
     }
 
+    /**
+     * Retrieves one page of offers ordered by id.
+     * @param after ID of the last offer of the previous page, omitted for the first page
+     * @param limit Maximum number of offers to return, at most 1000
+     * @return ResponseEntity with the page and the cursor of the next page, or 400 if limit is out of range
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<CursorPage<Offer>> getOffersPage(@RequestParam(required = false) Long after,
+                                                           @RequestParam int limit) {
+        try {
+            return ResponseEntity.ok(offerService.getOffersPage(after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Streams all offers as newline-delimited JSON, for catalog sync jobs.
+     * @return ResponseEntity streaming one offer per line
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamOffers() {
+        StreamingResponseBody body = catalogExportService::writeOffers;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     /**
      * Deletes an existing offer.
      * @param offerId ID of the offer to delete
@@ -0,0 +1,140 @@
+package com.checkoutkata.controller;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.dto.CartSummary;
+import com.checkoutkata.dto.ScanRequest;
+import com.checkoutkata.service.CartService;
+import com.checkoutkata.service.ReactiveCartService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reactive variant of {@link CartController} under {@code /reactive/cart}, with
+ * the same paths, bodies and status codes, backed by non-blocking data access.
+ * Only available with the database cart store ({@code cart.store=database}).
+ */
+@RestController
+@ConditionalOnProperty(name = "cart.store", havingValue = "database", matchIfMissing = true)
+@RequestMapping("/reactive/cart")
+public class ReactiveCartController {
+
+    private final ReactiveCartService reactiveCartService;
+
+    public ReactiveCartController(ReactiveCartService reactiveCartService) {
+        this.reactiveCartService = reactiveCartService;
+    }
+
+    /**
+     * Adds an item to the cart by scanning its ID.
+     *
+     * @param cartId the ID of the cart, or the default cart if absent
+     * @param id the ID of the item to be added
+     * @return the added CartItem
+     */
+    @PostMapping({"scan/{id}", "/{cartId}/scan/{id}"})
+    public Mono<ResponseEntity<CartItem>> scanItem(@PathVariable(required = false) String cartId,
+                                                   @PathVariable Long id) {
+        return reactiveCartService.addToCart(resolveCartId(cartId), id).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Adds a batch of scanned items to the cart in a single round trip.
+     *
+     * @param cartId the ID of the cart, or the default cart if absent
+     * @param scans the scanned item IDs and quantities; duplicates are collapsed
+     * @return the cart contents and total after the batch, or 400 if the batch is invalid
+     */
+    @PostMapping({"/scan/batch", "/{cartId}/scan/batch"})
+    public Mono<ResponseEntity<CartSummary>> scanItems(@PathVariable(required = false) String cartId,
+                                                       @RequestBody List<ScanRequest> scans) {
+        return reactiveCartService.addToCart(resolveCartId(cartId), scans)
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Retrieves all items currently in the shopping cart.
+     *
+     * @param cartId the ID of the cart, or the default cart if absent
+     * @return ResponseEntity containing a list of CartItems in the cart
+     */
+    @GetMapping({"/contents", "/{cartId}/contents"})
+    public Mono<ResponseEntity<List<CartItem>>> getCartContents(@PathVariable(required = false) String cartId) {
+        return reactiveCartService.getCartContents(resolveCartId(cartId)).collectList().map(ResponseEntity::ok);
+    }
+
+    /**
+     * Retrieves the total price of the items in the cart, optionally with the
+     * prices and offers that were live at a past moment.
+     *
+     * @param cartId the ID of the cart, or the default cart if absent
+     * @param asOf ISO-8601 moment whose prices and offers apply, the current ones if absent
+     * @return a map containing the total price, or 400 if the moment is in the future or before the price history
+     */
+    @GetMapping({"/total", "/{cartId}/total"})
+    public Mono<ResponseEntity<Map<String, BigDecimal>>> getCartTotal(@PathVariable(required = false) String cartId,
+                                                                      @RequestParam(required = false)
+                                                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                                      Instant asOf) {
+        Mono<BigDecimal> total = asOf == null
+                ? reactiveCartService.calculateTotal(resolveCartId(cartId))
+                : reactiveCartService.calculateTotal(resolveCartId(cartId), asOf);
+        return total.map(value -> ResponseEntity.ok(Map.of("total", value)))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Clears the cart.
+     *
+     * @param cartId the ID of the cart, or the default cart if absent
+     * @return a ResponseEntity with no content
+     */
+    @DeleteMapping({"", "/{cartId}"})
+    public Mono<ResponseEntity<Void>> clearCart(@PathVariable(required = false) String cartId) {
+        return reactiveCartService.clearCart(resolveCartId(cartId))
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+
+    /**
+     * Deletes a specific item from the cart.
+     *
+     * @param cartId the ID of the cart, or the default cart if absent
+     * @param id the ID of the item to be deleted
+     * @return a ResponseEntity with no content
+     */
+    @DeleteMapping({"/items/{id}", "/{cartId}/items/{id}"})
+    public Mono<ResponseEntity<Void>> deleteCartItem(@PathVariable(required = false) String cartId,
+                                                     @PathVariable Long id) {
+        return reactiveCartService.deleteCartItem(resolveCartId(cartId), id)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+
+    /**
+     * Deletes a specific item from the cart by reducing its quantity.
+     *
+     * @param cartId the ID of the cart, or the default cart if absent
+     * @param id the ID of the item to be reduced
+     * @param quantity the quantity to reduce
+     * @return the updated CartItem or no content if it was removed
+     */
+    @PutMapping({"/items/{id}/decrease", "/{cartId}/items/{id}/decrease"})
+    public Mono<ResponseEntity<CartItem>> deleteCartItemByQuantity(@PathVariable(required = false) String cartId,
+                                                                   @PathVariable Long id,
+                                                                   @RequestParam int quantity) {
+        return reactiveCartService.deleteCartItemByQuantity(resolveCartId(cartId), id, quantity)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.noContent().build());
+    }
+
+    private static String resolveCartId(String cartId) {
+        return cartId == null ? CartService.DEFAULT_CART_ID : cartId;
+    }
+}
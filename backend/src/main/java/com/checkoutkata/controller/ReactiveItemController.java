@@ -0,0 +1,122 @@
+package com.checkoutkata.controller;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.dto.CursorPage;
+import com.checkoutkata.service.ReactiveCatalogService;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive variant of {@link ItemController} under {@code /reactive/items}, with
+ * the same paths, bodies and status codes.
+ */
+@RestController
+@RequestMapping("/reactive/items")
+public class ReactiveItemController {
+
+    private final ReactiveCatalogService reactiveCatalogService;
+
+    public ReactiveItemController(ReactiveCatalogService reactiveCatalogService) {
+        this.reactiveCatalogService = reactiveCatalogService;
+    }
+
+    /**
+     * Retrieves all items from the inventory.
+     * @return All items, written as one JSON array
+     */
+    @GetMapping
+    public Flux<Item> getAllItems() {
+        return reactiveCatalogService.streamItems();
+    }
+
+    /**
+     * Retrieves one page of items ordered by id.
+     * @param after ID of the last item of the previous page, omitted for the first page
+     * @param limit Maximum number of items to return, at most 1000
+     * @return ResponseEntity with the page and the cursor of the next page, or 400 if limit is out of range
+     */
+    @GetMapping(params = "limit")
+    public Mono<ResponseEntity<CursorPage<Item>>> getItemsPage(@RequestParam(required = false) Long after,
+                                                               @RequestParam int limit) {
+        return reactiveCatalogService.getItemsPage(after, limit)
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Streams all items as newline-delimited JSON. Each item is read from the
+     * database only once the previous one has been written to the client.
+     * @return One item per line
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Item> streamItems() {
+        return reactiveCatalogService.streamItems();
+    }
+
+    /**
+     * Retrieves a specific item by its ID.
+     * @param id ID of the item to retrieve
+     * @return ResponseEntity with item if found, or 404 if not found
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Item>> getItemById(@PathVariable Long id) {
+        return reactiveCatalogService.getItemById(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Creates a new item in the inventory.
+     * @param item Item to create
+     * @return ResponseEntity with created item and 201 status, or 400 if the price is negative or the name exists
+     */
+    @PostMapping
+    public Mono<ResponseEntity<Item>> createItem(@RequestBody Item item) {
+        return reactiveCatalogService.createItem(item)
+                .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Updates the price of an existing item.
+     * @param id ID of the item to update
+     * @param itemBody Item object containing new price
+     * @return ResponseEntity with updated item, or 404 if not found
+     */
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<Item>> updateItemPrice(@PathVariable Long id, @RequestBody Item itemBody) {
+        return reactiveCatalogService.updatePrice(id, itemBody.getUnitPrice())
+                .map(ResponseEntity::ok)
+                .onErrorResume(EntityNotFoundException.class, e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Updates the name of an existing item.
+     * @param id ID of the item to update
+     * @param item Item object containing new name
+     * @return ResponseEntity with updated item, 404 if not found, or 400 if the name is empty or exists
+     */
+    @PutMapping("/{id}/name")
+    public Mono<ResponseEntity<Item>> updateItemName(@PathVariable Long id, @RequestBody Item item) {
+        return reactiveCatalogService.updateName(id, item.getName())
+                .map(ResponseEntity::ok)
+                .onErrorResume(EntityNotFoundException.class, e -> Mono.just(ResponseEntity.notFound().build()))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Deletes an item from the inventory.
+     * @param id ID of the item to delete
+     * @return ResponseEntity with 204 if deleted, or 404 if not found
+     */
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteItem(@PathVariable Long id) {
+        return reactiveCatalogService.deleteItem(id)
+                .map(deleted -> deleted ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,100 @@
+package com.checkoutkata.controller;
+
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.dto.CursorPage;
+import com.checkoutkata.service.ReactiveCatalogService;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive variant of {@link OfferController} under {@code /reactive/offers}, with
+ * the same paths, bodies and status codes.
+ */
+@RestController
+@RequestMapping("/reactive/offers")
+public class ReactiveOfferController {
+
+    private final ReactiveCatalogService reactiveCatalogService;
+
+    public ReactiveOfferController(ReactiveCatalogService reactiveCatalogService) {
+        this.reactiveCatalogService = reactiveCatalogService;
+    }
+
+    /**
+     * Creates a new offer for a specific item.
+     *
+     * @param itemId the ID of the item to which the offer applies
+     * @param offer   the offer details
+     * @return the created offer
+     */
+    @PostMapping("/{itemId}")
+    public Mono<ResponseEntity<Offer>> createOffer(@PathVariable Long itemId, @RequestBody Offer offer) {
+        return reactiveCatalogService.createOffer(itemId, offer)
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()))
+                .onErrorResume(EntityNotFoundException.class, e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Updates an existing offer.
+     *
+     * @param id    the ID of the offer to update
+     * @param offer the updated offer details
+     * @return the updated offer
+     */
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<Offer>> updateOffer(@PathVariable Long id, @RequestBody Offer offer) {
+        return reactiveCatalogService.updateOffer(id, offer)
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()))
+                .onErrorResume(EntityNotFoundException.class, e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Retrieves all active offers in the system.
+     * @return All offers, written as one JSON array
+     */
+    @GetMapping
+    public Flux<Offer> getAllOffers() {
+        return reactiveCatalogService.streamOffers();
+    }
+
+    /**
+     * Retrieves one page of offers ordered by id.
+     * @param after ID of the last offer of the previous page, omitted for the first page
+     * @param limit Maximum number of offers to return, at most 1000
+     * @return ResponseEntity with the page and the cursor of the next page, or 400 if limit is out of range
+     */
+    @GetMapping(params = "limit")
+    public Mono<ResponseEntity<CursorPage<Offer>>> getOffersPage(@RequestParam(required = false) Long after,
+                                                                 @RequestParam int limit) {
+        return reactiveCatalogService.getOffersPage(after, limit)
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Streams all offers as newline-delimited JSON. Offers are read from the
+     * database as the client consumes them.
+     * @return One offer per line
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Offer> streamOffers() {
+        return reactiveCatalogService.streamOffers();
+    }
+
+    /**
+     * Deletes an existing offer.
+     * @param offerId ID of the offer to delete
+     * @return ResponseEntity with 204 if deleted, or 404 if not found
+     */
+    @DeleteMapping("/{offerId}")
+    public Mono<ResponseEntity<Void>> deleteOffer(@PathVariable Long offerId) {
+        return reactiveCatalogService.deleteOffer(offerId)
+                .map(deleted -> deleted ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build());
+    }
+}
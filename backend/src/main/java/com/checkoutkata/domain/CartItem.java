@@ -3,12 +3,20 @@ package com.checkoutkata.domain;
 import jakarta.persistence.*;
 
 @Entity
+@Table(
+        indexes = @Index(name = "idx_cart_item_cart", columnList = "cartId"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_cart_item_cart_item", columnNames = {"cartId", "item_id"})
+)
 public class CartItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_item_seq")
+    @SequenceGenerator(name = "cart_item_seq", sequenceName = "cart_item_seq", allocationSize = 50)
     private Long id;
 
+    @Column(nullable = false, length = 64)
+    private String cartId;
+
     @ManyToOne
     private Item item;
 
@@ -22,6 +30,12 @@ public class CartItem {
         this.quantity = quantity;
     }
 
+    public CartItem(String cartId, Item item, int quantity) {
+        this.cartId = cartId;
+        this.item = item;
+        this.quantity = quantity;
+    }
+
     public Long getId() {
         return id;
     }
@@ -30,6 +44,14 @@ public class CartItem {
         this.id = id;
     }
 
+    public String getCartId() {
+        return cartId;
+    }
+
+    public void setCartId(String cartId) {
+        this.cartId = cartId;
+    }
+
     public Item getItem() {
         return item;
     }
@@ -2,19 +2,25 @@ package com.checkoutkata.domain;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotBlank;
 import java.math.BigDecimal;
 
 @Entity
+// Names identify items in catalog imports, see CatalogImportService
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_item_name", columnNames = "name"))
 public class Item {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @NotBlank(message = "Name cannot be empty")
     private String name;
 
     @Column(precision = 6, scale = 2)
     @DecimalMin(value = "0.0", inclusive = true, message = "Price must be zero or positive")
+    @Digits(integer = 4, fraction = 2, message = "Price must have at most 4 integer and 2 fraction digits")
     private BigDecimal unitPrice;
 
     public Item() {
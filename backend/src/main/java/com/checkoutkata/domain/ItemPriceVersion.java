@@ -0,0 +1,74 @@
+package com.checkoutkata.domain;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Unit price of an item during [validFrom, validTo). The current price has no
+ * validTo. Refers to the item by id only, so the history outlives deleted items.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_item_price_version_item", columnList = "itemId, validFrom"))
+public class ItemPriceVersion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_price_version_seq")
+    @SequenceGenerator(name = "item_price_version_seq", sequenceName = "item_price_version_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long itemId;
+
+    @Column(nullable = false, precision = 6, scale = 2)
+    private BigDecimal unitPrice;
+
+    @Column(nullable = false)
+    private Instant validFrom;
+
+    private Instant validTo;
+
+    public ItemPriceVersion() {
+    }
+
+    public ItemPriceVersion(Long itemId, BigDecimal unitPrice, Instant validFrom) {
+        this.itemId = itemId;
+        this.unitPrice = unitPrice;
+        this.validFrom = validFrom;
+    }
+
+    /**
+     * Copies the version without its id, for writing from another thread.
+     * @return A new transient version
+     */
+    public ItemPriceVersion copy() {
+        ItemPriceVersion copy = new ItemPriceVersion(itemId, unitPrice, validFrom);
+        copy.validTo = validTo;
+        return copy;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
+    public Instant getValidFrom() {
+        return validFrom;
+    }
+
+    public Instant getValidTo() {
+        return validTo;
+    }
+
+    public void setValidTo(Instant validTo) {
+        this.validTo = validTo;
+    }
+}
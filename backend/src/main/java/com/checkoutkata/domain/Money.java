@@ -0,0 +1,80 @@
+package com.checkoutkata.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amount of money held as a whole number of minor units (pence or cents).
+ * Amounts are converted from {@link BigDecimal} once, rounding half up to two
+ * decimal places, so pricing arithmetic is plain long math. Overflow throws
+ * {@link ArithmeticException} instead of wrapping.
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+
+    /** Number of decimal places of the minor unit. */
+    public static final int SCALE = 2;
+
+    /** Rounding applied when an amount has more than {@link #SCALE} decimal places. */
+    public static final RoundingMode ROUNDING = RoundingMode.HALF_UP;
+
+    public static final Money ZERO = new Money(0);
+
+    /**
+     * Converts a decimal amount to minor units.
+     * @param amount Decimal amount, e.g. 0.45
+     * @return The amount in minor units, e.g. 45
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static Money of(BigDecimal amount) {
+        return new Money(toMinorUnits(amount));
+    }
+
+    /**
+     * Converts a decimal amount to minor units without allocating a Money.
+     * @param amount Decimal amount, e.g. 0.45
+     * @return The amount in minor units, e.g. 45
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(SCALE, ROUNDING).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Creates an amount from minor units.
+     * @param minorUnits Amount in minor units
+     * @return The amount
+     */
+    public static Money ofMinor(long minorUnits) {
+        return new Money(minorUnits);
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money times(long quantity) {
+        return new Money(Math.multiplyExact(minorUnits, quantity));
+    }
+
+    /**
+     * Converts the amount back to a decimal with {@link #SCALE} decimal places.
+     * @return The amount as BigDecimal
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -1,8 +1,11 @@
 package com.checkoutkata.domain;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
 public class Offer {
@@ -11,13 +14,27 @@ public class Offer {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OfferType type = OfferType.MULTI_BUY;
+
     private int quantity;
 
     private BigDecimal totalPrice;
 
-    @OneToOne
+    private int freeQuantity;
+
+    @Column(precision = 5, scale = 2)
+    private BigDecimal percentOff;
+
+    @ManyToOne
     private Item item;
 
+    @ManyToMany
+    @JoinTable(name = "offer_bundle_items")
+    @BatchSize(size = 100)
+    private List<Item> bundleItems = new ArrayList<>();
+
     public Offer() {
 
     }
@@ -28,6 +45,11 @@ public class Offer {
         this.totalPrice = totalPrice;
     }
 
+    public Offer(OfferType type, Item item, int quantity, BigDecimal totalPrice) {
+        this(item, quantity, totalPrice);
+        this.type = type;
+    }
+
     public Long getId() {
         return id;
     }
@@ -36,6 +58,14 @@ public class Offer {
         this.id = id;
     }
 
+    public OfferType getType() {
+        return type;
+    }
+
+    public void setType(OfferType type) {
+        this.type = type;
+    }
+
     public int getQuantity() {
         return quantity;
     }
@@ -52,6 +82,22 @@ public class Offer {
         this.totalPrice = totalPrice;
     }
 
+    public int getFreeQuantity() {
+        return freeQuantity;
+    }
+
+    public void setFreeQuantity(int freeQuantity) {
+        this.freeQuantity = freeQuantity;
+    }
+
+    public BigDecimal getPercentOff() {
+        return percentOff;
+    }
+
+    public void setPercentOff(BigDecimal percentOff) {
+        this.percentOff = percentOff;
+    }
+
     public Item getItem() {
         return item;
     }
@@ -59,4 +105,12 @@ public class Offer {
     public void setItem(Item item) {
         this.item = item;
     }
+
+    public List<Item> getBundleItems() {
+        return bundleItems;
+    }
+
+    public void setBundleItems(List<Item> bundleItems) {
+        this.bundleItems = bundleItems;
+    }
 }
@@ -0,0 +1,19 @@
+package com.checkoutkata.domain;
+
+/**
+ * Kinds of promotion an {@link Offer} can express and the offer fields each one uses.
+ */
+public enum OfferType {
+
+    /** "quantity items for totalPrice", e.g. 3 for 1.30. Several per item form multi-buy tiers. */
+    MULTI_BUY,
+
+    /** Buy "quantity" items and get "freeQuantity" more for free, e.g. buy 2 get 1 free. */
+    BUY_X_GET_Y,
+
+    /** "percentOff" percent off the unit price of every item. */
+    PERCENT_OFF,
+
+    /** The item plus every item in "bundleItems", one of each, for totalPrice. */
+    BUNDLE
+}
@@ -0,0 +1,178 @@
+package com.checkoutkata.domain;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Terms of an offer during [validFrom, validTo). The current terms have no
+ * validTo. Items are referred to by id only, so the history outlives deleted
+ * items and offers.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_offer_version_offer", columnList = "offerId, validFrom"))
+public class OfferVersion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "offer_version_seq")
+    @SequenceGenerator(name = "offer_version_seq", sequenceName = "offer_version_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long offerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OfferType type;
+
+    @Column(nullable = false)
+    private Long itemId;
+
+    private int quantity;
+
+    private BigDecimal totalPrice;
+
+    private int freeQuantity;
+
+    @Column(precision = 5, scale = 2)
+    private BigDecimal percentOff;
+
+    /** Comma-separated ids of the bundle items, empty for other offer types. */
+    @Column(nullable = false, length = 2000)
+    private String bundleItemIds = "";
+
+    @Column(nullable = false)
+    private Instant validFrom;
+
+    private Instant validTo;
+
+    public OfferVersion() {
+    }
+
+    /**
+     * Captures the current terms of an offer.
+     * @param offer The offer, with its item and bundle items
+     * @param validFrom Start of the version
+     */
+    public OfferVersion(Offer offer, Instant validFrom) {
+        this.offerId = offer.getId();
+        this.type = offer.getType() == null ? OfferType.MULTI_BUY : offer.getType();
+        this.itemId = offer.getItem().getId();
+        this.quantity = offer.getQuantity();
+        this.totalPrice = offer.getTotalPrice();
+        this.freeQuantity = offer.getFreeQuantity();
+        this.percentOff = offer.getPercentOff();
+        // Sorted, so the same bundle loaded in another order has the same terms
+        this.bundleItemIds = String.join(",", offer.getBundleItems().stream()
+                .map(Item::getId).sorted().map(String::valueOf).toList());
+        this.validFrom = validFrom;
+    }
+
+    /**
+     * Copies the version without its id, for writing from another thread.
+     * @return A new transient version
+     */
+    public OfferVersion copy() {
+        OfferVersion copy = new OfferVersion();
+        copy.offerId = offerId;
+        copy.type = type;
+        copy.itemId = itemId;
+        copy.quantity = quantity;
+        copy.totalPrice = totalPrice;
+        copy.freeQuantity = freeQuantity;
+        copy.percentOff = percentOff;
+        copy.bundleItemIds = bundleItemIds;
+        copy.validFrom = validFrom;
+        copy.validTo = validTo;
+        return copy;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getOfferId() {
+        return offerId;
+    }
+
+    public OfferType getType() {
+        return type;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getTotalPrice() {
+        return totalPrice;
+    }
+
+    public int getFreeQuantity() {
+        return freeQuantity;
+    }
+
+    public BigDecimal getPercentOff() {
+        return percentOff;
+    }
+
+    public List<Long> getBundleItemIds() {
+        return bundleItemIds.isEmpty() ? List.of() : Arrays.stream(bundleItemIds.split(",")).map(Long::valueOf).toList();
+    }
+
+    public Instant getValidFrom() {
+        return validFrom;
+    }
+
+    public Instant getValidTo() {
+        return validTo;
+    }
+
+    public void setValidTo(Instant validTo) {
+        this.validTo = validTo;
+    }
+
+    /**
+     * Whether these are the same terms as another version, ignoring validity.
+     * @param other Another version of the offer
+     * @return true if pricing with either gives the same result
+     */
+    public boolean hasSameTerms(OfferVersion other) {
+        return type == other.type
+                && itemId.equals(other.itemId)
+                && quantity == other.quantity
+                && compare(totalPrice, other.totalPrice)
+                && freeQuantity == other.freeQuantity
+                && compare(percentOff, other.percentOff)
+                && bundleItemIds.equals(other.bundleItemIds);
+    }
+
+    /**
+     * Rebuilds a detached offer with these terms, for compiling a past catalog.
+     * @return A transient offer
+     */
+    public Offer toOffer() {
+        Offer offer = new Offer(type, itemReference(itemId), quantity, totalPrice);
+        offer.setId(offerId);
+        offer.setFreeQuantity(freeQuantity);
+        offer.setPercentOff(percentOff);
+        offer.setBundleItems(getBundleItemIds().stream().map(OfferVersion::itemReference).toList());
+        return offer;
+    }
+
+    private static Item itemReference(Long itemId) {
+        Item item = new Item();
+        item.setId(itemId);
+        return item;
+    }
+
+    private static boolean compare(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
+}
@@ -0,0 +1,91 @@
+package com.checkoutkata.domain;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A checked out cart, recorded as priced at checkout. Orders are never updated;
+ * lines copy the item name and prices so the record does not change with the catalog.
+ */
+@Entity
+@Immutable
+@Table(name = "orders", indexes = @Index(name = "idx_order_cart", columnList = "cartId"))
+public class Order {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_seq")
+    @SequenceGenerator(name = "order_seq", sequenceName = "order_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String cartId;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal bundleSavings;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal savings;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal total;
+
+    @OneToMany(mappedBy = "order", cascade = CascadeType.PERSIST)
+    @OrderBy("id")
+    private List<OrderLine> lines = new ArrayList<>();
+
+    public Order() {
+    }
+
+    public Order(String cartId, Instant createdAt, BigDecimal bundleSavings, BigDecimal savings, BigDecimal total) {
+        this.cartId = cartId;
+        this.createdAt = createdAt;
+        this.bundleSavings = bundleSavings;
+        this.savings = savings;
+        this.total = total;
+    }
+
+    /**
+     * Adds a line to the order before it is saved.
+     * @param line The line to add
+     */
+    public void addLine(OrderLine line) {
+        line.setOrder(this);
+        lines.add(line);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getCartId() {
+        return cartId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public BigDecimal getBundleSavings() {
+        return bundleSavings;
+    }
+
+    public BigDecimal getSavings() {
+        return savings;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,106 @@
+package com.checkoutkata.domain;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+
+/**
+ * One priced line of an {@link Order}. Refers to the item by id only and copies
+ * its name and unit price, so the line outlives changes to the item.
+ */
+@Entity
+@Immutable
+@Table(indexes = @Index(name = "idx_order_line_order", columnList = "order_id"))
+public class OrderLine {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_line_seq")
+    @SequenceGenerator(name = "order_line_seq", sequenceName = "order_line_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    private Order order;
+
+    @Column(nullable = false)
+    private Long itemId;
+
+    @Column(nullable = false)
+    private String name;
+
+    private int quantity;
+
+    @Column(nullable = false, precision = 6, scale = 2)
+    private BigDecimal unitPrice;
+
+    /** Applied offer groups, e.g. "2 x 3 for 0.75"; empty if none applied. */
+    @Column(nullable = false)
+    private String offers;
+
+    private int remainder;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal savings;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal total;
+
+    public OrderLine() {
+    }
+
+    public OrderLine(Long itemId, String name, int quantity, BigDecimal unitPrice, String offers, int remainder,
+                     BigDecimal savings, BigDecimal total) {
+        this.itemId = itemId;
+        this.name = name;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+        this.offers = offers;
+        this.remainder = remainder;
+        this.savings = savings;
+        this.total = total;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    void setOrder(Order order) {
+        this.order = order;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
+    public String getOffers() {
+        return offers;
+    }
+
+    public int getRemainder() {
+        return remainder;
+    }
+
+    public BigDecimal getSavings() {
+        return savings;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,9 @@
+package com.checkoutkata.dto;
+
+import java.util.List;
+
+/**
+ * Price and offer changes applied together as one catalog version.
+ */
+public record BulkPriceUpdate(List<PriceChange> prices, List<OfferChange> offers) {
+}
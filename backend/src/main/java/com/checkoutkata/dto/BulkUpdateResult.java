@@ -0,0 +1,10 @@
+package com.checkoutkata.dto;
+
+/**
+ * Outcome of a bulk price update.
+ * @param itemsUpdated Items whose price was changed
+ * @param offersUpdated Offers whose terms were changed
+ * @param catalogVersion Version of the price catalog published with the changes
+ */
+public record BulkUpdateResult(int itemsUpdated, int offersUpdated, long catalogVersion) {
+}
@@ -0,0 +1,12 @@
+package com.checkoutkata.dto;
+
+import com.checkoutkata.domain.CartItem;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Cart contents together with the cart total, priced in the same call.
+ */
+public record CartSummary(List<CartItem> items, BigDecimal total) {
+}
@@ -0,0 +1,33 @@
+package com.checkoutkata.dto;
+
+import com.checkoutkata.domain.Item;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Change of a cart pushed to its subscribers. Quantities and amounts are the
+ * new values rather than deltas, so applying an update twice is harmless.
+ * <ul>
+ *     <li>{@code SNAPSHOT}: lines holds every line of the cart, replacing what the client has</li>
+ *     <li>{@code CHANGE}: lines holds the changed lines only; a quantity of 0 means the line was removed</li>
+ *     <li>{@code RESYNC}: the total is not known, the client should fetch the cart again</li>
+ * </ul>
+ */
+public record CartUpdate(Type type, String cartId, List<Line> lines, BigDecimal total) {
+
+    public enum Type { SNAPSHOT, CHANGE, RESYNC }
+
+    /**
+     * New state of one cart line. The line total is null for items priced
+     * together in a bundle, whose price only shows in the cart total.
+     * The item and line id are null for removed lines; the line id is also
+     * null for lines of in-memory carts not yet written to the database.
+     */
+    public record Line(Long id, Long itemId, Item item, int quantity, BigDecimal lineTotal) {
+    }
+
+    public static CartUpdate resync(String cartId) {
+        return new CartUpdate(Type.RESYNC, cartId, List.of(), null);
+    }
+}
@@ -0,0 +1,42 @@
+package com.checkoutkata.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing, ordered by id.
+ * Pass {@code nextCursor} as the {@code after} parameter to fetch the next page;
+ * it is null on the last page.
+ */
+public record CursorPage<T>(List<T> content, Long nextCursor) {
+
+    /** Largest page a client may request. */
+    public static final int MAX_LIMIT = 1000;
+
+    /**
+     * Builds a page from rows fetched with one row more than the limit,
+     * the extra row only telling whether another page follows.
+     * @param rows Rows ordered by id, at most limit + 1
+     * @param limit Requested page size
+     * @param id Function extracting the id of a row
+     * @return The page
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, Function<T, Long> id) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> content = rows.subList(0, limit);
+        return new CursorPage<>(List.copyOf(content), id.apply(content.get(limit - 1)));
+    }
+
+    /**
+     * Validates a requested page size.
+     * @param limit Requested page size
+     * @throws IllegalArgumentException if not between 1 and {@link #MAX_LIMIT}
+     */
+    public static void validateLimit(int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Page limit must be between 1 and " + MAX_LIMIT);
+        }
+    }
+}
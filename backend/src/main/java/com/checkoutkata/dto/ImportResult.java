@@ -0,0 +1,16 @@
+package com.checkoutkata.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk catalog import.
+ * @param read Records read from the input
+ * @param imported Records inserted or updated
+ * @param rejected Records skipped because they failed validation or referenced an unknown item
+ * @param errors The first rejection reasons, at most 20
+ * @param durationMillis Wall-clock duration of the import
+ * @param recordsPerSecond Read throughput over the whole import
+ */
+public record ImportResult(long read, long imported, long rejected, List<String> errors,
+                           long durationMillis, long recordsPerSecond) {
+}
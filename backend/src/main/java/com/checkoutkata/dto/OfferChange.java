@@ -0,0 +1,10 @@
+package com.checkoutkata.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * New terms of one offer in a bulk price update. Null fields are left unchanged.
+ */
+public record OfferChange(Long offerId, Integer quantity, BigDecimal totalPrice,
+                          Integer freeQuantity, BigDecimal percentOff) {
+}
@@ -0,0 +1,9 @@
+package com.checkoutkata.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * New unit price of one item in a bulk price update.
+ */
+public record PriceChange(Long itemId, BigDecimal unitPrice) {
+}
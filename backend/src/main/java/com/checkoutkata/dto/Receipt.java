@@ -0,0 +1,24 @@
+package com.checkoutkata.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Itemized receipt of a checked out cart. {@code total} is the sum of the line
+ * totals less {@code bundleSavings}; {@code savings} includes both.
+ */
+public record Receipt(Long orderId, String cartId, Instant createdAt, List<ReceiptLine> lines,
+                      BigDecimal bundleSavings, BigDecimal savings, BigDecimal total) {
+
+    /**
+     * Returns this receipt numbered with the order it was recorded as.
+     * @param orderId ID of the order
+     * @param cartId ID of the checked out cart
+     * @param createdAt Moment of the checkout
+     * @return The numbered receipt
+     */
+    public Receipt forOrder(Long orderId, String cartId, Instant createdAt) {
+        return new Receipt(orderId, cartId, createdAt, lines, bundleSavings, savings, total);
+    }
+}
@@ -0,0 +1,20 @@
+package com.checkoutkata.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * One line of a receipt: the offer groups applied to the item, the units left
+ * at unit price, and what the line costs and saves against the unit price.
+ * Lines of items in a cross-item bundle carry no groups; their discount is
+ * given once for the receipt in {@link Receipt#bundleSavings()}.
+ */
+public record ReceiptLine(Long itemId, String name, int quantity, BigDecimal unitPrice, List<OfferGroup> offerGroups,
+                          int remainder, BigDecimal savings, BigDecimal total) {
+
+    /**
+     * A deal applied {@code times} times, each covering {@code quantity} units for {@code price}.
+     */
+    public record OfferGroup(int quantity, BigDecimal price, int times) {
+    }
+}
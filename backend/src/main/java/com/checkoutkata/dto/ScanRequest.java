@@ -0,0 +1,7 @@
+package com.checkoutkata.dto;
+
+/**
+ * One entry of a batch scan: an item and how many units of it were scanned.
+ */
+public record ScanRequest(Long itemId, int quantity) {
+}
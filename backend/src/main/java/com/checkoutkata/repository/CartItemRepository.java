@@ -1,12 +1,84 @@
 package com.checkoutkata.repository;
 
 import com.checkoutkata.domain.CartItem;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * Cart lines are always read with their item joined in the same statement; the
+ * eager item would otherwise be loaded with a select per line.
+ */
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
-    Optional<CartItem> findByItemId(Long itemId);
+
+    @EntityGraph(attributePaths = "item")
+    Optional<CartItem> findByCartIdAndItemId(String cartId, Long itemId);
+
+    /**
+     * Loads the lines of a cart together with their items in one query.
+     * @param cartId ID of the cart
+     * @return The cart lines in insertion order
+     */
+    @Query("select c from CartItem c join fetch c.item where c.cartId = :cartId order by c.id")
+    List<CartItem> findByCartId(@Param("cartId") String cartId);
+
+    @EntityGraph(attributePaths = "item")
+    List<CartItem> findByCartIdAndItemIdIn(String cartId, Collection<Long> itemIds);
+
+    /**
+     * Adds to the quantity of an item in a cart in one statement, creating its line
+     * if needed, so a concurrent change through the reactive API is never lost.
+     * Each insert takes a whole value of the pooled cart_item_seq, like
+     * {@link ReactiveCartItemRepository#addQuantity}.
+     * @param cartId ID of the cart
+     * @param itemId ID of an existing item
+     * @param delta Quantity to add, positive
+     * @return Number of lines changed, 0 if the quantity would overflow
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(nativeQuery = true, value = "MERGE INTO cart_item c USING (VALUES (CAST(:cartId AS VARCHAR(64)), "
+            + "CAST(:itemId AS BIGINT), CAST(:delta AS INT))) s (cart_id, item_id, delta) "
+            + "ON c.cart_id = s.cart_id AND c.item_id = s.item_id "
+            + "WHEN MATCHED AND c.quantity <= 2147483647 - s.delta THEN UPDATE SET quantity = c.quantity + s.delta "
+            + "WHEN NOT MATCHED THEN INSERT (id, cart_id, item_id, quantity) "
+            + "VALUES (NEXT VALUE FOR cart_item_seq, s.cart_id, s.item_id, s.delta)")
+    int addQuantity(@Param("cartId") String cartId, @Param("itemId") Long itemId, @Param("delta") int delta);
+
+    /**
+     * Decreases the quantity of a line that keeps at least one unit.
+     * @return Number of lines changed, 0 if the line does not exist or would be emptied
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update CartItem c set c.quantity = c.quantity - :by "
+            + "where c.cartId = :cartId and c.item.id = :itemId and c.quantity > :by")
+    int decreaseQuantity(@Param("cartId") String cartId, @Param("itemId") Long itemId, @Param("by") int by);
+
+    /**
+     * Deletes the line of an item from a cart if it holds at most the given quantity,
+     * so a line that grew concurrently is not emptied.
+     * @return Number of lines deleted, 0 or 1
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from CartItem c where c.cartId = :cartId and c.item.id = :itemId and c.quantity <= :atMost")
+    int deleteLineIfAtMost(@Param("cartId") String cartId, @Param("itemId") Long itemId, @Param("atMost") int atMost);
+
+    /**
+     * Deletes the line of an item from a cart.
+     * @return Number of lines deleted, 0 or 1
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from CartItem c where c.cartId = :cartId and c.item.id = :itemId")
+    int deleteByCartIdAndItemId(@Param("cartId") String cartId, @Param("itemId") Long itemId);
+
+    @Modifying
+    @Query("delete from CartItem c where c.cartId = :cartId")
+    int deleteByCartId(@Param("cartId") String cartId);
 }
@@ -0,0 +1,25 @@
+package com.checkoutkata.repository;
+
+import com.checkoutkata.domain.ItemPriceVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface ItemPriceVersionRepository extends JpaRepository<ItemPriceVersion, Long> {
+
+    List<ItemPriceVersion> findAllByOrderByValidFromAsc();
+
+    /**
+     * Ends the version of an item starting at the given moment.
+     * @return Number of versions changed, 0 if it is not written yet
+     */
+    @Modifying
+    @Query("update ItemPriceVersion v set v.validTo = :validTo where v.itemId = :itemId and v.validFrom = :validFrom")
+    int close(@Param("itemId") Long itemId, @Param("validFrom") Instant validFrom, @Param("validTo") Instant validTo);
+}
@@ -1,13 +1,39 @@
 package com.checkoutkata.repository;
 
-import com.checkoutkata.domain.Item;
 import com.checkoutkata.domain.Offer;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface OfferRepository extends JpaRepository<Offer, Long> {
-    Optional<Offer> findByItem(Item item);
+    @Query("select distinct o from Offer o join fetch o.item left join fetch o.bundleItems")
+    List<Offer> findAllWithBundleItems();
+
+    @EntityGraph(attributePaths = "item")
+    List<Offer> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("select o from Offer o join fetch o.item order by o.id")
+    Stream<Offer> streamAll();
+
+    /**
+     * Loads the bundle items of offers already in the persistence context with one query.
+     * @param offers Managed offers
+     * @return The same offers, their bundle items initialized
+     */
+    @Query("select distinct o from Offer o left join fetch o.bundleItems where o in :offers")
+    List<Offer> fetchBundleItems(@Param("offers") Collection<Offer> offers);
 }
@@ -0,0 +1,25 @@
+package com.checkoutkata.repository;
+
+import com.checkoutkata.domain.OfferVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface OfferVersionRepository extends JpaRepository<OfferVersion, Long> {
+
+    List<OfferVersion> findAllByOrderByValidFromAsc();
+
+    /**
+     * Ends the version of an offer starting at the given moment.
+     * @return Number of versions changed, 0 if it is not written yet
+     */
+    @Modifying
+    @Query("update OfferVersion v set v.validTo = :validTo where v.offerId = :offerId and v.validFrom = :validFrom")
+    int close(@Param("offerId") Long offerId, @Param("validFrom") Instant validFrom, @Param("validTo") Instant validTo);
+}
@@ -0,0 +1,9 @@
+package com.checkoutkata.repository;
+
+import com.checkoutkata.domain.Order;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OrderRepository extends JpaRepository<Order, Long> {
+}
@@ -0,0 +1,149 @@
+package com.checkoutkata.repository;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import io.r2dbc.spi.Readable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+
+/**
+ * Non-blocking access to cart lines over R2DBC, for the reactive API.
+ * Every change is a single statement, so concurrent changes of the same cart
+ * never lose an update without taking the cart locks of the blocking API.
+ */
+@Repository
+public class ReactiveCartItemRepository {
+
+    private static final String LINE_QUERY = "SELECT c.id AS line_id, c.cart_id, c.quantity, "
+            + "i.id, i.name, i.unit_price FROM cart_item c JOIN item i ON i.id = c.item_id ";
+
+    /*
+     * Each insert takes a whole value of the pooled cart_item_seq for itself;
+     * Hibernate hands out the 50 ids below each value it fetches, so the two never collide.
+     */
+    private static final String ADD_QUANTITY = "MERGE INTO cart_item c USING (VALUES (CAST(:cartId AS VARCHAR(64)), "
+            + "CAST(:itemId AS BIGINT), CAST(:delta AS INT))) s (cart_id, item_id, delta) "
+            + "ON c.cart_id = s.cart_id AND c.item_id = s.item_id "
+            + "WHEN MATCHED AND c.quantity <= 2147483647 - s.delta THEN UPDATE SET quantity = c.quantity + s.delta "
+            + "WHEN NOT MATCHED THEN INSERT (id, cart_id, item_id, quantity) "
+            + "VALUES (NEXT VALUE FOR cart_item_seq, s.cart_id, s.item_id, s.delta)";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveCartItemRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Lines of a cart with their items, ordered by line id.
+     * @param cartId ID of the cart
+     * @return The cart lines
+     */
+    public Flux<CartItem> findByCartId(String cartId) {
+        return databaseClient.sql(LINE_QUERY + "WHERE c.cart_id = :cartId ORDER BY c.id")
+                .bind("cartId", cartId)
+                .map(ReactiveCartItemRepository::toCartItem)
+                .all();
+    }
+
+    /**
+     * Line of an item in a cart.
+     * @param cartId ID of the cart
+     * @param itemId ID of the item
+     * @return The line, or empty if the item is not in the cart
+     */
+    public Mono<CartItem> findByCartIdAndItemId(String cartId, Long itemId) {
+        return databaseClient.sql(LINE_QUERY + "WHERE c.cart_id = :cartId AND c.item_id = :itemId")
+                .bind("cartId", cartId)
+                .bind("itemId", itemId)
+                .map(ReactiveCartItemRepository::toCartItem)
+                .one();
+    }
+
+    /**
+     * Adds to the quantity of an item in a cart, creating its line if needed.
+     * A line created concurrently by another request is retried as an update.
+     * @param cartId ID of the cart
+     * @param itemId ID of an existing item
+     * @param delta Quantity to add, positive
+     * @return Completes once the change is written, or an IllegalArgumentException
+     *         if the quantity would overflow
+     */
+    public Mono<Void> addQuantity(String cartId, Long itemId, int delta) {
+        return databaseClient.sql(ADD_QUANTITY)
+                .bind("cartId", cartId)
+                .bind("itemId", itemId)
+                .bind("delta", delta)
+                .fetch()
+                .rowsUpdated()
+                .retryWhen(Retry.max(1).filter(DataIntegrityViolationException.class::isInstance))
+                .flatMap(rows -> rows == 0
+                        ? Mono.error(new IllegalArgumentException("Quantity too large for item: " + itemId))
+                        : Mono.<Void>empty());
+    }
+
+    /**
+     * Decreases the quantity of a line that keeps at least one unit.
+     * @return Number of lines changed, 0 if the line does not exist or would be emptied
+     */
+    public Mono<Long> decreaseQuantity(String cartId, Long itemId, int decreaseBy) {
+        return databaseClient.sql("UPDATE cart_item SET quantity = quantity - :by "
+                        + "WHERE cart_id = :cartId AND item_id = :itemId AND quantity > :by")
+                .bind("by", decreaseBy)
+                .bind("cartId", cartId)
+                .bind("itemId", itemId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Deletes the line of an item from a cart if it holds no more than a given quantity.
+     * @return Number of lines deleted, 0 if the line does not exist or holds more
+     */
+    public Mono<Long> deleteLineIfAtMost(String cartId, Long itemId, int atMost) {
+        return databaseClient.sql("DELETE FROM cart_item "
+                        + "WHERE cart_id = :cartId AND item_id = :itemId AND quantity <= :atMost")
+                .bind("cartId", cartId)
+                .bind("itemId", itemId)
+                .bind("atMost", atMost)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Deletes the line of an item from a cart.
+     * @return Number of lines deleted, 0 or 1
+     */
+    public Mono<Long> deleteByCartIdAndItemId(String cartId, Long itemId) {
+        return databaseClient.sql("DELETE FROM cart_item WHERE cart_id = :cartId AND item_id = :itemId")
+                .bind("cartId", cartId)
+                .bind("itemId", itemId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Deletes all lines of a cart.
+     * @return Number of lines deleted
+     */
+    public Mono<Long> deleteByCartId(String cartId) {
+        return databaseClient.sql("DELETE FROM cart_item WHERE cart_id = :cartId")
+                .bind("cartId", cartId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static CartItem toCartItem(Readable row) {
+        Item item = new Item(row.get("name", String.class), row.get("unit_price", BigDecimal.class));
+        item.setId(row.get("id", Long.class));
+        CartItem cartItem = new CartItem(row.get("cart_id", String.class), item, row.get("quantity", Integer.class));
+        cartItem.setId(row.get("line_id", Long.class));
+        return cartItem;
+    }
+}
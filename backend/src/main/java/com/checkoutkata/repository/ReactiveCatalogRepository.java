@@ -0,0 +1,150 @@
+package com.checkoutkata.repository;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.domain.OfferType;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking reads of items and offers over R2DBC, for the reactive API.
+ * Rows are mapped to detached {@link Item} and {@link Offer} instances so both
+ * API variants serialize the same shapes.
+ */
+@Repository
+public class ReactiveCatalogRepository {
+
+    /** Offers whose bundle items are loaded with one query. */
+    private static final int BUNDLE_BATCH_SIZE = 100;
+
+    private static final String OFFER_QUERY = "SELECT o.id, o.type, o.quantity, o.total_price, o.free_quantity, "
+            + "o.percent_off, i.id AS item_id, i.name AS item_name, i.unit_price AS item_unit_price "
+            + "FROM offer o JOIN item i ON i.id = o.item_id ";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveCatalogRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Item with the given id.
+     * @param id ID of the item
+     * @return The item, or empty if it does not exist
+     */
+    public Mono<Item> findItemById(Long id) {
+        return databaseClient.sql("SELECT id, name, unit_price FROM item WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveCatalogRepository::toItem)
+                .one();
+    }
+
+    /**
+     * Ids of the existing items among the given ids.
+     * @param ids Item ids, not empty
+     * @return The ids that belong to an item
+     */
+    public Flux<Long> findItemIdsIn(Collection<Long> ids) {
+        return databaseClient.sql("SELECT id FROM item WHERE id IN (:ids)")
+                .bind("ids", List.copyOf(ids))
+                .map(row -> row.get("id", Long.class))
+                .all();
+    }
+
+    /**
+     * Items ordered by id, starting after the given id.
+     * @param afterId ID of the last item already read
+     * @param limit Maximum number of items
+     * @return The items, emitted as they are read
+     */
+    public Flux<Item> findItemsAfter(long afterId, int limit) {
+        return databaseClient.sql("SELECT id, name, unit_price FROM item WHERE id > :after ORDER BY id LIMIT :limit")
+                .bind("after", afterId)
+                .bind("limit", limit)
+                .map(ReactiveCatalogRepository::toItem)
+                .all();
+    }
+
+    /**
+     * All items ordered by id, read as the subscriber requests them.
+     * @return The items
+     */
+    public Flux<Item> streamItems() {
+        return databaseClient.sql("SELECT id, name, unit_price FROM item ORDER BY id")
+                .map(ReactiveCatalogRepository::toItem)
+                .all();
+    }
+
+    /**
+     * Offers ordered by id with their item and bundle items, starting after the given id.
+     * @param afterId ID of the last offer already read
+     * @param limit Maximum number of offers
+     * @return The offers
+     */
+    public Flux<Offer> findOffersAfter(long afterId, int limit) {
+        return withBundleItems(databaseClient.sql(OFFER_QUERY + "WHERE o.id > :after ORDER BY o.id LIMIT :limit")
+                .bind("after", afterId)
+                .bind("limit", limit)
+                .map(ReactiveCatalogRepository::toOffer)
+                .all());
+    }
+
+    /**
+     * All offers ordered by id with their item and bundle items, read as the subscriber requests them.
+     * @return The offers
+     */
+    public Flux<Offer> streamOffers() {
+        return withBundleItems(databaseClient.sql(OFFER_QUERY + "ORDER BY o.id")
+                .map(ReactiveCatalogRepository::toOffer)
+                .all());
+    }
+
+    /**
+     * Loads the bundle items of each batch of offers with one query. Batches are
+     * processed one at a time, so at most two batches are held in memory.
+     */
+    private Flux<Offer> withBundleItems(Flux<Offer> offers) {
+        return offers.buffer(BUNDLE_BATCH_SIZE).concatMap(batch -> {
+            Map<Long, Offer> byId = batch.stream().collect(Collectors.toMap(Offer::getId, Function.identity()));
+            return databaseClient.sql("SELECT b.offer_id, i.id, i.name, i.unit_price FROM offer_bundle_items b "
+                            + "JOIN item i ON i.id = b.bundle_items_id WHERE b.offer_id IN (:ids)")
+                    .bind("ids", new ArrayList<>(byId.keySet()))
+                    .map(row -> {
+                        byId.get(row.get("offer_id", Long.class)).getBundleItems().add(toItem(row));
+                        return Boolean.TRUE;
+                    })
+                    .all()
+                    .thenMany(Flux.fromIterable(batch));
+        }, 1);
+    }
+
+    private static Item toItem(Readable row) {
+        Item item = new Item(row.get("name", String.class), row.get("unit_price", BigDecimal.class));
+        item.setId(row.get("id", Long.class));
+        return item;
+    }
+
+    private static Offer toOffer(Readable row) {
+        Item item = new Item(row.get("item_name", String.class), row.get("item_unit_price", BigDecimal.class));
+        item.setId(row.get("item_id", Long.class));
+        Offer offer = new Offer(OfferType.valueOf(row.get("type", String.class)), item,
+                row.get("quantity", Integer.class), row.get("total_price", BigDecimal.class));
+        offer.setId(row.get("id", Long.class));
+        Integer freeQuantity = row.get("free_quantity", Integer.class);
+        offer.setFreeQuantity(freeQuantity == null ? 0 : freeQuantity);
+        offer.setPercentOff(row.get("percent_off", BigDecimal.class));
+        offer.setBundleItems(new ArrayList<>());
+        return offer;
+    }
+}
@@ -0,0 +1,153 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.config.CacheConfig;
+import com.checkoutkata.dto.BulkPriceUpdate;
+import com.checkoutkata.dto.BulkUpdateResult;
+import com.checkoutkata.dto.OfferChange;
+import com.checkoutkata.dto.PriceChange;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/*
+ * BulkPriceUpdateService applies store-wide price and offer changes as one unit.
+ * Changes are staged and validated in memory, written in JDBC batches inside a
+ * single transaction, and published as a new catalog version once committed,
+ * so tills switch from the old prices to the new ones all at once.
+ */
+@Service
+public class BulkPriceUpdateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkPriceUpdateService.class);
+
+    private static final String UPDATE_PRICE = "UPDATE item SET unit_price = ? WHERE id = ?";
+    private static final String UPDATE_OFFER = "UPDATE offer SET quantity = COALESCE(?, quantity), "
+            + "total_price = COALESCE(?, total_price), free_quantity = COALESCE(?, free_quantity), "
+            + "percent_off = COALESCE(?, percent_off) WHERE id = ?";
+
+    private static final BigDecimal MAX_PRICE = new BigDecimal("9999.99");
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PricingEngine pricingEngine;
+    private final CacheManager cacheManager;
+    private final int batchSize;
+
+    public BulkPriceUpdateService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  PricingEngine pricingEngine, CacheManager cacheManager,
+                                  @Value("${catalog.update.batch-size:1000}") int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Update batch size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pricingEngine = pricingEngine;
+        this.cacheManager = cacheManager;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Applies price and offer changes atomically and publishes them as a new catalog version.
+     * Either every change is applied or none is.
+     * @param update The changes; a later change of the same item or offer replaces an earlier one
+     * @return The number of changed items and offers and the published catalog version
+     * @throws IllegalArgumentException if a change is invalid
+     * @throws EntityNotFoundException if an item or offer does not exist
+     */
+    public BulkUpdateResult apply(BulkPriceUpdate update) {
+        Objects.requireNonNull(update, "Update cannot be null");
+        Map<Long, Object[]> prices = stagePrices(update.prices() == null ? List.of() : update.prices());
+        Map<Long, Object[]> offers = stageOffers(update.offers() == null ? List.of() : update.offers());
+        if (prices.isEmpty() && offers.isEmpty()) {
+            throw new IllegalArgumentException("Update contains no changes");
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            write(UPDATE_PRICE, prices, "Item");
+            write(UPDATE_OFFER, offers, "Offer");
+        });
+
+        Cache items = cacheManager.getCache(CacheConfig.ITEMS_CACHE);
+        if (items != null) {
+            items.clear();
+        }
+        long version = pricingEngine.publish().version();
+        logger.info("Applied bulk update of {} prices and {} offers as catalog version {}",
+                prices.size(), offers.size(), version);
+        return new BulkUpdateResult(prices.size(), offers.size(), version);
+    }
+
+    /**
+     * Validates price changes and orders them by item id, so batches touch rows in index order.
+     */
+    private Map<Long, Object[]> stagePrices(List<PriceChange> changes) {
+        Map<Long, Object[]> staged = new TreeMap<>();
+        for (PriceChange change : changes) {
+            if (change == null || change.itemId() == null) {
+                throw new IllegalArgumentException("Item id cannot be null");
+            }
+            BigDecimal price = change.unitPrice();
+            if (price == null || price.signum() < 0 || price.compareTo(MAX_PRICE) > 0 || price.scale() > 2) {
+                throw new IllegalArgumentException("Invalid price for item " + change.itemId() + ": " + price);
+            }
+            staged.put(change.itemId(), new Object[]{price, change.itemId()});
+        }
+        return staged;
+    }
+
+    private Map<Long, Object[]> stageOffers(List<OfferChange> changes) {
+        Map<Long, Object[]> staged = new TreeMap<>();
+        for (OfferChange change : changes) {
+            if (change == null || change.offerId() == null) {
+                throw new IllegalArgumentException("Offer id cannot be null");
+            }
+            if (change.quantity() != null && change.quantity() <= 0) {
+                throw new IllegalArgumentException("Offer quantity must be positive");
+            }
+            if (change.totalPrice() != null && change.totalPrice().signum() < 0) {
+                throw new IllegalArgumentException("Offer price cannot be negative");
+            }
+            if (change.freeQuantity() != null && change.freeQuantity() <= 0) {
+                throw new IllegalArgumentException("Free quantity must be positive");
+            }
+            BigDecimal percentOff = change.percentOff();
+            if (percentOff != null && (percentOff.signum() <= 0 || percentOff.compareTo(HUNDRED) > 0)) {
+                throw new IllegalArgumentException("Percentage off must be between 0 and 100");
+            }
+            staged.put(change.offerId(), new Object[]{change.quantity(), change.totalPrice(),
+                    change.freeQuantity(), percentOff, change.offerId()});
+        }
+        return staged;
+    }
+
+    /**
+     * Writes staged rows in batches. A row matching nothing rolls the whole update back.
+     */
+    private void write(String sql, Map<Long, Object[]> staged, String entity) {
+        List<Object[]> rows = new ArrayList<>(staged.values());
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<Object[]> batch = rows.subList(from, Math.min(from + batchSize, rows.size()));
+            int[] counts = jdbcTemplate.batchUpdate(sql, batch);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    throw new EntityNotFoundException(entity + " not found: " + batch.get(i)[batch.get(i).length - 1]);
+                }
+            }
+        }
+    }
+}
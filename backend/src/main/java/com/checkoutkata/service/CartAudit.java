@@ -0,0 +1,78 @@
+package com.checkoutkata.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Audit trail of cart changes for a sample of the carts, written to the
+ * {@code checkout.audit} logger with the cart, item and quantity as key-value
+ * pairs so structured log output carries them as fields.
+ * <p>
+ * Carts are sampled by id, so a sampled cart is audited from its first scan to
+ * its last. Events are written once the change commits. With
+ * {@code cart.audit.sample-rate=0}, the default, recording costs one comparison.
+ */
+@Component
+public class CartAudit {
+
+    private static final Logger auditLogger = LoggerFactory.getLogger("checkout.audit");
+
+    /** Resolution of the sample rate. */
+    private static final int BUCKETS = 10_000;
+
+    private final int sampledBuckets;
+
+    public CartAudit(@Value("${cart.audit.sample-rate:0}") double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.sampledBuckets = (int) Math.round(sampleRate * BUCKETS);
+    }
+
+    /**
+     * Whether changes of the cart are audited.
+     * @param cartId ID of the cart
+     * @return true if the cart belongs to the sample
+     */
+    public boolean isAudited(String cartId) {
+        return sampledBuckets > 0 && Math.floorMod(cartId.hashCode(), BUCKETS) < sampledBuckets;
+    }
+
+    /**
+     * Records a change of a cart if the cart is audited, once the current transaction commits.
+     * @param event Kind of change, e.g. {@code scan} or {@code clear}
+     * @param cartId ID of the cart
+     * @param itemId ID of the changed item, null for changes of the whole cart
+     * @param quantity New quantity of the item, or number of scans of a batch
+     */
+    public void record(String event, String cartId, Long itemId, int quantity) {
+        if (!isAudited(cartId) || !auditLogger.isInfoEnabled()) {
+            return;
+        }
+        Runnable write = () -> auditLogger.atInfo()
+                .setMessage("Cart {} {}: item {}, quantity {}")
+                .addArgument(cartId)
+                .addArgument(event)
+                .addArgument(itemId)
+                .addArgument(quantity)
+                .addKeyValue("event", event)
+                .addKeyValue("cartId", cartId)
+                .addKeyValue("itemId", itemId)
+                .addKeyValue("quantity", quantity)
+                .log();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    write.run();
+                }
+            });
+        } else {
+            write.run();
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.checkoutkata.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only journal of cart changes, used by {@link MemoryCartStore} with
+ * {@code cart.journal.enabled=true}. Every change is appended as a small binary
+ * event carrying the new quantity of the line, so replaying events in order is
+ * idempotent, and together the segments are an audit trail of every cart.
+ * <p>
+ * Events go to memory-mapped segment files of {@code cart.journal.segment-size},
+ * named after their first sequence number. An appended event is in the page cache,
+ * so it survives a crash of the process, and it reaches the disk with the next
+ * {@link #force()}. Snapshots of all carts are written next to the segments; a
+ * restart reads the latest snapshot and replays the events from its sequence on.
+ * Segments covered by a snapshot are deleted, except the last
+ * {@code cart.journal.retained-segments}.
+ * <p>
+ * Appends are serialized by a {@link ReentrantLock} rather than a monitor, so a
+ * segment roll, which maps a new file, does not pin the carrier of a virtual
+ * thread. {@link #force()} and {@link #nextSequence()} do not take the lock:
+ * forcing a segment to disk never holds back appends.
+ * <p>
+ * Event layout: length (int, written last), sequence (long), time in epoch
+ * millis (long), type (byte), cart id length (short), cart id (UTF-8), item id
+ * (long), quantity (int), CRC32 of the preceding fields (int). A zero length ends a segment.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.journal.enabled", havingValue = "true")
+public class CartJournal implements AutoCloseable {
+
+    /** Kind of change. The quantity of an event is the new quantity of the line. */
+    public enum EventType { SCAN, DECREASE, REMOVE, CLEAR }
+
+    /**
+     * Change of a cart read back from the journal.
+     * @param sequence Position of the event in the journal
+     * @param time When the event was appended
+     * @param type Kind of change
+     * @param cartId ID of the cart
+     * @param itemId ID of the changed item, 0 for {@link EventType#CLEAR}
+     * @param quantity New quantity of the line, 0 if removed
+     */
+    public record Event(long sequence, Instant time, EventType type, String cartId, long itemId, int quantity) {
+    }
+
+    /**
+     * Cart lines as of a journal sequence.
+     * @param sequence First sequence not reflected in every cart of the snapshot
+     * @param carts Quantity per item id, per cart id
+     */
+    public record Snapshot(long sequence, Map<String, Map<Long, Integer>> carts) {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(CartJournal.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int SNAPSHOT_MAGIC = 0x43534e50;
+    private static final int LENGTH_BYTES = Integer.BYTES;
+    /** Event size without the cart id: sequence, time, type, id length, item id, quantity, CRC. */
+    private static final int FIXED_BYTES = Long.BYTES + Long.BYTES + 1 + Short.BYTES + Long.BYTES + Integer.BYTES
+            + Integer.BYTES;
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    private static final EventType[] TYPES = EventType.values();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int retainedSegments;
+    private final CRC32 crc = new CRC32();
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    // Replaced and advanced only while holding appendLock
+    private FileChannel channel;
+    private volatile MappedByteBuffer segment;
+    private volatile long nextSequence;
+
+    public CartJournal(@Value("${cart.journal.directory:data/cart-journal}") Path directory,
+                       @Value("${cart.journal.segment-size:64MB}") DataSize segmentSize,
+                       @Value("${cart.journal.retained-segments:16}") int retainedSegments) throws IOException {
+        if (segmentSize.toBytes() < 4096 || segmentSize.toBytes() > Integer.MAX_VALUE || retainedSegments < 0) {
+            throw new IllegalArgumentException("Segment size must be between 4KB and 2GB, retained segments not negative");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.retainedSegments = retainedSegments;
+        this.nextSequence = findNextSequence();
+        openSegment();
+        logger.info("Cart journal in {} continues at sequence {}", directory.toAbsolutePath(), nextSequence);
+    }
+
+    /**
+     * Appends a change of a cart. Callers append changes of a cart while holding
+     * its lock, so the events of a cart are in the order they were applied.
+     * @param type Kind of change
+     * @param cartId ID of the cart
+     * @param itemId ID of the changed item, 0 for {@link EventType#CLEAR}
+     * @param quantity New quantity of the line, 0 if removed
+     * @return Sequence of the event
+     */
+    public long append(EventType type, String cartId, long itemId, int quantity) {
+        byte[] id = cartId.getBytes(StandardCharsets.UTF_8);
+        int length = FIXED_BYTES + id.length;
+        appendLock.lock();
+        try {
+            if (segment.remaining() < LENGTH_BYTES + length + LENGTH_BYTES) {
+                roll();
+            }
+            MappedByteBuffer current = segment;
+            long sequence = nextSequence;
+            int start = current.position();
+            current.position(start + LENGTH_BYTES);
+            current.putLong(sequence)
+                    .putLong(System.currentTimeMillis())
+                    .put((byte) type.ordinal())
+                    .putShort((short) id.length)
+                    .put(id)
+                    .putLong(itemId)
+                    .putInt(quantity);
+            crc.reset();
+            crc.update(current.slice(start + LENGTH_BYTES, length - Integer.BYTES));
+            current.putInt((int) crc.getValue());
+            // The length makes the event visible to readers, so it goes last
+            current.putInt(start, length);
+            nextSequence = sequence + 1;
+            return sequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Sequence the next appended event gets.
+     * @return next sequence
+     */
+    public long nextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Writes the appended events of the current segment to disk. Events appended
+     * to a previous segment were forced when it was rolled.
+     */
+    public void force() {
+        segment.force();
+    }
+
+    /**
+     * Reads the events from a sequence on, in order. Each segment is read up to
+     * its end or a torn event. Meant for recovery before the first append and for
+     * reading the audit trail offline.
+     * @param fromSequence First sequence to read
+     * @param consumer Receives the events
+     */
+    public void read(long fromSequence, Consumer<Event> consumer) {
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= fromSequence) {
+                continue;
+            }
+            readSegment(segments.get(i), fromSequence, consumer);
+        }
+    }
+
+    /**
+     * Rebuilds the carts from the latest snapshot and the events appended after it.
+     * @param persisted Lines of a cart that is not in the snapshot, as last written to the database
+     * @return Quantity per item id of every cart in the snapshot or changed since
+     */
+    public Map<String, Map<Long, Integer>> recover(Function<String, Map<Long, Integer>> persisted) {
+        Snapshot snapshot = readSnapshot();
+        Map<String, Map<Long, Integer>> carts = new LinkedHashMap<>();
+        snapshot.carts().forEach((cartId, lines) -> carts.put(cartId, new LinkedHashMap<>(lines)));
+        int[] replayed = new int[1];
+        read(snapshot.sequence(), event -> {
+            Map<Long, Integer> lines = carts.computeIfAbsent(event.cartId(),
+                    cartId -> new LinkedHashMap<>(persisted.apply(cartId)));
+            switch (event.type()) {
+                case CLEAR -> lines.clear();
+                case REMOVE -> lines.remove(event.itemId());
+                case SCAN, DECREASE -> lines.put(event.itemId(), event.quantity());
+            }
+            replayed[0]++;
+        });
+        logger.info("Recovered {} carts from snapshot at sequence {} and {} journal events",
+                carts.size(), snapshot.sequence(), replayed[0]);
+        return carts;
+    }
+
+    /**
+     * Writes a snapshot of the carts and deletes the segments and snapshots it replaces.
+     * The cart states may include events from the sequence on, as long as each
+     * state was read after that sequence was taken: replay sets the lines to
+     * their latest quantities either way.
+     * @param sequence {@link #nextSequence()} taken before reading the first cart
+     * @param carts Quantity per item id, per cart id
+     */
+    public void writeSnapshot(long sequence, Map<String, Map<Long, Integer>> carts) {
+        Path target = directory.resolve(snapshotName(sequence));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            CRC32 checksum = new CRC32();
+            try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)), checksum))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(sequence);
+                out.writeInt(carts.size());
+                for (Map.Entry<String, Map<Long, Integer>> cart : carts.entrySet()) {
+                    out.writeUTF(cart.getKey());
+                    out.writeInt(cart.getValue().size());
+                    for (Map.Entry<Long, Integer> line : cart.getValue().entrySet()) {
+                        out.writeLong(line.getKey());
+                        out.writeInt(line.getValue());
+                    }
+                }
+                out.writeInt((int) checksum.getValue());
+            }
+            try (FileChannel file = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                file.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write cart snapshot " + target, e);
+        }
+        logger.info("Wrote snapshot of {} carts at sequence {}", carts.size(), sequence);
+        deleteReplaced(sequence);
+    }
+
+    /**
+     * Reads the latest readable snapshot.
+     * @return The snapshot, or an empty one at sequence 0 if there is none
+     */
+    public Snapshot readSnapshot() {
+        List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            try {
+                return readSnapshot(snapshots.get(i));
+            } catch (IOException e) {
+                logger.warn("Skipping unreadable cart snapshot {}: {}", snapshots.get(i), e.getMessage());
+            }
+        }
+        return new Snapshot(0, Map.of());
+    }
+
+    private Snapshot readSnapshot(Path file) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), checksum))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a cart snapshot");
+            }
+            long sequence = in.readLong();
+            int cartCount = in.readInt();
+            Map<String, Map<Long, Integer>> carts = new LinkedHashMap<>(cartCount * 2);
+            for (int c = 0; c < cartCount; c++) {
+                String cartId = in.readUTF();
+                int lineCount = in.readInt();
+                Map<Long, Integer> lines = new LinkedHashMap<>(lineCount * 2);
+                for (int l = 0; l < lineCount; l++) {
+                    lines.put(in.readLong(), in.readInt());
+                }
+                carts.put(cartId, lines);
+            }
+            int expected = (int) checksum.getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+            return new Snapshot(sequence, carts);
+        }
+    }
+
+    /** Reads the events of a segment up to its end marker or a torn event, left by a crash while appending. */
+    private void readSegment(Path file, long fromSequence, Consumer<Event> consumer) {
+        ByteBuffer buffer;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read cart journal segment " + file, e);
+        }
+        CRC32 checksum = new CRC32();
+        while (buffer.remaining() >= LENGTH_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length == 0) {
+                return;
+            }
+            if (length < FIXED_BYTES || length > buffer.remaining()) {
+                logger.warn("Cart journal segment {} ends with a torn event at offset {}", file, start);
+                return;
+            }
+            checksum.reset();
+            checksum.update(buffer.slice(start + LENGTH_BYTES, length - Integer.BYTES));
+            if (buffer.getInt(start + length) != (int) checksum.getValue()) {
+                logger.warn("Cart journal segment {} ends with a corrupt event at offset {}", file, start);
+                return;
+            }
+            long sequence = buffer.getLong();
+            long time = buffer.getLong();
+            int type = buffer.get();
+            byte[] id = new byte[buffer.getShort()];
+            buffer.get(id);
+            long itemId = buffer.getLong();
+            int quantity = buffer.getInt();
+            buffer.getInt();
+            if (sequence >= fromSequence) {
+                consumer.accept(new Event(sequence, Instant.ofEpochMilli(time), TYPES[type],
+                        new String(id, StandardCharsets.UTF_8), itemId, quantity));
+            }
+        }
+    }
+
+    private long findNextSequence() {
+        long next = readSnapshot().sequence();
+        List<Path> segments = segments();
+        if (!segments.isEmpty()) {
+            Path last = segments.get(segments.size() - 1);
+            next = Math.max(next, firstSequence(last));
+            long[] lastRead = {next - 1};
+            readSegment(last, 0, event -> lastRead[0] = event.sequence());
+            next = Math.max(next, lastRead[0] + 1);
+        }
+        return Math.max(next, 1);
+    }
+
+    /** Starts a new segment at the next sequence, so a torn tail of the previous run is never appended to. */
+    private void openSegment() {
+        Path file = directory.resolve(segmentName(nextSequence));
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open cart journal segment " + file, e);
+        }
+    }
+
+    private void roll() {
+        closeSegment();
+        openSegment();
+        logger.debug("Rolled cart journal to a new segment at sequence {}", nextSequence);
+    }
+
+    private void closeSegment() {
+        segment.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Could not close cart journal segment: {}", e.getMessage());
+        }
+    }
+
+    private void deleteReplaced(long sequence) {
+        List<Path> segments = segments();
+        // A segment is covered once the next one starts at or before the snapshot sequence
+        List<Path> covered = new ArrayList<>();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSequence(segments.get(i + 1)) <= sequence) {
+                covered.add(segments.get(i));
+            }
+        }
+        List<Path> deleted = new ArrayList<>(covered.subList(0, Math.max(0, covered.size() - retainedSegments)));
+        List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        deleted.addAll(snapshots.subList(0, Math.max(0, snapshots.size() - SNAPSHOTS_KEPT)));
+        for (Path file : deleted) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Could not delete {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private List<Path> segments() {
+        return list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+    }
+
+    private List<Path> list(String prefix, String suffix) {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> matching = new ArrayList<>(files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(suffix);
+            }).toList());
+            // Zero-padded sequence numbers sort by name
+            Collections.sort(matching);
+            return matching;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list cart journal directory " + directory, e);
+        }
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String segmentName(long sequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    private static String snapshotName(long sequence) {
+        return String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX);
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            closeSegment();
+        } finally {
+            appendLock.unlock();
+        }
+        logger.info("Closed cart journal at sequence {}", nextSequence);
+    }
+}
@@ -0,0 +1,66 @@
+package com.checkoutkata.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks serializing mutations of the same cart.
+ * Each cart id hashes to one of a fixed number of stripes, so tills working on
+ * different carts rarely wait on each other while two requests for the same cart
+ * never interleave their read-modify-write.
+ */
+@Component
+public class CartLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public CartLocks(@Value("${cart.lock-stripes:256}") int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Lock stripe count must be positive");
+        }
+        int size = Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new ReentrantLock[Math.max(size, 1)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = stripes.length - 1;
+    }
+
+    /**
+     * Locks the stripe of a cart until the current transaction completes.
+     * Outside a transaction there is no unit of work to protect, so nothing is locked.
+     * @param cartId ID of the cart about to be modified
+     */
+    public void lockForTransaction(String cartId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        ReentrantLock lock = stripeFor(cartId);
+        lock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Number of lock stripes, always a power of two.
+     * @return stripe count
+     */
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    private ReentrantLock stripeFor(String cartId) {
+        int hash = cartId.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[hash & mask];
+    }
+}
@@ -0,0 +1,98 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.dto.CartSummary;
+import com.checkoutkata.dto.Receipt;
+import com.checkoutkata.dto.ScanRequest;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Operations on shopping carts, as served by the cart endpoints.
+ * {@link CartService} keeps carts in the database; with {@code cart.store=memory},
+ * {@link WriteBehindCartService} keeps them in memory and persists them in the background.
+ */
+public interface CartOperations {
+
+    /**
+     * Adds one unit of an item to the cart.
+     * @param cartId ID of the cart
+     * @param itemId ID of the item to add
+     * @return The updated or created cart item
+     * @throws IllegalArgumentException if item not found or cart id invalid
+     */
+    CartItem addToCart(String cartId, Long itemId);
+
+    /**
+     * Adds a batch of scanned items to the cart at once.
+     * @param cartId ID of the cart
+     * @param scans Scanned items and quantities; duplicates are collapsed
+     * @return The cart contents and total after applying the batch
+     * @throws IllegalArgumentException if a quantity is not positive or an item is not found
+     */
+    CartSummary addToCart(String cartId, List<ScanRequest> scans);
+
+    /**
+     * Retrieves all items currently in the cart.
+     * @param cartId ID of the cart
+     * @return List of cart items
+     */
+    List<CartItem> getCartContents(String cartId);
+
+    /**
+     * Calculates the total price of all items in the cart, applying any available offers.
+     * @param cartId ID of the cart
+     * @return Total price as BigDecimal
+     */
+    BigDecimal calculateTotal(String cartId);
+
+    /**
+     * Calculates the total price of the items now in the cart with the prices and
+     * offers that were live at a past moment, e.g. to settle a refund.
+     * @param cartId ID of the cart
+     * @param asOf The moment whose prices and offers apply
+     * @return Total price as BigDecimal
+     * @throws IllegalArgumentException if the moment is in the future or before the recorded history
+     */
+    BigDecimal calculateTotal(String cartId, Instant asOf);
+
+    /**
+     * Sends the full contents and total of the cart to its subscribers.
+     * @param cartId ID of the cart
+     */
+    void publishSnapshot(String cartId);
+
+    /**
+     * Removes all items from the cart.
+     * @param cartId ID of the cart
+     */
+    void clearCart(String cartId);
+
+    /**
+     * Prices the cart once, records it as an order and clears it, all or nothing.
+     * @param cartId ID of the cart
+     * @return The itemized receipt of the order
+     * @throws IllegalArgumentException if the cart is empty
+     */
+    Receipt checkout(String cartId);
+
+    /**
+     * Completely removes an item from the cart regardless of quantity.
+     * @param cartId ID of the cart
+     * @param itemId ID of the item to remove
+     * @throws IllegalArgumentException if item not found in cart
+     */
+    void deleteCartItem(String cartId, Long itemId);
+
+    /**
+     * Decreases the quantity of an item in the cart, removing it if the quantity reaches zero.
+     * @param cartId ID of the cart
+     * @param itemId ID of the item
+     * @param decreaseBy Amount to decrease
+     * @return Updated cart item or null if item was removed
+     * @throws IllegalArgumentException if item not found or decreaseBy <= 0
+     */
+    CartItem deleteCartItemByQuantity(String cartId, Long itemId, int decreaseBy);
+}
@@ -2,199 +2,379 @@ package com.checkoutkata.service;
 
 import com.checkoutkata.domain.CartItem;
 import com.checkoutkata.domain.Item;
-import com.checkoutkata.domain.Offer;
+import com.checkoutkata.dto.CartSummary;
+import com.checkoutkata.dto.Receipt;
+import com.checkoutkata.dto.ScanRequest;
 import com.checkoutkata.repository.CartItemRepository;
 import com.checkoutkata.repository.ItemRepository;
-import com.checkoutkata.repository.OfferRepository;
+import io.micrometer.observation.annotation.Observed;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /*
- * CartService is responsible for managing the shopping cart.
+ * CartService is responsible for managing shopping carts.
  * It allows adding items, calculating totals, applying offers,
- * and managing cart contents.
+ * and managing cart contents. Every operation is scoped to a cart id,
+ * and mutations of the same cart are serialized through CartLocks.
+ * This is the default cart store (cart.store=database), see WriteBehindCartService
+ * for the in-memory one.
  */
 @Service
 @Transactional
-public class CartService {
+@Observed(name = "cart.service")
+@ConditionalOnProperty(name = "cart.store", havingValue = "database", matchIfMissing = true)
+public class CartService implements CartOperations {
 
     private static final Logger logger = LoggerFactory.getLogger(CartService.class);
 
+    /** Cart used by the endpoints that do not name a cart. */
+    public static final String DEFAULT_CART_ID = "default";
+
+    /** Attempts to decrease a line that changes concurrently through the reactive API. */
+    private static final int MAX_DECREASE_ATTEMPTS = 3;
+    /** Attempts of a scan whose new line may be inserted concurrently through the reactive API. */
+    private static final int MAX_SCAN_ATTEMPTS = 2;
+
     private final ItemRepository itemRepository;
+    private final ItemService itemService;
     private final CartItemRepository cartItemRepository;
-    private final OfferRepository offerRepository;
+    private final PricingEngine pricingEngine;
+    private final CartLocks cartLocks;
+    private final CartTotals cartTotals;
+    private final CartAudit cartAudit;
+    private final OrderService orderService;
+    private final TransactionTemplate transactionTemplate;
 
-    public CartService(ItemRepository itemRepository, CartItemRepository cartItemRepository, OfferRepository offerRepository) {
+    public CartService(ItemRepository itemRepository, ItemService itemService, CartItemRepository cartItemRepository,
+                       PricingEngine pricingEngine, CartLocks cartLocks, CartTotals cartTotals, CartAudit cartAudit,
+                       OrderService orderService, PlatformTransactionManager transactionManager) {
         this.itemRepository = itemRepository;
+        this.itemService = itemService;
         this.cartItemRepository = cartItemRepository;
-        this.offerRepository = offerRepository;
+        this.pricingEngine = pricingEngine;
+        this.cartLocks = cartLocks;
+        this.cartTotals = cartTotals;
+        this.cartAudit = cartAudit;
+        this.orderService = orderService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
-     * Adds an item to the cart. If the item already exists, increments its quantity.
+     * Adds an item to the cart. The line is created or its quantity incremented
+     * with a single atomic statement, so concurrent scans never lose an increment,
+     * including scans through the reactive API which take no cart lock.
+     * @param cartId ID of the cart
      * @param itemId ID of the item to add
      * @return The updated or created cart item
-     * @throws IllegalArgumentException if item not found
+     * @throws IllegalArgumentException if item not found or cart id invalid
      */
-    public CartItem addToCart(Long itemId) {
-        Item item = itemRepository.findById(itemId)
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public CartItem addToCart(String cartId, Long itemId) {
+        return retryingLineInserts(() -> scan(cartId, itemId));
+    }
+
+    private CartItem scan(String cartId, Long itemId) {
+        validateCartId(cartId);
+        Item item = itemService.getItemById(itemId)
                 .orElseThrow(() -> new IllegalArgumentException("Item not found: " + itemId));
 
-        CartItem cartItem = cartItemRepository.findByItemId(itemId)
-                .map(this::incrementQuantity)
-                .orElseGet(() -> createNewCartItem(item));
+        cartLocks.lockForTransaction(cartId);
+        addQuantity(cartId, itemId, 1);
+        // The line stays locked by the statement above until commit
+        CartItem cartItem = cartItemRepository.findByCartIdAndItemId(cartId, itemId)
+                .orElseThrow(() -> new IllegalStateException("Cart line vanished: " + cartId + "/" + itemId));
+        cartTotals.lineChanged(cartId, cartItem);
+        cartAudit.record("scan", cartId, itemId, cartItem.getQuantity());
 
-        logger.info("Added item to cart: {}, quantity: {}", item.getName(), cartItem.getQuantity());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Added item to cart {}: {}, quantity: {}", cartId, item.getName(), cartItem.getQuantity());
+        }
         return cartItem;
     }
 
+    /**
+     * Adds a batch of scanned items to the cart in one transaction.
+     * Duplicate item ids are collapsed and all items are checked with one query;
+     * each line is then created or incremented with one atomic statement.
+     * @param cartId ID of the cart
+     * @param scans Scanned items and quantities
+     * @return The cart contents and total after applying the batch
+     * @throws IllegalArgumentException if a quantity is not positive, an item is not found
+     *         or a line would hold more than Integer.MAX_VALUE units
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public CartSummary addToCart(String cartId, List<ScanRequest> scans) {
+        return retryingLineInserts(() -> scanBatch(cartId, scans));
+    }
+
+    private CartSummary scanBatch(String cartId, List<ScanRequest> scans) {
+        validateCartId(cartId);
+        Map<Long, Integer> deltas = collapseScans(scans);
+
+        Map<Long, Item> items = itemRepository.findAllById(deltas.keySet()).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        if (items.size() != deltas.size()) {
+            List<Long> missing = deltas.keySet().stream().filter(id -> !items.containsKey(id)).toList();
+            throw new IllegalArgumentException("Items not found: " + missing);
+        }
+
+        cartLocks.lockForTransaction(cartId);
+        long version = cartTotals.version(cartId);
+        deltas.forEach((itemId, delta) -> addQuantity(cartId, itemId, delta));
+
+        List<CartItem> contents = cartItemRepository.findByCartId(cartId);
+        BigDecimal total = pricingEngine.calculateTotal(contents);
+        cartTotals.cartReplaced(cartId, contents, version);
+        cartAudit.record("batch", cartId, null, scans.size());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Added batch of {} scans to cart {}: {} lines changed", scans.size(), cartId, deltas.size());
+        }
+        return new CartSummary(contents, total);
+    }
+
     /**
      * Retrieves all items currently in the cart.
+     * @param cartId ID of the cart
      * @return List of cart items
      */
-    public List<CartItem> getCartContents() {
-        List<CartItem> contents = cartItemRepository.findAll();
-        logger.info("Retrieved {} items from cart", contents.size());
+    @Override
+    public List<CartItem> getCartContents(String cartId) {
+        validateCartId(cartId);
+        List<CartItem> contents = cartItemRepository.findByCartId(cartId);
+        logger.debug("Retrieved {} items from cart {}", contents.size(), cartId);
         return contents;
     }
 
     /**
      * Calculates the total price of all items in the cart, applying any available offers.
+     * Served from the running total of the cart, which is only seeded from the
+     * cart lines on the first read or after prices or offers changed.
+     * @param cartId ID of the cart
      * @return Total price as BigDecimal
      */
-    public BigDecimal calculateTotal() {
-        BigDecimal total = cartItemRepository.findAll().stream()
-                .map(this::calculateItemTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        logger.info("Calculated cart total: {}", total);
+    @Override
+    public BigDecimal calculateTotal(String cartId) {
+        validateCartId(cartId);
+        Optional<BigDecimal> runningTotal = cartTotals.get(cartId);
+        if (runningTotal.isPresent()) {
+            return runningTotal.get();
+        }
+
+        cartLocks.lockForTransaction(cartId);
+        long version = cartTotals.version(cartId);
+        BigDecimal total = cartTotals.seed(cartId, cartItemRepository.findByCartId(cartId), version);
+        logger.debug("Calculated total for cart {}: {}", cartId, total);
         return total;
     }
 
     /**
-     * Increments the quantity of an existing cart item by 1.
-     * @param item The cart item to update
-     * @return The updated cart item after saving
+     * Calculates the total price of the items now in the cart with the prices and
+     * offers that were live at a past moment.
+     * @param cartId ID of the cart
+     * @param asOf The moment whose prices and offers apply
+     * @return Total price as BigDecimal
+     * @throws IllegalArgumentException if the moment is in the future or before the recorded history
      */
-    private CartItem incrementQuantity(CartItem item) {
-        item.setQuantity(item.getQuantity() + 1);
-        CartItem updated = cartItemRepository.save(item);
-        logger.info("Incremented quantity for item: {} to {}", item.getItem().getName(), updated.getQuantity());
-        return updated;
+    @Override
+    public BigDecimal calculateTotal(String cartId, Instant asOf) {
+        validateCartId(cartId);
+        BigDecimal total = pricingEngine.calculateTotal(cartItemRepository.findByCartId(cartId), asOf);
+        logger.debug("Calculated total for cart {} as of {}: {}", cartId, asOf, total);
+        return total;
     }
 
     /**
-     * Creates a new cart item with quantity 1.
-     * @param item The item to add to cart
-     * @return The newly created and saved cart item
+     * Sends the full contents and total of the cart to its subscribers, which
+     * then follow the cart through the changes published by {@link CartTotals}.
+     * @param cartId ID of the cart
      */
-    private CartItem createNewCartItem(Item item) {
-        CartItem cartItem = new CartItem();
-        cartItem.setItem(item);
-        cartItem.setQuantity(1);
-        CartItem saved = cartItemRepository.save(cartItem);
-        logger.info("Created new cart item for: {}", item.getName());
-        return saved;
+    @Override
+    public void publishSnapshot(String cartId) {
+        validateCartId(cartId);
+        cartLocks.lockForTransaction(cartId);
+        long version = cartTotals.version(cartId);
+        BigDecimal total = cartTotals.snapshot(cartId, cartItemRepository.findByCartId(cartId), version);
+        logger.info("Published snapshot of cart {} with total {}", cartId, total);
     }
 
     /**
-     * Calculates the total price for a cart item, applying any available offers.
-     * @param cartItem The cart item to calculate total for
-     * @return The total price for this item considering quantity and offers
+     * Removes all items from the cart.
+     * @param cartId ID of the cart
      */
-    private BigDecimal calculateItemTotal(CartItem cartItem) {
-        Item item = cartItem.getItem();
-        int quantity = cartItem.getQuantity();
-        BigDecimal total = offerRepository.findByItem(item)
-                .map(offer -> calculateWithOffer(offer, quantity, item.getUnitPrice()))
-                .orElseGet(() -> item.getUnitPrice().multiply(BigDecimal.valueOf(quantity)));
-
-        logger.info("Calculated total for item: {}, quantity: {}, total: {}",
-                item.getName(), quantity, total);
-        return total;
+    @Override
+    public void clearCart(String cartId) {
+        validateCartId(cartId);
+        cartLocks.lockForTransaction(cartId);
+        cartItemRepository.deleteByCartId(cartId);
+        cartTotals.cartCleared(cartId);
+        cartAudit.record("clear", cartId, null, 0);
+        logger.info("Cart {} cleared", cartId);
     }
 
     /**
-     * Calculates the total price for items when an offer is applicable.
-     * Handles partial offer applications by calculating both the offer price
-     * for complete groups and regular price for remaining items.
-     *
-     * @param offer     The offer to apply (contains quantity and special price)
-     * @param quantity  Total quantity of items
-     * @param unitPrice Regular price per item
-     * @return Total price after applying the offer
+     * Prices the cart once, records it as an order and clears it in one transaction,
+     * so the receipt holds exactly the lines that were removed from the cart.
+     * @param cartId ID of the cart
+     * @return The itemized receipt of the order
+     * @throws IllegalArgumentException if the cart is empty
      */
-    private BigDecimal calculateWithOffer(Offer offer, int quantity, BigDecimal unitPrice) {
-        int offerGroups = quantity / offer.getQuantity();
-        int remainder = quantity % offer.getQuantity();
-
-        BigDecimal offerTotal = BigDecimal.valueOf(offerGroups)
-                .multiply(offer.getTotalPrice());
-        BigDecimal remainderTotal = BigDecimal.valueOf(remainder)
-                .multiply(unitPrice);
-
-        BigDecimal total = offerTotal.add(remainderTotal);
-
-        logger.info("Applied offer: {} groups of {}, remainder: {}, total: {}",
-                offerGroups, offer.getQuantity(), remainder, total);
-        return total;
-    }
-
-    /**
-     * Removes all items from the cart.
-     */
-    public void clearCart() {
-        cartItemRepository.deleteAll();
-        logger.info("Cart cleared");
+    @Override
+    public Receipt checkout(String cartId) {
+        validateCartId(cartId);
+        cartLocks.lockForTransaction(cartId);
+        Receipt receipt = orderService.placeOrder(cartId, cartItemRepository.findByCartId(cartId));
+        cartItemRepository.deleteByCartId(cartId);
+        cartTotals.cartCleared(cartId);
+        cartAudit.record("checkout", cartId, null, receipt.lines().size());
+        logger.info("Cart {} checked out as order {}", cartId, receipt.orderId());
+        return receipt;
     }
 
     /**
      * Completely removes an item from the cart regardless of quantity.
+     * @param cartId ID of the cart
      * @param itemId ID of the item to remove
      * @throws IllegalArgumentException if item not found in cart
      */
-    public void deleteCartItem(Long itemId) {
-        CartItem cartItem = cartItemRepository.findByItemId(itemId)
-                .orElseThrow(() -> new IllegalArgumentException("Item not found in cart: " + itemId));
-
-        String itemName = cartItem.getItem().getName();
-        cartItemRepository.delete(cartItem);
-        logger.info("Removed item from cart: {}", itemName);
+    @Override
+    public void deleteCartItem(String cartId, Long itemId) {
+        validateCartId(cartId);
+        cartLocks.lockForTransaction(cartId);
+        if (cartItemRepository.deleteByCartIdAndItemId(cartId, itemId) == 0) {
+            throw new IllegalArgumentException("Item not found in cart: " + itemId);
+        }
+        cartTotals.lineRemoved(cartId, itemId);
+        cartAudit.record("remove", cartId, itemId, 0);
+        logger.debug("Removed item {} from cart {}", itemId, cartId);
     }
 
     /**
      * Decreases the quantity of an item in the cart by the specified amount.
-     * Removes the item if quantity reaches zero.
+     * Removes the item if quantity reaches zero. Both are single conditional
+     * statements, so a line grown concurrently through the reactive API is
+     * decreased rather than removed.
+     * @param cartId ID of the cart
      * @param itemId ID of the item
      * @param decreaseBy Amount to decrease
      * @return Updated cart item or null if item was removed
      * @throws IllegalArgumentException if item not found or decreaseBy <= 0
      */
-    public CartItem deleteCartItemByQuantity(Long itemId, int decreaseBy) {
+    @Override
+    public CartItem deleteCartItemByQuantity(String cartId, Long itemId, int decreaseBy) {
+        validateCartId(cartId);
         if (decreaseBy <= 0) {
             throw new IllegalArgumentException("Decrease amount must be positive");
         }
 
-        CartItem cartItem = cartItemRepository.findByItemId(itemId)
-                .orElseThrow(() -> new IllegalArgumentException("Item not found in cart: " + itemId));
+        cartLocks.lockForTransaction(cartId);
+        // Retried while the line changes between the two conditional statements
+        for (int attempt = 0; attempt < MAX_DECREASE_ATTEMPTS; attempt++) {
+            if (cartItemRepository.decreaseQuantity(cartId, itemId, decreaseBy) > 0) {
+                CartItem updated = cartItemRepository.findByCartIdAndItemId(cartId, itemId)
+                        .orElseThrow(() -> new IllegalStateException("Cart line vanished: " + cartId + "/" + itemId));
+                cartTotals.lineChanged(cartId, updated);
+                cartAudit.record("decrease", cartId, itemId, updated.getQuantity());
+                logger.debug("Decreased quantity of item {} in cart {} to {}", itemId, cartId, updated.getQuantity());
+                return updated;
+            }
+            if (cartItemRepository.deleteLineIfAtMost(cartId, itemId, decreaseBy) > 0) {
+                cartTotals.lineRemoved(cartId, itemId);
+                cartAudit.record("decrease", cartId, itemId, 0);
+                logger.debug("Removed item {} from cart {} (quantity reached zero)", itemId, cartId);
+                return null;
+            }
+            if (cartItemRepository.findByCartIdAndItemId(cartId, itemId).isEmpty()) {
+                throw new IllegalArgumentException("Item not found in cart: " + itemId);
+            }
+        }
+        throw new IllegalStateException("Cart line kept changing while decreasing: " + cartId + "/" + itemId);
+    }
 
-        int newQuantity = cartItem.getQuantity() - decreaseBy;
+    /**
+     * Validates a batch of scans and collapses duplicate item ids.
+     * @param scans Scanned items and quantities
+     * @return Quantity to add per item id, in order of first scan
+     * @throws IllegalArgumentException if an item id is missing, a quantity is not positive
+     *         or the quantities of an item add up past Integer.MAX_VALUE
+     */
+    static Map<Long, Integer> collapseScans(List<ScanRequest> scans) {
+        Objects.requireNonNull(scans, "Scans cannot be null");
+        Map<Long, Integer> deltas = new LinkedHashMap<>();
+        for (ScanRequest scan : scans) {
+            if (scan.itemId() == null) {
+                throw new IllegalArgumentException("Item id cannot be null");
+            }
+            if (scan.quantity() <= 0) {
+                throw new IllegalArgumentException("Scan quantity must be positive for item: " + scan.itemId());
+            }
+            try {
+                deltas.merge(scan.itemId(), scan.quantity(), Math::addExact);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Scan quantity too large for item: " + scan.itemId());
+            }
+        }
+        return deltas;
+    }
 
-        if (newQuantity <= 0) {
-            cartItemRepository.delete(cartItem);
-            logger.info("Removed item from cart: {} (quantity reached zero)", cartItem.getItem().getName());
-            return null;
+    /**
+     * Runs a scan in a transaction of its own. A line inserted concurrently through the
+     * reactive API, which takes no cart lock, makes the MERGE of the scan fail on the
+     * unique cart and item key and marks the transaction rollback-only, so the whole
+     * transaction is retried, this time updating the existing line.
+     */
+    private <T> T retryingLineInserts(Supplier<T> scan) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> scan.get());
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == MAX_SCAN_ATTEMPTS) {
+                    throw e;
+                }
+                logger.debug("Cart line inserted concurrently, retrying scan", e);
+            }
+        }
+    }
+
+    /**
+     * Adds to a cart line, rolling the transaction back if its quantity would overflow.
+     */
+    private void addQuantity(String cartId, Long itemId, int delta) {
+        if (cartItemRepository.addQuantity(cartId, itemId, delta) == 0) {
+            throw new IllegalArgumentException("Quantity too large for item: " + itemId);
         }
+    }
 
-        cartItem.setQuantity(newQuantity);
-        CartItem updatedItem = cartItemRepository.save(cartItem);
-        logger.info("Decreased quantity for item: {} from {} to {}",
-                cartItem.getItem().getName(), cartItem.getQuantity() + decreaseBy, newQuantity);
-        return updatedItem;
+    /**
+     * Validates the cart id is present and fits the cart id column.
+     * @param cartId Cart ID to validate
+     * @throws IllegalArgumentException if blank or longer than 64 characters
+     */
+    static void validateCartId(String cartId) {
+        if (cartId == null || cartId.isBlank()) {
+            throw new IllegalArgumentException("Cart id cannot be empty");
+        }
+        if (cartId.length() > 64) {
+            throw new IllegalArgumentException("Cart id cannot be longer than 64 characters");
+        }
     }
 
 }
@@ -0,0 +1,311 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Money;
+import com.checkoutkata.dto.CartUpdate;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Running totals of the carts, kept up to date by the cart mutations.
+ * A mutation re-prices only the line it changed and adjusts the total by the
+ * difference, so reading a total does not touch the cart lines at all.
+ * <p>
+ * Updates are applied after the mutating transaction commits. A total priced
+ * against an older catalog is dropped and seeded again on the next read.
+ * Lines of items taking part in a bundle are re-priced together whenever one
+ * of them changes.
+ * <p>
+ * Every applied change is also published to the subscribers of the cart, from
+ * inside the update of its running total so subscribers see changes in the
+ * order they were applied.
+ * <p>
+ * Carts changed through the reactive API, which takes no cart lock, are
+ * invalidated after their change commits. Each invalidation bumps a version
+ * stamp of the cart, and updates built from cart lines read before that
+ * stamp are dropped instead of applied, so a stale total is never kept.
+ * <p>
+ * Totals are held in a bounded, expiring Caffeine map ({@code cart.totals.spec}),
+ * so abandoned carts do not accumulate; an evicted total is seeded again on its
+ * next read.
+ */
+@Component
+public class CartTotals {
+
+    private final PricingEngine pricingEngine;
+    private final CartUpdates cartUpdates;
+    private final HotPathMetrics metrics;
+    private final Map<String, RunningTotal> totals;
+    /** Invalidation stamps, striped by cart id; carts sharing a stripe are only re-seeded more often. */
+    private final AtomicLongArray versions = new AtomicLongArray(1024);
+
+    public CartTotals(PricingEngine pricingEngine, CartUpdates cartUpdates, HotPathMetrics metrics,
+                      @Value("${cart.totals.spec:maximumSize=100000,expireAfterAccess=30m}") String spec) {
+        this.pricingEngine = pricingEngine;
+        this.cartUpdates = cartUpdates;
+        this.metrics = metrics;
+        this.totals = Caffeine.from(spec).<String, RunningTotal>build().asMap();
+    }
+
+    /**
+     * Returns the running total of a cart if it is known and still priced
+     * against the current catalog.
+     * @param cartId ID of the cart
+     * @return Optional containing the total, empty if it must be seeded first
+     */
+    public Optional<BigDecimal> get(String cartId) {
+        RunningTotal running = totals.get(cartId);
+        if (running == null || running.catalog != pricingEngine.getCatalog()) {
+            return Optional.empty();
+        }
+        return Optional.of(Money.ofMinor(running.total).toBigDecimal());
+    }
+
+    /**
+     * Returns the version stamp of a cart. Read it before reading the cart lines
+     * handed to {@link #seed}, {@link #snapshot} or {@link #cartReplaced}.
+     * @param cartId ID of the cart
+     * @return The current stamp
+     */
+    public long version(String cartId) {
+        return versions.get(stripe(cartId));
+    }
+
+    /**
+     * Prices all lines of a cart and starts tracking its running total.
+     * Callers must hold the cart lock so no mutation commits while seeding.
+     * @param cartId ID of the cart
+     * @param cartItems All lines of the cart
+     * @param version Stamp of the cart read before its lines, see {@link #version}
+     * @return The cart total
+     */
+    public BigDecimal seed(String cartId, Collection<CartItem> cartItems, long version) {
+        return Money.ofMinor(replace(cartId, cartItems, version, false).total).toBigDecimal();
+    }
+
+    /**
+     * Seeds the running total of a cart like {@link #seed} and sends all its
+     * lines to the subscribers of the cart.
+     * Callers must hold the cart lock so no mutation commits while seeding.
+     * @param cartId ID of the cart
+     * @param cartItems All lines of the cart
+     * @param version Stamp of the cart read before its lines, see {@link #version}
+     * @return The cart total
+     */
+    public BigDecimal snapshot(String cartId, Collection<CartItem> cartItems, long version) {
+        return Money.ofMinor(replace(cartId, cartItems, version, true).total).toBigDecimal();
+    }
+
+    private RunningTotal replace(String cartId, Collection<CartItem> cartItems, long version, boolean publish) {
+        RunningTotal[] priced = new RunningTotal[1];
+        totals.compute(cartId, (id, previous) -> {
+            long start = metrics.startPricing();
+            PriceCatalog snapshot = pricingEngine.getCatalog();
+            RunningTotal running = new RunningTotal(snapshot);
+            for (CartItem cartItem : cartItems) {
+                Long itemId = cartItem.getItem().getId();
+                if (snapshot.isBundled(itemId)) {
+                    running.bundledQuantities.put(itemId, cartItem.getQuantity());
+                } else {
+                    running.update(itemId, pricingEngine.calculateItemTotal(snapshot, cartItem));
+                }
+            }
+            running.repriceBundled(pricingEngine);
+            metrics.stopPricing(start, cartItems.size());
+            priced[0] = running;
+            if (!isCurrent(cartId, version)) {
+                // Lines read before a reactive change committed; priced for this caller only
+                publishResync(cartId);
+                return null;
+            }
+            if (publish && cartUpdates.hasSubscribers(cartId)) {
+                List<CartUpdate.Line> lines = new ArrayList<>(cartItems.size());
+                for (CartItem cartItem : cartItems) {
+                    lines.add(running.line(cartItem.getId(), cartItem.getItem().getId(), cartItem.getItem(),
+                            cartItem.getQuantity()));
+                }
+                cartUpdates.publish(new CartUpdate(CartUpdate.Type.SNAPSHOT, cartId, lines, running.total()));
+            }
+            return running;
+        });
+        return priced[0];
+    }
+
+    /**
+     * Re-prices one line of a cart once the current transaction commits.
+     * @param cartId ID of the cart
+     * @param cartItem The changed line with its new quantity
+     */
+    public void lineChanged(String cartId, CartItem cartItem) {
+        Long itemId = cartItem.getItem().getId();
+        long version = version(cartId);
+        afterCommit(() -> totals.compute(cartId, (id, running) -> {
+            PriceCatalog snapshot = pricingEngine.getCatalog();
+            if (running == null || running.catalog != snapshot || !isCurrent(cartId, version)) {
+                publishResync(cartId);
+                return null;
+            }
+            if (snapshot.isBundled(itemId)) {
+                running.bundledQuantities.put(itemId, cartItem.getQuantity());
+                running.repriceBundled(pricingEngine);
+            } else {
+                running.update(itemId, pricingEngine.calculateItemTotal(snapshot, cartItem));
+            }
+            publishChange(cartId, running, cartItem.getId(), itemId, cartItem.getItem(), cartItem.getQuantity());
+            return running;
+        }));
+    }
+
+    /**
+     * Removes one line from the running total of a cart once the current transaction commits.
+     * @param cartId ID of the cart
+     * @param itemId ID of the removed item
+     */
+    public void lineRemoved(String cartId, Long itemId) {
+        long version = version(cartId);
+        afterCommit(() -> totals.compute(cartId, (id, running) -> {
+            if (running == null || !isCurrent(cartId, version)) {
+                publishResync(cartId);
+                return null;
+            }
+            if (running.bundledQuantities.remove(itemId) != null) {
+                running.repriceBundled(pricingEngine);
+            } else {
+                running.remove(itemId);
+            }
+            publishChange(cartId, running, null, itemId, null, 0);
+            return running;
+        }));
+    }
+
+    /**
+     * Replaces the running total of a cart once the current transaction commits.
+     * @param cartId ID of the cart
+     * @param cartItems All lines of the cart
+     * @param version Stamp of the cart read before its lines, see {@link #version}
+     */
+    public void cartReplaced(String cartId, Collection<CartItem> cartItems, long version) {
+        afterCommit(() -> replace(cartId, cartItems, version, true));
+    }
+
+    /**
+     * Stops tracking a cart once the current transaction commits.
+     * @param cartId ID of the cart
+     */
+    public void cartCleared(String cartId) {
+        afterCommit(() -> totals.compute(cartId, (id, running) -> {
+            if (cartUpdates.hasSubscribers(cartId)) {
+                cartUpdates.publish(new CartUpdate(CartUpdate.Type.SNAPSHOT, cartId, List.of(), Money.ZERO.toBigDecimal()));
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Drops the running total of a cart changed outside {@link CartService},
+     * which does not hold the cart lock; the next read seeds it again.
+     * @param cartId ID of the cart
+     */
+    public void invalidate(String cartId) {
+        totals.compute(cartId, (id, running) -> {
+            versions.incrementAndGet(stripe(cartId));
+            publishResync(cartId);
+            return null;
+        });
+    }
+
+    private boolean isCurrent(String cartId, long version) {
+        return versions.get(stripe(cartId)) == version;
+    }
+
+    private int stripe(String cartId) {
+        return cartId.hashCode() & (versions.length() - 1);
+    }
+
+    private void publishChange(String cartId, RunningTotal running, Long lineId, Long itemId, Item item,
+                               int quantity) {
+        if (cartUpdates.hasSubscribers(cartId)) {
+            cartUpdates.publish(new CartUpdate(CartUpdate.Type.CHANGE, cartId,
+                    List.of(running.line(lineId, itemId, item, quantity)), running.total()));
+        }
+    }
+
+    private void publishResync(String cartId) {
+        if (cartUpdates.hasSubscribers(cartId)) {
+            cartUpdates.publish(CartUpdate.resync(cartId));
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Line totals of one cart and their sum, in minor units. Bundled items are
+     * tracked by quantity and priced as a group. Mutated only inside
+     * {@link Map#compute} of the Caffeine map, so updates of one cart never interleave.
+     */
+    private static final class RunningTotal {
+
+        private final PriceCatalog catalog;
+        private final Map<Long, Long> lineTotals = new HashMap<>();
+        private final Map<Long, Integer> bundledQuantities = new HashMap<>();
+        private long bundledTotal;
+        private volatile long total;
+
+        private RunningTotal(PriceCatalog catalog) {
+            this.catalog = catalog;
+        }
+
+        private void update(Long itemId, long lineTotal) {
+            Long previous = lineTotals.put(itemId, lineTotal);
+            total = total - (previous == null ? 0 : previous) + lineTotal;
+        }
+
+        private void repriceBundled(PricingEngine pricingEngine) {
+            long previous = bundledTotal;
+            bundledTotal = bundledQuantities.isEmpty()
+                    ? 0 : pricingEngine.calculateBundledTotal(catalog, bundledQuantities);
+            total = total - previous + bundledTotal;
+        }
+
+        private BigDecimal total() {
+            return Money.ofMinor(total).toBigDecimal();
+        }
+
+        private CartUpdate.Line line(Long lineId, Long itemId, Item item, int quantity) {
+            Long lineTotal = lineTotals.get(itemId);
+            return new CartUpdate.Line(lineId, itemId, item, quantity,
+                    lineTotal == null ? null : Money.ofMinor(lineTotal).toBigDecimal());
+        }
+
+        private void remove(Long itemId) {
+            Long previous = lineTotals.remove(itemId);
+            if (previous != null) {
+                total = total - previous;
+            }
+        }
+    }
+}
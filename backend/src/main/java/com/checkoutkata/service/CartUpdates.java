@@ -0,0 +1,81 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.dto.CartUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fan-out of cart updates to the clients subscribed to a cart.
+ * Publishing only hands the update to each subscriber's bounded buffer, so a
+ * mutation never waits for a slow client; a client falling too far behind is
+ * disconnected and receives a fresh snapshot when it reconnects.
+ * Carts without subscribers cost nothing.
+ */
+@Component
+public class CartUpdates {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartUpdates.class);
+
+    /** Updates buffered per subscriber before it is disconnected. */
+    static final int MAX_PENDING = 256;
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Subscribes to the updates of a cart.
+     * @param cartId ID of the cart
+     * @return Updates published from now on, until the subscriber cancels
+     */
+    public Flux<CartUpdate> subscribe(String cartId) {
+        return Flux.defer(() -> {
+            // Counted in the same atomic step that finds the channel, so a leaving subscriber cannot drop it
+            Channel channel = channels.compute(cartId, (id, existing) -> {
+                Channel joined = existing != null ? existing : new Channel();
+                joined.subscribers++;
+                return joined;
+            });
+            return channel.sink.asFlux()
+                    .onBackpressureBuffer(MAX_PENDING,
+                            dropped -> logger.info("Subscriber of cart {} fell behind", cartId),
+                            BufferOverflowStrategy.ERROR)
+                    .doFinally(signal -> channels.computeIfPresent(cartId,
+                            (id, current) -> --current.subscribers == 0 ? null : current));
+        });
+    }
+
+    /**
+     * Whether anyone is subscribed to the cart.
+     * @param cartId ID of the cart
+     * @return true if the cart has subscribers
+     */
+    public boolean hasSubscribers(String cartId) {
+        return channels.containsKey(cartId);
+    }
+
+    /**
+     * Publishes an update to the subscribers of its cart, if any.
+     * Callers publish the updates of one cart in order.
+     * @param update The update
+     */
+    public void publish(CartUpdate update) {
+        Channel channel = channels.get(update.cartId());
+        if (channel != null) {
+            channel.sink.emitNext(update, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+        }
+    }
+
+    /** Sink of one cart with its subscriber count, which only changes inside the map's compute. */
+    private static final class Channel {
+
+        private final Sinks.Many<CartUpdate> sink = Sinks.many().multicast().directBestEffort();
+        private int subscribers;
+    }
+}
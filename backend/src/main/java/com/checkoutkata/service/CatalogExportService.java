@@ -0,0 +1,112 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OfferRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/*
+ * CatalogExportService writes the whole catalog as newline-delimited JSON for sync jobs.
+ * Rows are read from a database cursor and written in chunks, each row being
+ * detached once written, so memory use does not grow with the size of the catalog.
+ * The bundle items of a chunk of offers are loaded with one query before it is
+ * written; detached offers would otherwise defeat batch fetching and load them
+ * one offer at a time.
+ */
+@Service
+@Transactional
+public class CatalogExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogExportService.class);
+
+    /** Rows written between two flushes of the response. */
+    private static final int FLUSH_INTERVAL = 500;
+    /** Rows held before writing, so associations can be loaded for all of them at once. */
+    static final int CHUNK_SIZE = 100;
+
+    private final ItemRepository itemRepository;
+    private final OfferRepository offerRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public CatalogExportService(ItemRepository itemRepository, OfferRepository offerRepository,
+                                EntityManager entityManager, ObjectMapper objectMapper) {
+        this.itemRepository = itemRepository;
+        this.offerRepository = offerRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes all items ordered by id, one JSON object per line.
+     * @param out Stream to write to, left open
+     * @return Number of items written
+     * @throws IOException if writing fails
+     */
+    public long writeItems(OutputStream out) throws IOException {
+        try (Stream<Item> items = itemRepository.streamAll()) {
+            long count = write(items, out, chunk -> { });
+            logger.info("Exported {} items", count);
+            return count;
+        }
+    }
+
+    /**
+     * Writes all offers ordered by id, one JSON object per line.
+     * @param out Stream to write to, left open
+     * @return Number of offers written
+     * @throws IOException if writing fails
+     */
+    public long writeOffers(OutputStream out) throws IOException {
+        try (Stream<Offer> offers = offerRepository.streamAll()) {
+            long count = write(offers, out, offerRepository::fetchBundleItems);
+            logger.info("Exported {} offers", count);
+            return count;
+        }
+    }
+
+    private <T> long write(Stream<T> rows, OutputStream out, Consumer<List<T>> loadChunk) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        long count = 0;
+        try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(generator)) {
+            List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+            var iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == CHUNK_SIZE || !iterator.hasNext()) {
+                    loadChunk.accept(chunk);
+                    for (T row : chunk) {
+                        writer.write(row);
+                        // Written rows are not needed again, keep the persistence context small
+                        entityManager.detach(row);
+                        if (++count % FLUSH_INTERVAL == 0) {
+                            writer.flush();
+                        }
+                    }
+                    chunk.clear();
+                }
+            }
+        }
+        if (count > 0) {
+            out.write('\n');
+        }
+        out.flush();
+        return count;
+    }
+}
@@ -0,0 +1,351 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.ItemPriceVersion;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.domain.OfferVersion;
+import com.checkoutkata.repository.ItemPriceVersionRepository;
+import com.checkoutkata.repository.OfferVersionRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * History of the item prices and offers, for pricing a cart as of a past moment.
+ * <p>
+ * {@link PricingEngine} hands every catalog it loads to {@link #record}, which
+ * closes the versions of changed or removed prices and offers and opens new ones.
+ * A version is therefore valid from the moment the till first priced with it,
+ * whichever path changed the database (item and offer endpoints, bulk updates or
+ * imports). Versions are kept in the {@code item_price_version} and
+ * {@code offer_version} tables and indexed in memory per item and per offer by
+ * start time, so finding the version live at a moment is a floor lookup. Compiled
+ * past catalogs are cached by the change they start at.
+ * <p>
+ * Versions are written by a single background thread, in order. Catalogs are often
+ * loaded inside a cart transaction, and writing there would either tie the history
+ * to that transaction or hold a second pooled connection per request. The writer
+ * gets copies of the new versions and closes old ones by item or offer and start,
+ * so it shares no entity with the in-memory index. A change that fails to write
+ * stays queued, ahead of later ones, and is retried with the next change or after
+ * {@link #RETRY_DELAY}; {@link #unwrittenChanges()} tells how many are waiting.
+ */
+@Component
+public class CatalogHistory {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogHistory.class);
+
+    /** Past catalogs kept compiled; refunds tend to ask about the same few days. */
+    private static final int CACHED_CATALOGS = 16;
+    /** Wait before writing again after a failed write, unless another change comes first. */
+    static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final ItemPriceVersionRepository priceVersionRepository;
+    private final OfferVersionRepository offerVersionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "catalog-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Changes not written yet, oldest first; used by the writer thread only. */
+    private final Deque<Change> unwritten = new ArrayDeque<>();
+    private volatile int unwrittenCount;
+    private boolean retryScheduled;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean loaded;
+    private final Map<Long, NavigableMap<Instant, ItemPriceVersion>> prices = new HashMap<>();
+    private final Map<Long, NavigableMap<Instant, OfferVersion>> offers = new HashMap<>();
+    private Map<Long, ItemPriceVersion> openPrices = new HashMap<>();
+    private Map<Long, OfferVersion> openOffers = new HashMap<>();
+    /** Moments at which the catalog changed, each starting a distinct catalog. */
+    private final NavigableSet<Instant> changes = new TreeSet<>();
+    private final Map<Instant, PriceCatalog> catalogs = new LinkedHashMap<>(CACHED_CATALOGS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Instant, PriceCatalog> eldest) {
+            return size() > CACHED_CATALOGS;
+        }
+    };
+
+    public CatalogHistory(ItemPriceVersionRepository priceVersionRepository,
+                          OfferVersionRepository offerVersionRepository,
+                          PlatformTransactionManager transactionManager) {
+        this.priceVersionRepository = priceVersionRepository;
+        this.offerVersionRepository = offerVersionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // A pending retry must not hold up shutdown, which writes once more anyway
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Records the prices and offers of a catalog taken into use now.
+     * @param items All items with their unit prices
+     * @param offers All offers, with their items and bundle items
+     * @return true if anything changed since the last recorded catalog
+     */
+    public boolean record(Collection<Item> items, Collection<Offer> offers) {
+        return record(items, offers, Instant.now());
+    }
+
+    /**
+     * Records the prices and offers of a catalog taken into use at the given moment.
+     * The history is updated at once and written to the database in the background.
+     * @param items All items with their unit prices
+     * @param offers All offers, with their items and bundle items
+     * @param at Moment the catalog was taken into use; moved past the last change if not after it
+     * @return true if anything changed since the last recorded catalog
+     */
+    boolean record(Collection<Item> items, Collection<Offer> offers, Instant at) {
+        lock.lock();
+        try {
+            ensureLoaded();
+            // Microseconds, as stored; every change gets a moment of its own
+            Instant truncated = at.truncatedTo(ChronoUnit.MICROS);
+            Instant now = changes.isEmpty() || truncated.isAfter(changes.last()) ? truncated
+                    : changes.last().plus(1, ChronoUnit.MICROS);
+
+            Map<Long, ItemPriceVersion> nextPrices = new HashMap<>(items.size() * 2);
+            List<ItemPriceVersion> priceWrites = new ArrayList<>();
+            for (Item item : items) {
+                ItemPriceVersion open = openPrices.get(item.getId());
+                if (open != null && open.getUnitPrice().compareTo(item.getUnitPrice()) == 0) {
+                    nextPrices.put(item.getId(), open);
+                } else {
+                    ItemPriceVersion version = new ItemPriceVersion(item.getId(), item.getUnitPrice(), now);
+                    nextPrices.put(item.getId(), version);
+                    priceWrites.add(version);
+                }
+            }
+            Map<Long, OfferVersion> nextOffers = new HashMap<>(offers.size() * 2);
+            List<OfferVersion> offerWrites = new ArrayList<>();
+            for (Offer offer : offers) {
+                OfferVersion open = openOffers.get(offer.getId());
+                OfferVersion version = new OfferVersion(offer, now);
+                if (open != null && open.hasSameTerms(version)) {
+                    nextOffers.put(offer.getId(), open);
+                } else {
+                    nextOffers.put(offer.getId(), version);
+                    offerWrites.add(version);
+                }
+            }
+            List<ItemPriceVersion> closedPrices = openPrices.values().stream()
+                    .filter(open -> nextPrices.get(open.getItemId()) != open).toList();
+            List<OfferVersion> closedOffers = openOffers.values().stream()
+                    .filter(open -> nextOffers.get(open.getOfferId()) != open).toList();
+            if (priceWrites.isEmpty() && offerWrites.isEmpty() && closedPrices.isEmpty() && closedOffers.isEmpty()) {
+                return false;
+            }
+
+            closedPrices.forEach(version -> version.setValidTo(now));
+            closedOffers.forEach(version -> version.setValidTo(now));
+            Change change = new Change(
+                    closedPrices.stream().map(version -> new Close(version.getItemId(), version.getValidFrom())).toList(),
+                    priceWrites.stream().map(ItemPriceVersion::copy).toList(),
+                    closedOffers.stream().map(version -> new Close(version.getOfferId(), version.getValidFrom())).toList(),
+                    offerWrites.stream().map(OfferVersion::copy).toList(),
+                    now);
+            writer.execute(() -> {
+                unwritten.add(change);
+                writeUnwritten();
+            });
+
+            priceWrites.forEach(this::index);
+            offerWrites.forEach(this::index);
+            openPrices = nextPrices;
+            openOffers = nextOffers;
+            changes.add(now);
+            logger.info("Recorded {} price and {} offer versions, closed {} and {}, at {}",
+                    priceWrites.size(), offerWrites.size(), closedPrices.size(), closedOffers.size(), now);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the queued changes in order, each in a transaction of its own, stopping
+     * at the first that fails so a version is never closed before it is written.
+     */
+    private void writeUnwritten() {
+        retryScheduled = false;
+        while (!unwritten.isEmpty()) {
+            Change change = unwritten.peek();
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(change));
+            } catch (RuntimeException e) {
+                unwrittenCount = unwritten.size();
+                logger.warn("Could not write catalog history of {}, {} changes kept in memory and retried",
+                        change.at(), unwrittenCount, e);
+                if (!retryScheduled && !writer.isShutdown()) {
+                    writer.schedule(this::writeUnwritten, RETRY_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+                    retryScheduled = true;
+                }
+                return;
+            }
+            unwritten.poll();
+        }
+        unwrittenCount = 0;
+    }
+
+    private void write(Change change) {
+        change.closedPrices().forEach(close ->
+                priceVersionRepository.close(close.id(), close.validFrom(), change.at()));
+        priceVersionRepository.saveAll(change.priceWrites());
+        change.closedOffers().forEach(close ->
+                offerVersionRepository.close(close.id(), close.validFrom(), change.at()));
+        offerVersionRepository.saveAll(change.offerWrites());
+    }
+
+    /**
+     * Number of recorded changes not yet in the database because writing them failed.
+     * They are lost on restart, and past prices then come from the last written change.
+     * @return Changes waiting to be written, 0 when the history is fully written
+     */
+    public int unwrittenChanges() {
+        return unwrittenCount;
+    }
+
+    /**
+     * Writes the versions still queued before shutdown.
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        writer.execute(this::writeUnwritten);
+        writer.shutdown();
+        if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Catalog history writes still pending at shutdown");
+        } else if (unwrittenCount > 0) {
+            logger.error("{} catalog history changes could not be written and are lost", unwrittenCount);
+        }
+    }
+
+    /**
+     * Returns the catalog of the prices and offers that were live at a moment.
+     * @param asOf The moment
+     * @return The catalog live at that moment
+     * @throws IllegalArgumentException if the moment is in the future or before the first recorded catalog
+     */
+    public PriceCatalog catalogAsOf(Instant asOf) {
+        if (asOf == null || asOf.isAfter(Instant.now())) {
+            throw new IllegalArgumentException("Pricing moment must be given and not in the future: " + asOf);
+        }
+        lock.lock();
+        try {
+            ensureLoaded();
+            Instant change = changes.floor(asOf);
+            if (change == null) {
+                throw new IllegalArgumentException("No prices recorded before " + asOf);
+            }
+            PriceCatalog catalog = catalogs.get(change);
+            if (catalog == null) {
+                catalog = compile(asOf);
+                catalogs.put(change, catalog);
+                logger.debug("Compiled catalog of {} with {} items", change, catalog.size());
+            }
+            return catalog;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PriceCatalog compile(Instant asOf) {
+        List<Item> items = new ArrayList<>();
+        prices.forEach((itemId, versions) -> {
+            ItemPriceVersion version = liveAt(versions, asOf, ItemPriceVersion::getValidTo);
+            if (version != null) {
+                Item item = new Item();
+                item.setId(itemId);
+                item.setUnitPrice(version.getUnitPrice());
+                items.add(item);
+            }
+        });
+        List<Offer> live = new ArrayList<>();
+        offers.forEach((offerId, versions) -> {
+            OfferVersion version = liveAt(versions, asOf, OfferVersion::getValidTo);
+            if (version != null) {
+                live.add(version.toOffer());
+            }
+        });
+        return PriceCatalog.of(items, live);
+    }
+
+    /** The version starting last at or before the moment, unless it ended by then. */
+    private static <V> V liveAt(NavigableMap<Instant, V> versions, Instant asOf, Function<V, Instant> validTo) {
+        Map.Entry<Instant, V> entry = versions.floorEntry(asOf);
+        if (entry == null) {
+            return null;
+        }
+        Instant end = validTo.apply(entry.getValue());
+        return end == null || asOf.isBefore(end) ? entry.getValue() : null;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        for (ItemPriceVersion version : priceVersionRepository.findAllByOrderByValidFromAsc()) {
+            index(version);
+            changes.add(version.getValidFrom());
+            if (version.getValidTo() == null) {
+                openPrices.put(version.getItemId(), version);
+            } else {
+                changes.add(version.getValidTo());
+            }
+        }
+        for (OfferVersion version : offerVersionRepository.findAllByOrderByValidFromAsc()) {
+            index(version);
+            changes.add(version.getValidFrom());
+            if (version.getValidTo() == null) {
+                openOffers.put(version.getOfferId(), version);
+            } else {
+                changes.add(version.getValidTo());
+            }
+        }
+        loaded = true;
+        if (!changes.isEmpty()) {
+            logger.info("Loaded catalog history of {} prices and {} offers since {}",
+                    prices.size(), offers.size(), changes.first());
+        }
+    }
+
+    private void index(ItemPriceVersion version) {
+        prices.computeIfAbsent(version.getItemId(), id -> new TreeMap<>()).put(version.getValidFrom(), version);
+    }
+
+    private void index(OfferVersion version) {
+        offers.computeIfAbsent(version.getOfferId(), id -> new TreeMap<>()).put(version.getValidFrom(), version);
+    }
+
+    /** Version of an item or offer, by its id and start, ending at a change. */
+    private record Close(Long id, Instant validFrom) {
+    }
+
+    /** Versions closed and opened by one change, owned by the writer thread. */
+    private record Change(List<Close> closedPrices, List<ItemPriceVersion> priceWrites,
+                          List<Close> closedOffers, List<OfferVersion> offerWrites, Instant at) {
+    }
+}
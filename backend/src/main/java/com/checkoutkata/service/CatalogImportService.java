@@ -0,0 +1,414 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.config.CacheConfig;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.domain.OfferType;
+import com.checkoutkata.dto.ImportResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * CatalogImportService loads large item and offer files into the catalog.
+ * The caller's thread parses and validates records while a writer thread upserts
+ * them in JDBC batches, one transaction per batch; the two stages are connected by
+ * a bounded queue so memory use does not depend on the size of the file.
+ * Items are upserted by their unique name, offers by item, type and quantity.
+ */
+@Service
+public class CatalogImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImportService.class);
+
+    private static final String UPSERT_ITEM =
+            "MERGE INTO item (name, unit_price) KEY (name) VALUES (?, ?)";
+    private static final String UPSERT_OFFER =
+            "MERGE INTO offer (item_id, type, quantity, total_price, free_quantity, percent_off) "
+                    + "KEY (item_id, type, quantity) "
+                    + "SELECT i.id, ?, ?, ?, ?, ? FROM item i WHERE i.name = ?";
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    /** Marks the end of the input on the batch queue. */
+    private static final List<Object[]> END = List.of();
+
+    /** Supported input formats. */
+    public enum Format {
+        CSV, JSONL;
+
+        /**
+         * Resolves the format of a request body from its content type.
+         * @param contentType Content type of the request
+         * @return The format
+         * @throws IllegalArgumentException if the content type is not supported
+         */
+        public static Format fromContentType(String contentType) {
+            String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+            if (type.startsWith("text/csv")) {
+                return CSV;
+            }
+            if (type.startsWith("application/x-ndjson") || type.startsWith("application/jsonl")) {
+                return JSONL;
+            }
+            throw new IllegalArgumentException("Unsupported import content type: " + contentType);
+        }
+
+        /**
+         * Resolves the format of a file from its extension.
+         * @param fileName Name of the file
+         * @return The format
+         * @throws IllegalArgumentException if the extension is not supported
+         */
+        public static Format fromFileName(String fileName) {
+            String name = fileName == null ? "" : fileName.toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+                return JSONL;
+            }
+            throw new IllegalArgumentException("Unsupported import file: " + fileName);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final PricingEngine pricingEngine;
+    private final CacheManager cacheManager;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final long progressInterval;
+    private final ExecutorService writers;
+
+    public CatalogImportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                ObjectMapper objectMapper, Validator validator,
+                                PricingEngine pricingEngine, CacheManager cacheManager, Environment environment,
+                                @Value("${catalog.import.batch-size:1000}") int batchSize,
+                                @Value("${catalog.import.queue-capacity:8}") int queueCapacity,
+                                @Value("${catalog.import.progress-interval:50000}") long progressInterval) {
+        if (batchSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Import batch size and queue capacity must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.pricingEngine = pricingEngine;
+        this.cacheManager = cacheManager;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.progressInterval = progressInterval;
+        this.writers = Executors.newCachedThreadPool(writerThreads(environment));
+    }
+
+    /**
+     * Writers run on virtual threads when spring.threads.virtual.enabled is set
+     * on Java 21 or later, since they spend most of their time blocked on JDBC.
+     */
+    private static ThreadFactory writerThreads(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return new VirtualThreadTaskExecutor("catalog-import-writer-").getVirtualThreadFactory();
+        }
+        AtomicInteger threads = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "catalog-import-writer-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Imports items with the fields name and unitPrice, updating the price of
+     * items that already exist with the same name.
+     * @param in Input to read, closed when done
+     * @param format Format of the input
+     * @return The import outcome
+     * @throws IOException if reading the input fails
+     */
+    public ImportResult importItems(InputStream in, Format format) throws IOException {
+        return importRecords("items", in, format, UPSERT_ITEM, this::toItemRow);
+    }
+
+    /**
+     * Imports offers with the fields itemName, type, quantity, totalPrice,
+     * freeQuantity and percentOff. Offers for unknown items are rejected.
+     * Bundles cannot be imported.
+     * @param in Input to read, closed when done
+     * @param format Format of the input
+     * @return The import outcome
+     * @throws IOException if reading the input fails
+     */
+    public ImportResult importOffers(InputStream in, Format format) throws IOException {
+        return importRecords("offers", in, format, UPSERT_OFFER, this::toOfferRow);
+    }
+
+    private ImportResult importRecords(String kind, InputStream in, Format format, String sql,
+                                       RowMapper mapper) throws IOException {
+        long start = System.nanoTime();
+        Progress progress = new Progress(kind, start);
+        BlockingQueue<List<Object[]>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        Future<?> writer = writers.submit(() -> write(queue, sql, progress));
+
+        try (CatalogRecordReader reader = new CatalogRecordReader(in, format, objectMapper)) {
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            while (true) {
+                Map<String, String> record;
+                try {
+                    record = reader.next();
+                } catch (IllegalArgumentException e) {
+                    progress.read.incrementAndGet();
+                    progress.reject(e.getMessage());
+                    continue;
+                }
+                if (record == null) {
+                    break;
+                }
+                progress.read.incrementAndGet();
+                try {
+                    batch.add(mapper.toRow(record));
+                } catch (IllegalArgumentException e) {
+                    progress.reject("Line " + reader.lineNumber() + ": " + e.getMessage());
+                }
+                if (batch.size() == batchSize) {
+                    hand(queue, batch, writer);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                hand(queue, batch, writer);
+            }
+        } catch (Throwable e) {
+            // Stop the writer; a failure to do so must not hide why reading failed
+            try {
+                hand(queue, END, writer);
+            } catch (RuntimeException stopFailure) {
+                e.addSuppressed(stopFailure);
+            }
+            throw e;
+        }
+        hand(queue, END, writer);
+        awaitWriter(writer);
+
+        if (progress.imported.get() > 0) {
+            pricingEngine.invalidate();
+            Cache items = cacheManager.getCache(CacheConfig.ITEMS_CACHE);
+            if (items != null) {
+                items.clear();
+            }
+        }
+        long durationMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        ImportResult result = new ImportResult(progress.read.get(), progress.imported.get(), progress.rejected.get(),
+                List.copyOf(progress.errors), durationMillis, progress.read.get() * 1000 / durationMillis);
+        logger.info("Imported {}: {} read, {} imported, {} rejected in {} ms ({} records/s)",
+                kind, result.read(), result.imported(), result.rejected(), durationMillis, result.recordsPerSecond());
+        return result;
+    }
+
+    /**
+     * Writer stage: upserts batches until the end marker, one transaction per batch.
+     */
+    private void write(BlockingQueue<List<Object[]>> queue, String sql, Progress progress) {
+        try {
+            while (true) {
+                List<Object[]> batch = queue.take();
+                if (batch == END) {
+                    return;
+                }
+                int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(sql, batch));
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
+                        progress.reject("Unknown item: " + batch.get(i)[batch.get(i).length - 1]);
+                    } else {
+                        progress.imported.incrementAndGet();
+                    }
+                }
+                progress.written(batch.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands a batch to the writer, waiting while the queue is full.
+     * Fails fast if the writer stopped.
+     */
+    private void hand(BlockingQueue<List<Object[]>> queue, List<Object[]> batch, Future<?> writer) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (writer.isDone()) {
+                    awaitWriter(writer);
+                    throw new IllegalStateException("Import writer stopped before the end of the input");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.cancel(true);
+            throw new IllegalStateException("Import interrupted", e);
+        }
+    }
+
+    private void awaitWriter(Future<?> writer) {
+        try {
+            writer.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Import writer failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.cancel(true);
+            throw new IllegalStateException("Import interrupted", e);
+        }
+    }
+
+    private Object[] toItemRow(Map<String, String> record) {
+        Item item = new Item(trimToNull(record.get("name")), decimal(record, "unitPrice"));
+        validate(item);
+        return new Object[]{item.getName(), item.getUnitPrice()};
+    }
+
+    private Object[] toOfferRow(Map<String, String> record) {
+        String itemName = trimToNull(record.get("itemName"));
+        if (itemName == null) {
+            throw new IllegalArgumentException("Item name cannot be empty");
+        }
+        String type = trimToNull(record.get("type"));
+        Offer offer = new Offer();
+        try {
+            offer.setType(type == null ? OfferType.MULTI_BUY : OfferType.valueOf(type.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown offer type: " + type);
+        }
+        if (offer.getType() == OfferType.BUNDLE) {
+            throw new IllegalArgumentException("Bundles cannot be imported");
+        }
+        offer.setQuantity(integer(record, "quantity"));
+        offer.setTotalPrice(decimal(record, "totalPrice"));
+        offer.setFreeQuantity(integer(record, "freeQuantity"));
+        offer.setPercentOff(decimal(record, "percentOff"));
+        OfferService.validateOfferData(offer);
+        return new Object[]{offer.getType().name(), offer.getQuantity(), offer.getTotalPrice(),
+                offer.getFreeQuantity(), offer.getPercentOff(), itemName};
+    }
+
+    private void validate(Item item) {
+        Set<ConstraintViolation<Item>> violations = validator.validate(item);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.iterator().next().getMessage());
+        }
+    }
+
+    private static BigDecimal decimal(Map<String, String> record, String field) {
+        String value = trimToNull(record.get(field));
+        if (value == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + field + ": " + value);
+        }
+    }
+
+    private static int integer(Map<String, String> record, String field) {
+        String value = trimToNull(record.get(field));
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + field + ": " + value);
+        }
+    }
+
+    private static String trimToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        writers.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface RowMapper {
+        Object[] toRow(Map<String, String> record);
+    }
+
+    /**
+     * Counters shared by the parse and write stages, logging throughput as rows are written.
+     */
+    private final class Progress {
+
+        private final String kind;
+        private final long start;
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final List<String> errors = new ArrayList<>();
+        private long written;
+
+        private Progress(String kind, long start) {
+            this.kind = kind;
+            this.start = start;
+        }
+
+        private void reject(String reason) {
+            rejected.incrementAndGet();
+            synchronized (errors) {
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(reason);
+                }
+            }
+        }
+
+        /** Called by the writer thread only. */
+        private void written(int rows) {
+            long before = written;
+            written += rows;
+            if (progressInterval > 0 && written / progressInterval > before / progressInterval) {
+                long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                logger.info("Importing {}: {} written, {} rejected, {} records/s",
+                        kind, written, rejected.get(), written * 1000 / elapsedMillis);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.checkoutkata.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads catalog import records one at a time as field name to value maps.
+ * CSV input must start with a header row naming the fields; JSONL input holds
+ * one flat JSON object per line. Blank lines are skipped.
+ */
+final class CatalogRecordReader implements Closeable {
+
+    private final BufferedReader reader;
+    private final CatalogImportService.Format format;
+    private final ObjectMapper objectMapper;
+    private List<String> header;
+    private long lineNumber;
+
+    CatalogRecordReader(InputStream in, CatalogImportService.Format format, ObjectMapper objectMapper) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Reads the next record.
+     * @return The record, or null at the end of the input
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the line cannot be parsed
+     */
+    Map<String, String> next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isBlank());
+
+        if (format == CatalogImportService.Format.JSONL) {
+            return parseJson(line);
+        }
+        if (header == null) {
+            header = splitCsv(line);
+            return next();
+        }
+        List<String> values = splitCsv(line);
+        if (values.size() > header.size()) {
+            throw new IllegalArgumentException("Line " + lineNumber + " has more fields than the header");
+        }
+        Map<String, String> record = new HashMap<>(header.size() * 2);
+        for (int i = 0; i < values.size(); i++) {
+            record.put(header.get(i), values.get(i));
+        }
+        return record;
+    }
+
+    /**
+     * Number of the line the last record was read from.
+     * @return line number, starting at 1
+     */
+    long lineNumber() {
+        return lineNumber;
+    }
+
+    private Map<String, String> parseJson(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + " is not valid JSON");
+        }
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Line " + lineNumber + " is not a JSON object");
+        }
+        Map<String, String> record = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!field.getValue().isNull()) {
+                record.put(field.getKey(), field.getValue().asText());
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Splits one CSV line. Fields may be quoted, with doubled quotes inside quoted fields.
+     */
+    private List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Line " + lineNumber + " has an unterminated quoted field");
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,108 @@
+package com.checkoutkata.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the pricing hot path, registered once so recording never looks
+ * a meter up by name.
+ * <ul>
+ *     <li>{@code cart.pricing}: time to price a whole cart, tagged with a cart size bucket</li>
+ *     <li>{@code cart.size}: number of lines of the carts priced in full</li>
+ *     <li>{@code pricing.offers}: lines of items with offers, tagged with whether an offer lowered the price</li>
+ * </ul>
+ * Timings and sizes are recorded for a sample of the calls only, set by
+ * {@code metrics.sample-rate}; offer counters are cheap enough to count every line.
+ */
+@Component
+public class HotPathMetrics {
+
+    /** Upper bounds of the cart size buckets, in lines. */
+    private static final int[] SIZE_BOUNDS = {1, 5, 20, 100};
+    private static final String[] SIZE_TAGS = {"1", "2-5", "6-20", "21-100", "101+"};
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private final double sampleRate;
+    private final Timer[] pricingTimers = new Timer[SIZE_TAGS.length];
+    private final DistributionSummary cartSize;
+    private final Counter offerApplied;
+    private final Counter offerNotApplied;
+
+    public HotPathMetrics(MeterRegistry registry, @Value("${metrics.sample-rate:1.0}") double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+        for (int i = 0; i < SIZE_TAGS.length; i++) {
+            pricingTimers[i] = Timer.builder("cart.pricing")
+                    .description("Time to price a whole cart")
+                    .tag("cart.size", SIZE_TAGS[i])
+                    .register(registry);
+        }
+        cartSize = DistributionSummary.builder("cart.size")
+                .description("Lines of the carts priced in full")
+                .baseUnit("lines")
+                .register(registry);
+        offerApplied = Counter.builder("pricing.offers")
+                .description("Lines of items with offers")
+                .tag("result", "applied")
+                .register(registry);
+        offerNotApplied = Counter.builder("pricing.offers")
+                .description("Lines of items with offers")
+                .tag("result", "not_applied")
+                .register(registry);
+    }
+
+    /**
+     * Whether the current call should be timed.
+     * @return true for a random sample of the calls, of {@code metrics.sample-rate}
+     */
+    public boolean sample() {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Starts timing the pricing of a whole cart.
+     * @return The start time, or a marker if this call is not sampled
+     */
+    public long startPricing() {
+        return sample() ? System.nanoTime() : NOT_SAMPLED;
+    }
+
+    /**
+     * Records the pricing of a whole cart started by {@link #startPricing()}.
+     * @param start The value returned by {@link #startPricing()}
+     * @param lines Number of lines priced
+     */
+    public void stopPricing(long start, int lines) {
+        if (start == NOT_SAMPLED) {
+            return;
+        }
+        pricingTimers[sizeBucket(lines)].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        cartSize.record(lines);
+    }
+
+    /**
+     * Counts a line of an item with offers.
+     * @param applied Whether an offer lowered the price of the line
+     */
+    public void offerLookup(boolean applied) {
+        (applied ? offerApplied : offerNotApplied).increment();
+    }
+
+    private static int sizeBucket(int lines) {
+        for (int i = 0; i < SIZE_BOUNDS.length; i++) {
+            if (lines <= SIZE_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return SIZE_BOUNDS.length;
+    }
+}
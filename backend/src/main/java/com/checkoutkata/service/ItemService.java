@@ -1,11 +1,17 @@
 package com.checkoutkata.service;
 
+import com.checkoutkata.config.CacheConfig;
 import com.checkoutkata.domain.Item;
+import com.checkoutkata.dto.CursorPage;
 import com.checkoutkata.repository.ItemRepository;
 import jakarta.persistence.EntityNotFoundException;
+import io.micrometer.observation.annotation.Observed;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -15,17 +21,21 @@ import java.util.Optional;
 /*
  * ItemService is responsible for managing items in the inventory.
  * It allows creating, updating, retrieving, and deleting items.
+ * Lookups by id are served from the catalog cache and every mutation evicts the item it changed.
  */
 @Service
 @Transactional
+@Observed(name = "item.service")
 public class ItemService {
 
     private static final Logger logger = LoggerFactory.getLogger(ItemService.class);
 
     private final ItemRepository itemRepository;
+    private final PricingEngine pricingEngine;
 
-    public ItemService(ItemRepository itemRepository) {
+    public ItemService(ItemRepository itemRepository, PricingEngine pricingEngine) {
         this.itemRepository = itemRepository;
+        this.pricingEngine = pricingEngine;
     }
 
     /**
@@ -36,6 +46,7 @@ public class ItemService {
      * @throws EntityNotFoundException if item not found
      * @throws IllegalArgumentException if id null or price negative
      */
+    @CacheEvict(cacheNames = CacheConfig.ITEMS_CACHE, key = "#id")
     public Item updatePrice(Long id, BigDecimal newPrice) {
         validateId(id);
         validatePrice(newPrice);
@@ -45,6 +56,7 @@ public class ItemService {
 
         item.setUnitPrice(newPrice);
         Item updatedItem = itemRepository.save(item);
+        pricingEngine.invalidate();
         logger.info("Updated price for item: {} to: {}", updatedItem.getName(), newPrice);
         return updatedItem;
     }
@@ -55,8 +67,9 @@ public class ItemService {
      * @param newName New name to set
      * @return Updated item
      * @throws EntityNotFoundException if item not found
-     * @throws IllegalArgumentException if id null or name empty
+     * @throws IllegalArgumentException if id null, name empty or taken by another item
      */
+    @CacheEvict(cacheNames = CacheConfig.ITEMS_CACHE, key = "#id")
     public Item updateName(Long id, String newName) {
         validateId(id);
         validateName(newName);
@@ -64,6 +77,9 @@ public class ItemService {
         Item item = itemRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Item not found with id: " + id));
 
+        if (itemRepository.existsByNameAndIdNot(newName.trim(), id)) {
+            throw new IllegalArgumentException("Item name already exists: " + newName.trim());
+        }
         item.setName(newName.trim());
         Item updatedItem = itemRepository.save(item);
         logger.info("Updated name for item with id: {} to: {}", id, item.getName());
@@ -75,14 +91,19 @@ public class ItemService {
      * @param item Item to create
      * @return Created item with generated ID
      * @throws NullPointerException if item is null
-     * @throws IllegalArgumentException if price negative
+     * @throws IllegalArgumentException if price negative or the name is taken by another item
      */
+    @CacheEvict(cacheNames = CacheConfig.ITEMS_CACHE, key = "#result.id")
     public Item createItem(Item item) {
         Objects.requireNonNull(item, "Item cannot be null");
         validatePrice(item.getUnitPrice());
+        if (itemRepository.existsByName(item.getName())) {
+            throw new IllegalArgumentException("Item name already exists: " + item.getName());
+        }
 
         item.setId(null);
         Item savedItem = itemRepository.save(item);
+        pricingEngine.invalidate();
         logger.info("Created new item: {} with price: {}", savedItem.getName(), savedItem.getUnitPrice());
         return savedItem;
     }
@@ -98,14 +119,31 @@ public class ItemService {
     }
 
     /**
-     * Retrieves an item by its ID.
+     * Retrieves one page of items ordered by id, starting after the given id.
+     * Uses a keyset condition, so the cost of a page does not grow with its position.
+     * @param after ID of the last item of the previous page, null for the first page
+     * @param limit Maximum number of items to return
+     * @return The page of items with the cursor of the next page
+     * @throws IllegalArgumentException if limit out of range
+     */
+    public CursorPage<Item> getItemsPage(Long after, int limit) {
+        CursorPage.validateLimit(limit);
+        List<Item> rows = itemRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, Limit.of(limit + 1));
+        logger.info("Found {} items after id: {}", Math.min(rows.size(), limit), after);
+        return CursorPage.of(rows, limit, Item::getId);
+    }
+
+    /**
+     * Retrieves an item by its ID, reading through the catalog cache.
+     * Unknown ids are cached as absent until an item with that id is created.
      * @param id Item ID
      * @return Optional containing the item if found, empty otherwise
      * @throws IllegalArgumentException if id null
      */
+    @Cacheable(cacheNames = CacheConfig.ITEMS_CACHE, key = "#id", condition = "#id != null")
     public Optional<Item> getItemById(Long id) {
         validateId(id);
-        logger.info("Fetching item with id: {}", id);
+        logger.debug("Fetching item with id: {}", id);
         return itemRepository.findById(id);
     }
 
@@ -115,6 +153,7 @@ public class ItemService {
      * @return true if item was deleted, false if not found
      * @throws IllegalArgumentException if id null
      */
+    @CacheEvict(cacheNames = CacheConfig.ITEMS_CACHE, key = "#id", condition = "#id != null")
     public boolean deleteItemById(Long id) {
         validateId(id);
 
@@ -124,6 +163,7 @@ public class ItemService {
         }
 
         itemRepository.deleteById(id);
+        pricingEngine.invalidate();
         logger.info("Successfully deleted item with id: {}", id);
         return true;
     }
@@ -0,0 +1,738 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.repository.CartItemRepository;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.service.CartJournal.EventType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * MemoryCartStore holds the authoritative state of the carts when cart.store=memory.
+ * A cart is loaded from the persisted cart lines on first use, which is also how
+ * carts are recovered after a crash, and then lives in memory. Changed lines are
+ * written behind to CartItemRepository every cart.write-behind.flush-interval:
+ * all changes of a line since the last flush are coalesced into one write of its
+ * latest quantity, and up to cart.write-behind.batch-size carts share a transaction.
+ * When a batch fails its carts are written one by one, so one bad cart does not hold
+ * back the others; a cart that fails is retried on the next flush, and after
+ * cart.write-behind.max-attempts failed flushes in a row it is parked: kept in memory
+ * with its changes, counted by the cart.write-behind.parked gauge and retried only
+ * when it is next used. Carts that are fully written and unused for
+ * cart.write-behind.idle-timeout are dropped from memory and loaded again on their
+ * next use. Checkout is the exception to write-behind: its order and the deletion
+ * of the cart lines commit in one transaction, so a crash cannot bring back a
+ * cart that was already paid for. Pending changes are flushed on
+ * graceful shutdown; a crash loses at most the changes of the last flush interval.
+ * With cart.journal.enabled=true every change is first appended to CartJournal,
+ * which is forced to disk on each flush and snapshotted every
+ * cart.journal.snapshot-interval. Once the application is ready the carts of the
+ * latest snapshot and the journal after it are restored, so a crash no longer
+ * loses changes.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "memory")
+public class MemoryCartStore implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryCartStore.class);
+
+    private final CartItemRepository cartItemRepository;
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CartJournal journal;
+    private final Duration flushInterval;
+    private final int batchSize;
+    private final Duration snapshotInterval;
+    private final Duration idleTimeout;
+    private final int maxWriteAttempts;
+
+    private final Map<String, Cart> carts = new ConcurrentHashMap<>();
+    private final Queue<Cart> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicInteger parkedCount = new AtomicInteger();
+    // Bumped whenever a cart leaves memory, so a concurrent load can tell its rows may be stale
+    private final AtomicLong retirements = new AtomicLong();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Open from the start without a journal, else once the journal has been replayed
+    private final CountDownLatch recovered = new CountDownLatch(1);
+    private volatile ScheduledExecutorService flusher;
+
+    public MemoryCartStore(CartItemRepository cartItemRepository, ItemRepository itemRepository,
+                           PlatformTransactionManager transactionManager, MeterRegistry registry,
+                           Optional<CartJournal> journal,
+                           @Value("${cart.write-behind.flush-interval:200ms}") Duration flushInterval,
+                           @Value("${cart.write-behind.batch-size:100}") int batchSize,
+                           @Value("${cart.journal.snapshot-interval:1m}") Duration snapshotInterval,
+                           @Value("${cart.write-behind.idle-timeout:10m}") Duration idleTimeout,
+                           @Value("${cart.write-behind.max-attempts:5}") int maxWriteAttempts) {
+        if (flushInterval.isNegative() || flushInterval.isZero() || batchSize <= 0
+                || snapshotInterval.isNegative() || snapshotInterval.isZero()
+                || idleTimeout.isNegative() || idleTimeout.isZero() || maxWriteAttempts <= 0) {
+            throw new IllegalArgumentException(
+                    "Flush interval, batch size, snapshot interval, idle timeout and max attempts must be positive");
+        }
+        this.cartItemRepository = cartItemRepository;
+        this.itemRepository = itemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journal = journal.orElse(null);
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+        this.snapshotInterval = snapshotInterval;
+        this.idleTimeout = idleTimeout;
+        this.maxWriteAttempts = maxWriteAttempts;
+        if (this.journal == null) {
+            recovered.countDown();
+        }
+        Gauge.builder("cart.write-behind.pending", pendingCount, AtomicInteger::get)
+                .description("Carts with changes not yet written to the database")
+                .register(registry);
+        Gauge.builder("cart.write-behind.parked", parkedCount, AtomicInteger::get)
+                .description("Carts whose changes repeatedly failed to be written, retried on their next use")
+                .register(registry);
+    }
+
+    /**
+     * Runs an action on a cart while holding its lock, loading the cart from the
+     * persisted lines if it is not in memory. Changes the action makes are
+     * queued for the next flush.
+     * @param cartId ID of the cart
+     * @param action Action on the cart; must not keep the cart beyond the call
+     * @return The result of the action
+     */
+    public <T> T withCart(String cartId, Function<Cart, T> action) {
+        awaitRecovery();
+        while (true) {
+            Cart cart = carts.get(cartId);
+            if (cart == null) {
+                cart = load(cartId);
+                if (cart == null) {
+                    continue;
+                }
+            }
+            cart.lock.lock();
+            try {
+                if (cart.retired) {
+                    continue;
+                }
+                T result = action.apply(cart);
+                cart.lastUsed = System.nanoTime();
+                if (cart.hasChanges()) {
+                    enqueue(cart);
+                }
+                return result;
+            } finally {
+                cart.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Runs an action on the lines of a cart and deletes the persisted lines in the
+     * same transaction, then empties the cart in memory. The flush lock is held
+     * throughout, so no write drained before the deletion can put lines back.
+     * @param cartId ID of the cart
+     * @param action Action on copies of the lines, such as placing an order
+     * @return The result of the action
+     */
+    public <T> T clearWritten(String cartId, Function<List<CartItem>, T> action) {
+        // Taken before the cart lock, in the same order as flush
+        flushLock.lock();
+        try {
+            return withCart(cartId, cart -> {
+                T result = transactionTemplate.execute(status -> {
+                    T applied = action.apply(cart.lines());
+                    cartItemRepository.deleteByCartId(cartId);
+                    cart.journal(EventType.CLEAR, 0, 0);
+                    return applied;
+                });
+                cart.lines.clear();
+                cart.changedItems.clear();
+                cart.clearPending = false;
+                return result;
+            });
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void awaitRecovery() {
+        if (recovered.getCount() == 0) {
+            return;
+        }
+        try {
+            recovered.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while carts are recovered", e);
+        }
+    }
+
+    private Cart load(String cartId) {
+        long retiredBefore = retirements.get();
+        List<CartItem> persisted = cartItemRepository.findByCartId(cartId);
+        if (retirements.get() != retiredBefore) {
+            // A cart may have been flushed and dropped while reading, read again
+            return null;
+        }
+        Cart loaded = new Cart(cartId, persisted, journal);
+        Cart existing = carts.putIfAbsent(cartId, loaded);
+        if (existing == null && !persisted.isEmpty()) {
+            logger.info("Loaded {} persisted lines of cart {}", persisted.size(), cartId);
+        }
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * Writes the changes queued so far to the database. Changes made while
+     * flushing are left for the next flush.
+     * @return true if all writes succeeded
+     */
+    public boolean flush() {
+        flushLock.lock();
+        try {
+            boolean written = true;
+            int remaining = pendingCount.get();
+            List<PendingWrite> batch = new ArrayList<>(Math.min(remaining, batchSize));
+            Cart cart;
+            while (remaining-- > 0 && (cart = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                batch.add(drain(cart));
+                if (batch.size() == batchSize) {
+                    written &= write(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                written &= write(batch);
+            }
+            return written;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Number of carts with changes not yet written.
+     * @return pending cart count
+     */
+    public int pendingCarts() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Number of carts parked after repeated write failures.
+     * @return parked cart count
+     */
+    public int parkedCarts() {
+        return parkedCount.get();
+    }
+
+    /** Queues a cart for the next flush, unparking it. Called while holding the cart lock. */
+    private void enqueue(Cart cart) {
+        if (cart.parked) {
+            cart.parked = false;
+            parkedCount.decrementAndGet();
+        }
+        if (!cart.queued) {
+            cart.queued = true;
+            pending.add(cart);
+            pendingCount.incrementAndGet();
+        }
+    }
+
+    private PendingWrite drain(Cart cart) {
+        cart.lock.lock();
+        try {
+            cart.queued = false;
+            Map<Long, CartItem> changes = new HashMap<>();
+            for (Long itemId : cart.changedItems) {
+                CartItem line = cart.lines.get(itemId);
+                changes.put(itemId, line != null ? cart.copy(line) : new CartItem(cart.cartId, null, 0));
+            }
+            PendingWrite write = new PendingWrite(cart, cart.clearPending, changes);
+            cart.changedItems.clear();
+            cart.clearPending = false;
+            return write;
+        } finally {
+            cart.lock.unlock();
+        }
+    }
+
+    private boolean write(List<PendingWrite> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(this::persist));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                failed(batch.get(0), e);
+                return false;
+            }
+            logger.warn("Writing {} carts failed, writing them one by one", batch.size(), e);
+            boolean written = true;
+            for (PendingWrite write : batch) {
+                written &= write(List.of(write));
+            }
+            return written;
+        }
+        batch.forEach(write -> written(write.cart()));
+        logger.debug("Wrote {} carts", batch.size());
+        return true;
+    }
+
+    private void persist(PendingWrite write) {
+        String cartId = write.cart().cartId;
+        if (write.clear()) {
+            cartItemRepository.deleteByCartId(cartId);
+        }
+        if (write.changes().isEmpty()) {
+            return;
+        }
+        Map<Long, CartItem> rows = write.clear() ? Map.of()
+                : cartItemRepository.findByCartIdAndItemIdIn(cartId, write.changes().keySet()).stream()
+                .collect(Collectors.toMap(row -> row.getItem().getId(), Function.identity()));
+        List<CartItem> inserts = new ArrayList<>();
+        write.changes().forEach((itemId, line) -> {
+            CartItem row = rows.get(itemId);
+            if (line.getQuantity() == 0) {
+                if (row != null) {
+                    cartItemRepository.delete(row);
+                }
+            } else if (row != null) {
+                row.setQuantity(line.getQuantity());
+            } else {
+                inserts.add(new CartItem(cartId, line.getItem(), line.getQuantity()));
+            }
+        });
+        cartItemRepository.saveAll(inserts);
+    }
+
+    /**
+     * Puts the changes of a failed write back on its cart, to be retried on the next
+     * flush, or parks the cart once it failed {@code maxWriteAttempts} flushes in a row.
+     */
+    private void failed(PendingWrite write, RuntimeException e) {
+        Cart cart = write.cart();
+        cart.lock.lock();
+        try {
+            cart.changedItems.addAll(write.changes().keySet());
+            cart.clearPending |= write.clear();
+            cart.failedWrites++;
+            if (cart.queued || cart.failedWrites < maxWriteAttempts) {
+                logger.warn("Writing cart {} failed, retrying on the next flush", cart.cartId, e);
+                enqueue(cart);
+            } else if (!cart.parked) {
+                cart.parked = true;
+                parkedCount.incrementAndGet();
+                logger.error("Writing cart {} failed {} times, parked until its next use", cart.cartId,
+                        cart.failedWrites, e);
+            }
+        } finally {
+            cart.lock.unlock();
+        }
+    }
+
+    /**
+     * Records a successful write and drops the cart from memory if it is empty and
+     * fully written, so cleared carts do not accumulate. Its next use loads it again,
+     * with no lines.
+     */
+    private void written(Cart cart) {
+        cart.lock.lock();
+        try {
+            cart.failedWrites = 0;
+            if (cart.lines.isEmpty()) {
+                retireIfIdle(cart);
+            }
+        } finally {
+            cart.lock.unlock();
+        }
+    }
+
+    /** Drops a cart that has no changes left to write. Called while holding the cart lock. */
+    private boolean retireIfIdle(Cart cart) {
+        if (cart.retired || cart.hasChanges() || cart.queued) {
+            return false;
+        }
+        cart.retired = true;
+        retirements.incrementAndGet();
+        carts.remove(cart.cartId, cart);
+        return true;
+    }
+
+    /**
+     * Drops the carts that are fully written and have not been used for the idle
+     * timeout, so memory holds only active carts. Their next use loads them again.
+     * @return Number of carts dropped
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Cart cart : carts.values()) {
+            if (!cart.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (now - cart.lastUsed >= idleTimeout.toNanos() && retireIfIdle(cart)) {
+                    evicted++;
+                }
+            } finally {
+                cart.lock.unlock();
+            }
+        }
+        if (evicted > 0) {
+            logger.debug("Evicted {} idle carts", evicted);
+        }
+        return evicted;
+    }
+
+    /**
+     * Restores the carts from the journal once the application is ready, after
+     * the catalog has been loaded. Cart operations and snapshots wait until then.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (journal == null || recovered.getCount() == 0) {
+            return;
+        }
+        restore(journal.recover(this::persistedQuantities));
+        recovered.countDown();
+    }
+
+    @Override
+    public void start() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(flushInterval.toMillis(), 1);
+        executor.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        long evictMillis = Math.max(idleTimeout.toMillis() / 2, 1);
+        executor.scheduleWithFixedDelay(this::evictQuietly, evictMillis, evictMillis, TimeUnit.MILLISECONDS);
+        if (journal != null) {
+            long snapshotMillis = Math.max(snapshotInterval.toMillis(), 1);
+            executor.scheduleWithFixedDelay(this::snapshotQuietly, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+        }
+        flusher = executor;
+        logger.info("Carts are kept in memory and written to the database every {}", flushInterval);
+    }
+
+    /**
+     * Stops the periodic flush and writes all pending changes, including those of
+     * parked carts. Runs after the web server stopped taking requests, see {@link #getPhase()}.
+     */
+    @Override
+    public void stop() {
+        ScheduledExecutorService executor = flusher;
+        flusher = null;
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        unparkAll();
+        int carts = pendingCount.get();
+        if (flush()) {
+            logger.info("Wrote {} pending carts on shutdown", carts);
+        } else {
+            logger.error("Could not write {} pending carts on shutdown", pendingCount.get());
+        }
+        snapshot();
+    }
+
+    /** Gives parked carts one more attempt, since their changes are lost once the store stops. */
+    private void unparkAll() {
+        for (Cart cart : carts.values()) {
+            cart.lock.lock();
+            try {
+                if (cart.parked) {
+                    enqueue(cart);
+                }
+            } finally {
+                cart.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return flusher != null;
+    }
+
+    /**
+     * Stops after the web server, whose graceful shutdown runs in the phases just below
+     * {@link SmartLifecycle#DEFAULT_PHASE}, so requests still in flight are flushed too.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void flushQuietly() {
+        try {
+            if (journal != null) {
+                journal.force();
+            }
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Cart flush failed", e);
+        }
+    }
+
+    private void evictQuietly() {
+        try {
+            evictIdle();
+        } catch (RuntimeException e) {
+            logger.error("Cart eviction failed", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of all carts in memory to the journal, so a restart
+     * only replays the events appended after it.
+     */
+    public void snapshot() {
+        if (journal == null || recovered.getCount() > 0) {
+            return;
+        }
+        long sequence = journal.nextSequence();
+        Map<String, Map<Long, Integer>> states = new HashMap<>();
+        for (Cart cart : carts.values()) {
+            cart.lock.lock();
+            try {
+                if (!cart.retired) {
+                    states.put(cart.cartId, cart.quantities());
+                }
+            } finally {
+                cart.lock.unlock();
+            }
+        }
+        journal.writeSnapshot(sequence, states);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            logger.error("Cart snapshot failed", e);
+        }
+    }
+
+    private Map<Long, Integer> persistedQuantities(String cartId) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        cartItemRepository.findByCartId(cartId)
+                .forEach(row -> quantities.put(row.getItem().getId(), row.getQuantity()));
+        return quantities;
+    }
+
+    /**
+     * Puts recovered carts in memory and queues them to be rewritten in full,
+     * since the database may lag behind the journal.
+     */
+    private void restore(Map<String, Map<Long, Integer>> recovered) {
+        Set<Long> itemIds = new HashSet<>();
+        recovered.values().forEach(lines -> itemIds.addAll(lines.keySet()));
+        Map<Long, Item> items = itemRepository.findAllById(itemIds).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        recovered.forEach((cartId, quantities) -> {
+            Cart cart = new Cart(cartId, List.of(), journal);
+            quantities.forEach((itemId, quantity) -> {
+                Item item = items.get(itemId);
+                if (item == null) {
+                    logger.warn("Dropping item {} from recovered cart {}, the item no longer exists", itemId, cartId);
+                } else {
+                    cart.lines.put(itemId, new CartItem(cartId, item, quantity));
+                }
+            });
+            cart.changedItems.addAll(cart.lines.keySet());
+            cart.clearPending = true;
+            carts.put(cartId, cart);
+            enqueue(cart);
+        });
+    }
+
+    /** Changes of one cart taken by a flush. A quantity of 0 marks a removed line. */
+    private record PendingWrite(Cart cart, boolean clear, Map<Long, CartItem> changes) {
+    }
+
+    /**
+     * In-memory state of one cart. Only used inside {@link #withCart}, which holds
+     * its lock; lines handed out are copies.
+     */
+    public static final class Cart {
+
+        private final String cartId;
+        private final CartJournal journal;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, CartItem> lines = new LinkedHashMap<>();
+        private final Set<Long> changedItems = new HashSet<>();
+        private boolean clearPending;
+        private boolean queued;
+        private boolean retired;
+        private boolean parked;
+        private int failedWrites;
+        private long lastUsed = System.nanoTime();
+
+        private Cart(String cartId, List<CartItem> persisted, CartJournal journal) {
+            this.cartId = cartId;
+            this.journal = journal;
+            for (CartItem row : persisted) {
+                lines.put(row.getItem().getId(), row);
+            }
+        }
+
+        /**
+         * All lines of the cart, in the order they were added.
+         * @return Copies of the lines
+         */
+        public List<CartItem> lines() {
+            List<CartItem> copies = new ArrayList<>(lines.size());
+            for (CartItem line : lines.values()) {
+                copies.add(copy(line));
+            }
+            return copies;
+        }
+
+        /**
+         * Whether a quantity can be added to the line of an item without overflowing.
+         * @param itemId ID of the item
+         * @param delta Quantity to add, positive
+         * @return false if the line would hold more than Integer.MAX_VALUE units
+         */
+        public boolean canAdd(Long itemId, int delta) {
+            CartItem line = lines.get(itemId);
+            return line == null || line.getQuantity() <= Integer.MAX_VALUE - delta;
+        }
+
+        /**
+         * Line of an item.
+         * @param itemId ID of the item
+         * @return Copy of the line, empty if the item is not in the cart
+         */
+        public Optional<CartItem> line(Long itemId) {
+            return Optional.ofNullable(lines.get(itemId)).map(this::copy);
+        }
+
+        /**
+         * Adds to the quantity of an item, creating its line if needed.
+         * @param item The item
+         * @param delta Quantity to add, positive
+         * @return Copy of the changed line
+         * @throws IllegalArgumentException if the quantity would overflow
+         */
+        public CartItem add(Item item, int delta) {
+            CartItem line = lines.get(item.getId());
+            if (!canAdd(item.getId(), delta)) {
+                throw new IllegalArgumentException("Quantity too large for item: " + item.getId());
+            }
+            int quantity = line == null ? delta : line.getQuantity() + delta;
+            journal(EventType.SCAN, item.getId(), quantity);
+            if (line == null) {
+                line = new CartItem(cartId, item, quantity);
+                lines.put(item.getId(), line);
+            } else {
+                line.setQuantity(quantity);
+            }
+            changedItems.add(item.getId());
+            return copy(line);
+        }
+
+        /**
+         * Sets the quantity of a line in the cart.
+         * @param itemId ID of an item in the cart
+         * @param quantity New quantity, positive
+         * @return Copy of the changed line
+         */
+        public CartItem setQuantity(Long itemId, int quantity) {
+            CartItem line = lines.get(itemId);
+            journal(EventType.DECREASE, itemId, quantity);
+            line.setQuantity(quantity);
+            changedItems.add(itemId);
+            return copy(line);
+        }
+
+        /**
+         * Removes the line of an item.
+         * @param itemId ID of the item
+         * @return Copy of the removed line, empty if the item was not in the cart
+         */
+        public Optional<CartItem> remove(Long itemId) {
+            if (!lines.containsKey(itemId)) {
+                return Optional.empty();
+            }
+            journal(EventType.REMOVE, itemId, 0);
+            CartItem removed = lines.remove(itemId);
+            changedItems.add(itemId);
+            return Optional.of(copy(removed));
+        }
+
+        /**
+         * Removes all lines.
+         */
+        public void clear() {
+            journal(EventType.CLEAR, 0, 0);
+            lines.clear();
+            changedItems.clear();
+            clearPending = true;
+        }
+
+        /** Records a change before it is applied, so a failed append leaves the cart unchanged. */
+        private void journal(EventType type, long itemId, int quantity) {
+            if (journal != null) {
+                journal.append(type, cartId, itemId, quantity);
+            }
+        }
+
+        private Map<Long, Integer> quantities() {
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            lines.forEach((itemId, line) -> quantities.put(itemId, line.getQuantity()));
+            return quantities;
+        }
+
+        private boolean hasChanges() {
+            return clearPending || !changedItems.isEmpty();
+        }
+
+        private CartItem copy(CartItem line) {
+            CartItem copy = new CartItem(cartId, line.getItem(), line.getQuantity());
+            copy.setId(line.getId());
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.Offer;
+
+/**
+ * Compiles one kind of {@link Offer} into deals and bundles of a {@link PriceCatalog}.
+ * Rules run once per catalog build, never while pricing a cart.
+ */
+@FunctionalInterface
+public interface OfferRule {
+
+    /**
+     * Adds the deals or bundles expressed by the offer to the catalog being built.
+     * @param offer The offer to compile
+     * @param catalog The catalog being built
+     */
+    void compile(Offer offer, PriceCatalog.Builder catalog);
+}
@@ -0,0 +1,75 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Money;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.domain.OfferType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registry of the {@link OfferRule} compiling each {@link OfferType}.
+ * Every single-item promotion is reduced to a deal "size units for price", so the
+ * catalog can combine several offers on the same item when picking the cheapest price.
+ */
+public final class OfferRules {
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private static final Map<OfferType, OfferRule> RULES = new EnumMap<>(OfferType.class);
+
+    static {
+        // N units for a fixed price
+        RULES.put(OfferType.MULTI_BUY, (offer, catalog) ->
+                catalog.addDeal(offer.getItem().getId(), offer.getQuantity(),
+                        Money.toMinorUnits(offer.getTotalPrice())));
+
+        // Buy N, get M free: N + M units for the price of N
+        RULES.put(OfferType.BUY_X_GET_Y, (offer, catalog) -> {
+            Long itemId = offer.getItem().getId();
+            Long unitPrice = catalog.unitPrice(itemId);
+            if (unitPrice != null) {
+                catalog.addDeal(itemId, offer.getQuantity() + offer.getFreeQuantity(),
+                        Math.multiplyExact(unitPrice, offer.getQuantity()));
+            }
+        });
+
+        // Percentage off every unit
+        RULES.put(OfferType.PERCENT_OFF, (offer, catalog) -> {
+            Long itemId = offer.getItem().getId();
+            Long unitPrice = catalog.unitPrice(itemId);
+            if (unitPrice != null && offer.getPercentOff() != null) {
+                BigDecimal discounted = BigDecimal.valueOf(unitPrice)
+                        .multiply(HUNDRED.subtract(offer.getPercentOff()))
+                        .divide(HUNDRED, 0, RoundingMode.HALF_UP);
+                catalog.addDeal(itemId, 1, discounted.longValueExact());
+            }
+        });
+
+        // The offer item plus the bundle items for a fixed price
+        RULES.put(OfferType.BUNDLE, (offer, catalog) -> {
+            Map<Long, Integer> components = new LinkedHashMap<>();
+            components.merge(offer.getItem().getId(), 1, Integer::sum);
+            for (Item item : offer.getBundleItems()) {
+                components.merge(item.getId(), 1, Integer::sum);
+            }
+            catalog.addBundle(components, Money.toMinorUnits(offer.getTotalPrice()));
+        });
+    }
+
+    private OfferRules() {
+    }
+
+    /**
+     * Returns the rule compiling offers of the given type.
+     * @param type The offer type, null meaning {@link OfferType#MULTI_BUY}
+     * @return The rule for that type
+     */
+    public static OfferRule forType(OfferType type) {
+        return RULES.get(type == null ? OfferType.MULTI_BUY : type);
+    }
+}
@@ -2,15 +2,20 @@ package com.checkoutkata.service;
 
 import com.checkoutkata.domain.Item;
 import com.checkoutkata.domain.Offer;
+import com.checkoutkata.domain.OfferType;
+import com.checkoutkata.dto.CursorPage;
 import com.checkoutkata.repository.ItemRepository;
 import com.checkoutkata.repository.OfferRepository;
 import jakarta.persistence.EntityNotFoundException;
+import io.micrometer.observation.annotation.Observed;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -20,15 +25,18 @@ import java.util.Objects;
  */
 @Service
 @Transactional
+@Observed(name = "offer.service")
 public class OfferService {
     private static final Logger logger = LoggerFactory.getLogger(OfferService.class);
 
     private final OfferRepository offerRepository;
     private final ItemRepository itemRepository;
+    private final PricingEngine pricingEngine;
 
-    public OfferService(OfferRepository offerRepository, ItemRepository itemRepository) {
+    public OfferService(OfferRepository offerRepository, ItemRepository itemRepository, PricingEngine pricingEngine) {
         this.offerRepository = offerRepository;
         this.itemRepository = itemRepository;
+        this.pricingEngine = pricingEngine;
     }
 
     /**
@@ -46,10 +54,12 @@ public class OfferService {
         Item item = itemRepository.findById(itemId)
                 .orElseThrow(() -> new EntityNotFoundException("Item not found: " + itemId));
 
-        Offer offer = new Offer(item, offerData.getQuantity(), offerData.getTotalPrice());
+        Offer offer = new Offer(typeOf(offerData), item, offerData.getQuantity(), offerData.getTotalPrice());
+        applyOfferData(offer, offerData);
         Offer savedOffer = offerRepository.save(offer);
-        logger.info("Created new offer for item: {}, quantity: {}, price: {}",
-                item.getName(), offer.getQuantity(), offer.getTotalPrice());
+        pricingEngine.invalidate();
+        logger.info("Created new {} offer for item: {}, quantity: {}, price: {}",
+                offer.getType(), item.getName(), offer.getQuantity(), offer.getTotalPrice());
         return savedOffer;
     }
 
@@ -67,9 +77,12 @@ public class OfferService {
         Offer offer = offerRepository.findById(offerId)
                 .orElseThrow(() -> new EntityNotFoundException("Offer not found: " + offerId));
 
+        offer.setType(typeOf(offerData));
         offer.setQuantity(offerData.getQuantity());
         offer.setTotalPrice(offerData.getTotalPrice());
+        applyOfferData(offer, offerData);
         Offer updatedOffer = offerRepository.save(offer);
+        pricingEngine.invalidate();
         logger.info("Updated offer with id: {}, new quantity: {}, new price: {}",
                 offerId, offerData.getQuantity(), offerData.getTotalPrice());
         return updatedOffer;
@@ -85,6 +98,20 @@ public class OfferService {
         return offers;
     }
 
+    /**
+     * Retrieves one page of offers ordered by id, starting after the given id.
+     * @param after ID of the last offer of the previous page, null for the first page
+     * @param limit Maximum number of offers to return
+     * @return The page of offers with the cursor of the next page
+     * @throws IllegalArgumentException if limit out of range
+     */
+    public CursorPage<Offer> getOffersPage(Long after, int limit) {
+        CursorPage.validateLimit(limit);
+        List<Offer> rows = offerRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, Limit.of(limit + 1));
+        logger.info("Found {} offers after id: {}", Math.min(rows.size(), limit), after);
+        return CursorPage.of(rows, limit, Offer::getId);
+    }
+
     /**
      * Retrieves an offer by its ID.
      * @param id ID of the offer
@@ -108,20 +135,82 @@ public class OfferService {
             return false;
         }
         offerRepository.deleteById(offerId);
+        pricingEngine.invalidate();
         logger.info("Successfully deleted offer with id: {}", offerId);
         return true;
     }
 
     /**
-     * Validates the offer data.
+     * Copies the type specific fields of the offer data onto an offer,
+     * resolving the bundle items.
+     * @param offer The offer to update
+     * @param offerData The offer data
+     * @throws EntityNotFoundException if a bundle item is not found
+     */
+    private void applyOfferData(Offer offer, Offer offerData) {
+        offer.setFreeQuantity(offerData.getFreeQuantity());
+        offer.setPercentOff(offerData.getPercentOff());
+
+        List<Item> bundleItems = new ArrayList<>();
+        if (offer.getType() == OfferType.BUNDLE) {
+            List<Long> ids = offerData.getBundleItems().stream().map(Item::getId).toList();
+            bundleItems.addAll(itemRepository.findAllById(ids));
+            for (Long id : ids) {
+                if (bundleItems.stream().noneMatch(item -> item.getId().equals(id))) {
+                    throw new EntityNotFoundException("Item not found: " + id);
+                }
+            }
+        }
+        offer.setBundleItems(bundleItems);
+    }
+
+    private static OfferType typeOf(Offer offerData) {
+        return offerData.getType() == null ? OfferType.MULTI_BUY : offerData.getType();
+    }
+
+    /**
+     * Validates the offer data for its type.
      * @param offer The offer to validate
      * @throws IllegalArgumentException if validation fails
      */
-    private void validateOfferData(Offer offer) {
+    static void validateOfferData(Offer offer) {
+        switch (typeOf(offer)) {
+            case MULTI_BUY -> {
+                validateQuantity(offer);
+                validatePrice(offer);
+            }
+            case BUY_X_GET_Y -> {
+                validateQuantity(offer);
+                if (offer.getFreeQuantity() <= 0) {
+                    throw new IllegalArgumentException("Free quantity must be positive");
+                }
+            }
+            case PERCENT_OFF -> {
+                BigDecimal percentOff = offer.getPercentOff();
+                if (percentOff == null || percentOff.signum() <= 0 || percentOff.compareTo(BigDecimal.valueOf(100)) > 0) {
+                    throw new IllegalArgumentException("Percentage off must be between 0 and 100");
+                }
+            }
+            case BUNDLE -> {
+                validatePrice(offer);
+                if (offer.getBundleItems() == null || offer.getBundleItems().isEmpty()) {
+                    throw new IllegalArgumentException("Bundle must contain at least one other item");
+                }
+                if (offer.getBundleItems().stream().anyMatch(item -> item == null || item.getId() == null)) {
+                    throw new IllegalArgumentException("Bundle items must reference existing item ids");
+                }
+            }
+        }
+    }
+
+    private static void validateQuantity(Offer offer) {
         if (offer.getQuantity() <= 0) {
             throw new IllegalArgumentException("Offer quantity must be positive");
         }
-        if (offer.getTotalPrice().compareTo(BigDecimal.ZERO) < 0) {
+    }
+
+    private static void validatePrice(Offer offer) {
+        if (offer.getTotalPrice() == null || offer.getTotalPrice().compareTo(BigDecimal.ZERO) < 0) {
             throw new IllegalArgumentException("Offer price cannot be negative");
         }
     }
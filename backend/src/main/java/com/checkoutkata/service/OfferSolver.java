@@ -0,0 +1,334 @@
+package com.checkoutkata.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the cheapest way to price the lines of bundled items, choosing how many
+ * times each cross-item bundle is applied. Whatever no bundle consumes is priced
+ * by the item plans, which already hold the cheapest combination of single-item
+ * offers for every quantity.
+ * <p>
+ * Items are split into groups connected by shared bundles and each group is solved
+ * on its own with a memoized search over bundle counts. When the time budget runs
+ * out before a group is solved, that group falls back to greedy bundle selection.
+ */
+@Component
+public class OfferSolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(OfferSolver.class);
+
+    /** States visited between two deadline checks. */
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private final long budgetNanos;
+
+    public OfferSolver(@Value("${pricing.solver.budget:2ms}") Duration budget) {
+        if (budget.isNegative()) {
+            throw new IllegalArgumentException("Solver budget cannot be negative");
+        }
+        this.budgetNanos = budget.toNanos();
+    }
+
+    /**
+     * Prices the bundled lines of a cart at the lowest total found within the budget.
+     * @param catalog The catalog to price against
+     * @param quantities Quantities of bundled items, by item ID
+     * @return The total price of these lines in minor units
+     */
+    public long solve(PriceCatalog catalog, Map<Long, Integer> quantities) {
+        long deadline = System.nanoTime() + budgetNanos;
+        long total = 0;
+        for (Search search : split(catalog, quantities)) {
+            total = Math.addExact(total, search.run(deadline));
+        }
+        return total;
+    }
+
+    /**
+     * Prices the bundled lines by applying bundles one at a time, most valuable
+     * first, as long as each application lowers the price of the items it consumes.
+     * @param catalog The catalog to price against
+     * @param quantities Quantities of bundled items, by item ID
+     * @return The total price of these lines in minor units
+     */
+    public long greedy(PriceCatalog catalog, Map<Long, Integer> quantities) {
+        return greedy(catalog, catalog.bundles(), quantities);
+    }
+
+    private static long greedy(PriceCatalog catalog, List<PriceCatalog.BundlePlan> bundles,
+                               Map<Long, Integer> quantities) {
+        Map<Long, Integer> remaining = new HashMap<>(quantities);
+        long total = 0;
+        for (PriceCatalog.BundlePlan bundle : bundles) {
+            while (bundle.fits(remaining)) {
+                long without = 0;
+                long with = bundle.price;
+                for (int i = 0; i < bundle.itemIds.length; i++) {
+                    PriceCatalog.ItemPlan plan = catalog.planOf(bundle.itemIds[i]);
+                    int quantity = remaining.get(bundle.itemIds[i]);
+                    without = Math.addExact(without, plan.cost(quantity));
+                    with = Math.addExact(with, plan.cost(quantity - bundle.counts[i]));
+                }
+                if (with >= without) {
+                    break;
+                }
+                bundle.take(remaining);
+                total = Math.addExact(total, bundle.price);
+            }
+        }
+        for (Map.Entry<Long, Integer> entry : remaining.entrySet()) {
+            total = Math.addExact(total, catalog.planOf(entry.getKey()).cost(entry.getValue()));
+        }
+        return total;
+    }
+
+    /**
+     * Splits the cart into groups of items connected by the bundles that fit the cart.
+     */
+    private static List<Search> split(PriceCatalog catalog, Map<Long, Integer> quantities) {
+        List<PriceCatalog.BundlePlan> usable = new ArrayList<>();
+        Map<Long, List<PriceCatalog.BundlePlan>> bundlesByItem = new HashMap<>();
+        for (PriceCatalog.BundlePlan bundle : catalog.bundles()) {
+            if (bundle.fits(quantities)) {
+                usable.add(bundle);
+                for (long itemId : bundle.itemIds) {
+                    bundlesByItem.computeIfAbsent(itemId, id -> new ArrayList<>()).add(bundle);
+                }
+            }
+        }
+
+        List<Search> searches = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        for (Long start : quantities.keySet()) {
+            if (!visited.add(start)) {
+                continue;
+            }
+            Map<Long, Integer> group = new LinkedHashMap<>();
+            Set<PriceCatalog.BundlePlan> groupBundles = new HashSet<>();
+            Deque<Long> pending = new ArrayDeque<>();
+            pending.add(start);
+            while (!pending.isEmpty()) {
+                Long itemId = pending.poll();
+                group.put(itemId, quantities.get(itemId));
+                for (PriceCatalog.BundlePlan bundle : bundlesByItem.getOrDefault(itemId, List.of())) {
+                    if (groupBundles.add(bundle)) {
+                        for (long other : bundle.itemIds) {
+                            if (visited.add(other)) {
+                                pending.add(other);
+                            }
+                        }
+                    }
+                }
+            }
+            // Keep the catalog order, most valuable bundle first
+            List<PriceCatalog.BundlePlan> ordered = new ArrayList<>(groupBundles.size());
+            for (PriceCatalog.BundlePlan bundle : usable) {
+                if (groupBundles.contains(bundle)) {
+                    ordered.add(bundle);
+                }
+            }
+            searches.add(new Search(catalog, group, ordered));
+        }
+        return searches;
+    }
+
+    /**
+     * Exhaustive search over the bundle counts of one group of items, memoized on
+     * the quantities still open. Bundles are decided one at a time; an item is
+     * priced as soon as the last bundle containing it is decided, so the state
+     * before each bundle is only the remaining quantity of the items shared
+     * between decided and undecided bundles.
+     */
+    private static final class Search {
+
+        private static final long UNSOLVED = -1;
+
+        private final PriceCatalog catalog;
+        private final Map<Long, Integer> quantities;
+        private final List<PriceCatalog.BundlePlan> bundles;
+        /** The bundles most valuable first, as greedy applies them when the budget runs out. */
+        private final List<PriceCatalog.BundlePlan> valueOrdered;
+        private final PriceCatalog.ItemPlan[] plans;
+        private final int[] remaining;
+        private final int[][] bundleSlots;
+        private final int[][] closingSlots;
+        private final int[][] openSlots;
+        private final int[] widths;
+        private final Map<Long, Long>[] memo;
+
+        private long deadline;
+        private long visited;
+        private boolean expired;
+
+        @SuppressWarnings("unchecked")
+        private Search(PriceCatalog catalog, Map<Long, Integer> quantities, List<PriceCatalog.BundlePlan> bundles) {
+            this.catalog = catalog;
+            this.quantities = quantities;
+            this.valueOrdered = bundles;
+            this.plans = new PriceCatalog.ItemPlan[quantities.size()];
+            this.remaining = new int[quantities.size()];
+            this.widths = new int[quantities.size()];
+
+            Map<Long, Integer> slots = new HashMap<>();
+            int slot = 0;
+            for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                plans[slot] = catalog.planOf(entry.getKey());
+                remaining[slot] = entry.getValue();
+                widths[slot] = Integer.SIZE - Integer.numberOfLeadingZeros(entry.getValue());
+                slots.put(entry.getKey(), slot++);
+            }
+
+            // Decide bundles in the order their items were discovered, which keeps the open items few
+            int[][] bounds = new int[bundles.size()][];
+            for (int b = 0; b < bundles.size(); b++) {
+                int low = Integer.MAX_VALUE;
+                int high = 0;
+                for (long itemId : bundles.get(b).itemIds) {
+                    int s = slots.get(itemId);
+                    low = Math.min(low, s);
+                    high = Math.max(high, s);
+                }
+                bounds[b] = new int[]{high, low, b};
+            }
+            Arrays.sort(bounds, Comparator.<int[]>comparingInt(bound -> bound[0]).thenComparingInt(bound -> bound[1]));
+            this.bundles = new ArrayList<>(bundles.size());
+            for (int[] bound : bounds) {
+                this.bundles.add(bundles.get(bound[2]));
+            }
+
+            int[] first = new int[plans.length];
+            int[] last = new int[plans.length];
+            Arrays.fill(first, -1);
+            this.bundleSlots = new int[this.bundles.size()][];
+            for (int b = 0; b < this.bundles.size(); b++) {
+                PriceCatalog.BundlePlan bundle = this.bundles.get(b);
+                bundleSlots[b] = new int[bundle.itemIds.length];
+                for (int i = 0; i < bundle.itemIds.length; i++) {
+                    int s = slots.get(bundle.itemIds[i]);
+                    bundleSlots[b][i] = s;
+                    if (first[s] < 0) {
+                        first[s] = b;
+                    }
+                    last[s] = b;
+                }
+            }
+
+            // Sweep the bundles, tracking the items opened by an earlier bundle and not yet closed
+            this.closingSlots = new int[this.bundles.size()][];
+            this.openSlots = new int[this.bundles.size()][];
+            this.memo = new Map[this.bundles.size()];
+            Set<Integer> open = new LinkedHashSet<>();
+            int openBits = 0;
+            for (int b = 0; b < this.bundles.size(); b++) {
+                // States that do not fit a long key are searched without memoization
+                if (openBits < Long.SIZE) {
+                    openSlots[b] = open.stream().mapToInt(Integer::intValue).toArray();
+                    memo[b] = new HashMap<>();
+                }
+
+                List<Integer> closing = new ArrayList<>();
+                for (int s : bundleSlots[b]) {
+                    if (last[s] == b) {
+                        closing.add(s);
+                        if (open.remove(s)) {
+                            openBits -= widths[s];
+                        }
+                    } else if (open.add(s)) {
+                        openBits += widths[s];
+                    }
+                }
+                closingSlots[b] = closing.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        private long run(long deadline) {
+            if (bundles.isEmpty()) {
+                return plans[0].cost(remaining[0]);
+            }
+            this.deadline = deadline;
+            long best = search(0);
+            if (expired) {
+                logger.debug("Offer solver budget exhausted after {} states, falling back to greedy", visited);
+                return greedy(catalog, valueOrdered, quantities);
+            }
+            return best;
+        }
+
+        /**
+         * Cheapest price of bundles b and later plus the items they close,
+         * given the current remaining quantities.
+         */
+        private long search(int b) {
+            if (b == bundles.size() || expired) {
+                return 0;
+            }
+            // Checked on the first state too, so a zero budget always prices greedily
+            if (visited++ % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline) {
+                expired = true;
+                return 0;
+            }
+            long key = memo[b] == null ? 0 : key(openSlots[b]);
+            if (memo[b] != null) {
+                long cached = memo[b].getOrDefault(key, UNSOLVED);
+                if (cached != UNSOLVED) {
+                    return cached;
+                }
+            }
+
+            PriceCatalog.BundlePlan bundle = bundles.get(b);
+            int[] slots = bundleSlots[b];
+            int max = Integer.MAX_VALUE;
+            for (int i = 0; i < slots.length; i++) {
+                max = Math.min(max, remaining[slots[i]] / bundle.counts[i]);
+            }
+
+            long best = Long.MAX_VALUE;
+            for (int times = 0; times <= max && !expired; times++) {
+                long cost = Math.multiplyExact(times, bundle.price);
+                for (int s : closingSlots[b]) {
+                    cost = Math.addExact(cost, plans[s].cost(remaining[s]));
+                }
+                best = Math.min(best, Math.addExact(cost, search(b + 1)));
+                for (int i = 0; i < slots.length; i++) {
+                    remaining[slots[i]] -= bundle.counts[i];
+                }
+            }
+            for (int i = 0; i < slots.length; i++) {
+                remaining[slots[i]] += (max + 1) * bundle.counts[i];
+            }
+            if (expired) {
+                return 0;
+            }
+            if (memo[b] != null) {
+                memo[b].put(key, best);
+            }
+            return best;
+        }
+
+        private long key(int[] open) {
+            long key = 0;
+            for (int s : open) {
+                key = (key << widths[s]) | remaining[s];
+            }
+            // Packed quantities differ mostly in their low bits; an odd multiplier spreads them over the hash
+            return key * 0x9E3779B97F4A7C15L;
+        }
+    }
+}
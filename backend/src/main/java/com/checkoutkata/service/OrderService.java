@@ -0,0 +1,70 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Order;
+import com.checkoutkata.domain.OrderLine;
+import com.checkoutkata.dto.Receipt;
+import com.checkoutkata.dto.ReceiptLine;
+import com.checkoutkata.repository.OrderRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/*
+ * OrderService records checked out carts as orders.
+ * The cart is priced once by PricingEngine and the receipt is saved as an
+ * immutable order with one line per cart line. Runs in the transaction of the
+ * caller, so the order and the clearing of the cart commit together.
+ */
+@Service
+@Transactional
+public class OrderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
+
+    private final OrderRepository orderRepository;
+    private final PricingEngine pricingEngine;
+
+    public OrderService(OrderRepository orderRepository, PricingEngine pricingEngine) {
+        this.orderRepository = orderRepository;
+        this.pricingEngine = pricingEngine;
+    }
+
+    /**
+     * Prices the cart lines and saves them as an order.
+     * @param cartId ID of the checked out cart
+     * @param cartItems The lines of the cart
+     * @return The itemized receipt, numbered with the order
+     * @throws IllegalArgumentException if the cart is empty
+     */
+    public Receipt placeOrder(String cartId, Collection<CartItem> cartItems) {
+        if (cartItems.isEmpty()) {
+            throw new IllegalArgumentException("Cannot check out empty cart: " + cartId);
+        }
+        Receipt receipt = pricingEngine.itemize(cartItems);
+
+        // Microseconds, as stored
+        Order order = new Order(cartId, Instant.now().truncatedTo(ChronoUnit.MICROS), receipt.bundleSavings(),
+                receipt.savings(), receipt.total());
+        for (ReceiptLine line : receipt.lines()) {
+            order.addLine(new OrderLine(line.itemId(), line.name(), line.quantity(), line.unitPrice(),
+                    describe(line), line.remainder(), line.savings(), line.total()));
+        }
+        Order saved = orderRepository.save(order);
+        logger.info("Placed order {} for cart {} with {} lines, total {}",
+                saved.getId(), cartId, receipt.lines().size(), receipt.total());
+        return receipt.forOrder(saved.getId(), cartId, saved.getCreatedAt());
+    }
+
+    private static String describe(ReceiptLine line) {
+        return line.offerGroups().stream()
+                .map(group -> group.times() + " x " + group.quantity() + " for " + group.price().toPlainString())
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,401 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Money;
+import com.checkoutkata.domain.Offer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable pricing plan compiled from the item prices and active offers.
+ * Built once by {@link PricingEngine} and shared between threads until the
+ * catalog changes. Amounts are held in minor units.
+ * <p>
+ * Single-item offers are compiled into deals ("size units for price") and a
+ * cost table holding the cheapest combination of deals for every quantity up
+ * to a bound, so pricing a line is a table lookup. Cross-item bundles are kept
+ * separately and applied over the lines of the items they contain.
+ * <p>
+ * Plans are held in arrays indexed by item id, directly when the ids are dense
+ * (as generated ids are) and through a sorted id array otherwise, so a lookup
+ * never boxes the id or hashes. Nothing refers back to the JPA entities the
+ * catalog was built from, so any number of threads can price against it
+ * without locks or a persistence context; changes publish a new catalog.
+ */
+public final class PriceCatalog {
+
+    /** Upper bound on the cost table of one item, keeping compilation time and memory bounded. */
+    static final int MAX_COST_TABLE = 4096;
+
+    /** Item ids may spread over this many slots per item before the catalog switches to a sorted index. */
+    private static final int MAX_SLOTS_PER_ITEM = 4;
+
+    private final long version;
+    private final int size;
+    /** Smallest item id, the id of slot 0 when the index is dense. */
+    private final long baseId;
+    /** Sorted item ids when the index is sparse, null when it is dense. */
+    private final long[] ids;
+    private final ItemPlan[] plans;
+    private final boolean[] bundled;
+    private final List<BundlePlan> bundles;
+
+    private PriceCatalog(long version, int size, long baseId, long[] ids, ItemPlan[] plans, boolean[] bundled,
+                         List<BundlePlan> bundles) {
+        this.version = version;
+        this.size = size;
+        this.baseId = baseId;
+        this.ids = ids;
+        this.plans = plans;
+        this.bundled = bundled;
+        this.bundles = bundles;
+    }
+
+    /**
+     * Compiles an unversioned catalog from the given items and offers.
+     * @param items Items with their current unit prices
+     * @param offers Offers currently defined
+     * @return A new immutable catalog
+     */
+    public static PriceCatalog of(Collection<Item> items, Collection<Offer> offers) {
+        return of(items, offers, 0);
+    }
+
+    /**
+     * Compiles a catalog from the given items and offers.
+     * @param items Items with their current unit prices
+     * @param offers Offers currently defined
+     * @param version Version of the catalog, increasing with every published change
+     * @return A new immutable catalog
+     */
+    public static PriceCatalog of(Collection<Item> items, Collection<Offer> offers, long version) {
+        Builder builder = new Builder(items);
+        for (Offer offer : offers) {
+            OfferRules.forType(offer.getType()).compile(offer, builder);
+        }
+        return builder.build(version);
+    }
+
+    /**
+     * Version of the catalog, increasing with every published change.
+     * @return catalog version
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the compiled pricing plan of an item.
+     * @param itemId ID of the item
+     * @return The item plan, or null if the item is not in the catalog
+     */
+    ItemPlan planOf(long itemId) {
+        int slot = slotOf(itemId);
+        return slot < 0 ? null : plans[slot];
+    }
+
+    /**
+     * Whether the item is part of a cross-item bundle, in which case its line
+     * cannot be priced on its own.
+     * @param itemId ID of the item
+     * @return true if a bundle contains the item
+     */
+    public boolean isBundled(long itemId) {
+        int slot = slotOf(itemId);
+        return slot >= 0 && bundled[slot];
+    }
+
+    /**
+     * Whether any cross-item bundle is defined.
+     * @return true if the catalog has bundles
+     */
+    public boolean hasBundles() {
+        return !bundles.isEmpty();
+    }
+
+    /**
+     * Cross-item bundles, most valuable first.
+     * @return The compiled bundles
+     */
+    List<BundlePlan> bundles() {
+        return bundles;
+    }
+
+    /**
+     * Number of items in the catalog.
+     * @return item count
+     */
+    public int size() {
+        return size;
+    }
+
+    private int slotOf(long itemId) {
+        if (ids != null) {
+            int slot = Arrays.binarySearch(ids, itemId);
+            return slot < 0 ? -1 : slot;
+        }
+        long offset = itemId - baseId;
+        return offset >= 0 && offset < plans.length && plans[(int) offset] != null ? (int) offset : -1;
+    }
+
+    /**
+     * Collects the unit prices, deals and bundles produced by the {@link OfferRule}s.
+     */
+    public static final class Builder {
+
+        private final Map<Long, Long> unitPrices = new HashMap<>();
+        private final Map<Long, List<long[]>> deals = new HashMap<>();
+        private final List<BundlePlan> bundles = new ArrayList<>();
+
+        private Builder(Collection<Item> items) {
+            for (Item item : items) {
+                unitPrices.put(item.getId(), Money.toMinorUnits(item.getUnitPrice()));
+            }
+        }
+
+        /**
+         * Returns the unit price of an item.
+         * @param itemId ID of the item
+         * @return The unit price in minor units, or null if the item is unknown
+         */
+        public Long unitPrice(Long itemId) {
+            return unitPrices.get(itemId);
+        }
+
+        /**
+         * Adds a single-item deal: size units of the item for price.
+         * Deals for unknown items are ignored.
+         * @param itemId ID of the item
+         * @param size Number of units the deal covers
+         * @param price Price of those units in minor units
+         */
+        public void addDeal(Long itemId, int size, long price) {
+            if (size <= 0 || !unitPrices.containsKey(itemId)) {
+                return;
+            }
+            deals.computeIfAbsent(itemId, id -> new ArrayList<>()).add(new long[]{size, price});
+        }
+
+        /**
+         * Adds a cross-item bundle. Bundles referencing unknown items are ignored.
+         * @param components Units of each item the bundle contains, by item ID
+         * @param price Price of the bundle in minor units
+         */
+        public void addBundle(Map<Long, Integer> components, long price) {
+            if (components.isEmpty() || !unitPrices.keySet().containsAll(components.keySet())) {
+                return;
+            }
+            bundles.add(new BundlePlan(components, price));
+        }
+
+        private PriceCatalog build(long version) {
+            long[] sortedIds = unitPrices.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            int size = sortedIds.length;
+            long baseId = size == 0 ? 0 : sortedIds[0];
+            long span = size == 0 ? 0 : sortedIds[size - 1] - baseId + 1;
+            boolean dense = span <= (long) size * MAX_SLOTS_PER_ITEM;
+            int slots = dense ? (int) span : size;
+
+            ItemPlan[] plans = new ItemPlan[slots];
+            for (int i = 0; i < size; i++) {
+                long itemId = sortedIds[i];
+                int slot = dense ? (int) (itemId - baseId) : i;
+                plans[slot] = ItemPlan.compile(unitPrices.get(itemId), deals.getOrDefault(itemId, List.of()));
+            }
+
+            boolean[] bundled = new boolean[slots];
+            for (BundlePlan bundle : bundles) {
+                for (long itemId : bundle.itemIds) {
+                    bundled[dense ? (int) (itemId - baseId) : Arrays.binarySearch(sortedIds, itemId)] = true;
+                }
+            }
+            // Most valuable bundle first, measured against buying its items at unit price
+            List<BundlePlan> ordered = new ArrayList<>(bundles);
+            ordered.sort(Comparator.comparingLong((BundlePlan bundle) -> bundle.price - bundle.listPrice(unitPrices)));
+            return new PriceCatalog(version, size, baseId, dense ? null : sortedIds, plans, bundled,
+                    List.copyOf(ordered));
+        }
+    }
+
+    /**
+     * Compiled pricing of one item: its unit price, its deals and the cheapest
+     * cost of every quantity up to a bound. Beyond the bound the deal with the
+     * best price per unit is repeated, which is optimal once the quantity
+     * exceeds best size times largest deal size.
+     */
+    static final class ItemPlan {
+
+        final long unitPrice;
+        final int[] dealSizes;
+        final long[] dealPrices;
+        private final long[] costs;
+        private final int bestSize;
+        private final long bestPrice;
+        /** Index of the deal with the best price per unit, -1 if that is the unit price. */
+        private final int bestDeal;
+
+        private ItemPlan(long unitPrice, int[] dealSizes, long[] dealPrices, long[] costs, int bestSize, long bestPrice,
+                         int bestDeal) {
+            this.unitPrice = unitPrice;
+            this.dealSizes = dealSizes;
+            this.dealPrices = dealPrices;
+            this.costs = costs;
+            this.bestSize = bestSize;
+            this.bestPrice = bestPrice;
+            this.bestDeal = bestDeal;
+        }
+
+        private static ItemPlan compile(long unitPrice, List<long[]> deals) {
+            int[] sizes = new int[deals.size()];
+            long[] prices = new long[deals.size()];
+            int bestSize = 1;
+            long bestPrice = unitPrice;
+            int bestDeal = -1;
+            int maxSize = 1;
+            for (int d = 0; d < sizes.length; d++) {
+                sizes[d] = (int) deals.get(d)[0];
+                prices[d] = deals.get(d)[1];
+                maxSize = Math.max(maxSize, sizes[d]);
+                if (prices[d] * bestSize < bestPrice * sizes[d]) {
+                    bestSize = sizes[d];
+                    bestPrice = prices[d];
+                    bestDeal = d;
+                }
+            }
+            if (sizes.length == 0) {
+                return new ItemPlan(unitPrice, sizes, prices, null, 1, unitPrice, -1);
+            }
+
+            int limit = (int) Math.min((long) bestSize * maxSize, MAX_COST_TABLE);
+            limit = Math.max(limit, maxSize);
+            long[] costs = new long[limit + 1];
+            for (int quantity = 1; quantity <= limit; quantity++) {
+                long best = costs[quantity - 1] + unitPrice;
+                for (int d = 0; d < sizes.length; d++) {
+                    if (sizes[d] <= quantity) {
+                        best = Math.min(best, costs[quantity - sizes[d]] + prices[d]);
+                    }
+                }
+                costs[quantity] = best;
+            }
+            return new ItemPlan(unitPrice, sizes, prices, costs, bestSize, bestPrice, bestDeal);
+        }
+
+        boolean hasDeals() {
+            return costs != null;
+        }
+
+        /**
+         * Lowest price per unit any quantity of this item can reach.
+         * @return Price per unit in minor units
+         */
+        double minUnitPrice() {
+            return (double) bestPrice / bestSize;
+        }
+
+        /**
+         * Cheapest price of the given quantity using the unit price and the deals.
+         * @param quantity Number of units
+         * @return Price in minor units
+         */
+        long cost(int quantity) {
+            if (costs == null) {
+                return Math.multiplyExact(unitPrice, quantity);
+            }
+            int limit = costs.length - 1;
+            if (quantity <= limit) {
+                return costs[quantity];
+            }
+            int groups = (quantity - limit + bestSize - 1) / bestSize;
+            return Math.addExact(costs[quantity - groups * bestSize], Math.multiplyExact(groups, bestPrice));
+        }
+
+        /**
+         * How often each deal is applied in the cheapest price of the given quantity,
+         * retraced through the cost table. Units not covered by a deal are at unit price.
+         * @param quantity Number of units
+         * @return Applications per deal, indexed like {@link #dealSizes}
+         */
+        int[] groups(int quantity) {
+            int[] times = new int[dealSizes.length];
+            if (costs == null) {
+                return times;
+            }
+            int limit = costs.length - 1;
+            int left = quantity;
+            if (left > limit) {
+                int groups = (left - limit + bestSize - 1) / bestSize;
+                if (bestDeal >= 0) {
+                    times[bestDeal] += groups;
+                }
+                left -= groups * bestSize;
+            }
+            while (left > 0) {
+                int applied = -1;
+                for (int d = 0; d < dealSizes.length && applied < 0; d++) {
+                    if (dealSizes[d] <= left && costs[left - dealSizes[d]] + dealPrices[d] == costs[left]) {
+                        applied = d;
+                    }
+                }
+                if (applied < 0) {
+                    left--;
+                } else {
+                    times[applied]++;
+                    left -= dealSizes[applied];
+                }
+            }
+            return times;
+        }
+    }
+
+    /**
+     * Cross-item bundle: counts[i] units of itemIds[i] for price.
+     */
+    static final class BundlePlan {
+
+        final long[] itemIds;
+        final int[] counts;
+        final long price;
+
+        private BundlePlan(Map<Long, Integer> components, long price) {
+            this.itemIds = new long[components.size()];
+            this.counts = new int[components.size()];
+            int i = 0;
+            for (Map.Entry<Long, Integer> component : components.entrySet()) {
+                itemIds[i] = component.getKey();
+                counts[i] = component.getValue();
+                i++;
+            }
+            this.price = price;
+        }
+
+        private long listPrice(Map<Long, Long> unitPrices) {
+            long listPrice = 0;
+            for (int i = 0; i < itemIds.length; i++) {
+                listPrice += unitPrices.get(itemIds[i]) * counts[i];
+            }
+            return listPrice;
+        }
+
+        boolean fits(Map<Long, Integer> remaining) {
+            for (int i = 0; i < itemIds.length; i++) {
+                if (remaining.getOrDefault(itemIds[i], 0) < counts[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void take(Map<Long, Integer> remaining) {
+            for (int i = 0; i < itemIds.length; i++) {
+                remaining.merge(itemIds[i], -counts[i], Integer::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Money;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.dto.Receipt;
+import com.checkoutkata.dto.ReceiptLine;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OfferRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * PricingEngine prices carts against an in-memory PriceCatalog.
+ * The catalog is loaded from the repositories on first use and reloaded
+ * after item prices or offers change, so pricing itself never hits the database.
+ * Each call prices against one catalog snapshot read from a volatile field, so
+ * a concurrent price change is seen entirely or not at all. Every loaded
+ * catalog is recorded in CatalogHistory, so carts can also be priced as of a past moment.
+ */
+@Component
+public class PricingEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(PricingEngine.class);
+
+    private final ItemRepository itemRepository;
+    private final OfferRepository offerRepository;
+    private final OfferSolver offerSolver;
+    private final HotPathMetrics metrics;
+    private final CatalogHistory history;
+
+    private final AtomicLong generation = new AtomicLong();
+    // A lock rather than a monitor, so virtual threads waiting for a reload do not pin their carriers
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private volatile PriceCatalog catalog;
+
+    public PricingEngine(ItemRepository itemRepository, OfferRepository offerRepository, OfferSolver offerSolver,
+                         HotPathMetrics metrics, CatalogHistory history) {
+        this.itemRepository = itemRepository;
+        this.offerRepository = offerRepository;
+        this.offerSolver = offerSolver;
+        this.metrics = metrics;
+        this.history = history;
+    }
+
+    /**
+     * Returns the current catalog, loading it if it was invalidated.
+     * @return The current price catalog
+     */
+    public PriceCatalog getCatalog() {
+        PriceCatalog current = catalog;
+        if (current != null) {
+            return current;
+        }
+        reloadLock.lock();
+        try {
+            current = catalog;
+            if (current == null) {
+                long loadedGeneration = generation.get();
+                List<Item> items = itemRepository.findAll();
+                List<Offer> offers = offerRepository.findAllWithBundleItems();
+                current = PriceCatalog.of(items, offers, loadedGeneration);
+                // Only publish if no invalidation happened while loading
+                if (generation.get() == loadedGeneration) {
+                    catalog = current;
+                }
+                history.record(items, offers);
+                logger.info("Loaded price catalog version {} with {} items", current.version(), current.size());
+            }
+            return current;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Discards the cached catalog so the next pricing call reloads it.
+     * When called inside a transaction, the catalog is discarded after commit
+     * so the reload sees the committed prices and offers.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    discardCatalog();
+                }
+            });
+        } else {
+            discardCatalog();
+        }
+    }
+
+    /**
+     * Builds a new catalog version from the committed prices and offers and
+     * switches to it in a single reference swap. Unlike {@link #invalidate()},
+     * readers never wait for a reload: calls in flight finish on the catalog
+     * they started with and the next call sees the new version.
+     * Must be called after the changes have committed.
+     * @return The published catalog
+     */
+    public PriceCatalog publish() {
+        reloadLock.lock();
+        try {
+            long version = generation.incrementAndGet();
+            List<Item> items = itemRepository.findAll();
+            List<Offer> offers = offerRepository.findAllWithBundleItems();
+            PriceCatalog next = PriceCatalog.of(items, offers, version);
+            // A concurrent invalidation wins, the next read reloads
+            if (generation.get() == version) {
+                catalog = next;
+            }
+            history.record(items, offers);
+            logger.info("Published price catalog version {} with {} items", version, next.size());
+            return next;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void discardCatalog() {
+        generation.incrementAndGet();
+        catalog = null;
+        logger.info("Price catalog invalidated");
+    }
+
+    /**
+     * Calculates the total price of the given cart lines in a single pass,
+     * applying any available offers. Lines of items taking part in a bundle
+     * are priced together once all lines are known.
+     * @param cartItems The cart lines to price
+     * @return Total price as BigDecimal
+     */
+    public BigDecimal calculateTotal(Collection<CartItem> cartItems) {
+        long start = metrics.startPricing();
+        long total = priceLines(getCatalog(), cartItems);
+        metrics.stopPricing(start, cartItems.size());
+        return Money.ofMinor(total).toBigDecimal();
+    }
+
+    /**
+     * Calculates the total price of the given cart lines with the prices and
+     * offers that were live at a past moment, as recorded by {@link CatalogHistory}.
+     * Items created after that moment are priced at their current unit price.
+     * @param cartItems The cart lines to price
+     * @param asOf The moment whose prices and offers apply, null for the current ones
+     * @return Total price as BigDecimal
+     * @throws IllegalArgumentException if the moment is in the future or before the recorded history
+     */
+    public BigDecimal calculateTotal(Collection<CartItem> cartItems, Instant asOf) {
+        if (asOf == null) {
+            return calculateTotal(cartItems);
+        }
+        return Money.ofMinor(priceLines(history.catalogAsOf(asOf), cartItems)).toBigDecimal();
+    }
+
+    /**
+     * Prices the given cart lines once against the current catalog and breaks the
+     * total down per line: the offer groups applied, the units left at unit price
+     * and the savings. Lines of bundled items are listed at unit price and the
+     * discount of their bundles is given once for the receipt.
+     * @param cartItems The cart lines to price
+     * @return A receipt not yet numbered, see {@link Receipt#forOrder}
+     */
+    public Receipt itemize(Collection<CartItem> cartItems) {
+        long start = metrics.startPricing();
+        PriceCatalog snapshot = getCatalog();
+        List<ReceiptLine> lines = new ArrayList<>(cartItems.size());
+        long total = 0;
+        long listTotal = 0;
+        long bundledListTotal = 0;
+        Map<Long, Integer> bundled = null;
+        for (CartItem cartItem : cartItems) {
+            Item item = cartItem.getItem();
+            int quantity = cartItem.getQuantity();
+            PriceCatalog.ItemPlan plan = snapshot.planOf(item.getId());
+            long unitPrice = plan == null ? Money.toMinorUnits(item.getUnitPrice()) : plan.unitPrice;
+            long listPrice = Math.multiplyExact(unitPrice, quantity);
+            listTotal = Math.addExact(listTotal, listPrice);
+
+            List<ReceiptLine.OfferGroup> groups = List.of();
+            int remainder = quantity;
+            long lineTotal = listPrice;
+            if (snapshot.isBundled(item.getId())) {
+                if (bundled == null) {
+                    bundled = new HashMap<>();
+                }
+                bundled.merge(item.getId(), quantity, Integer::sum);
+                bundledListTotal = Math.addExact(bundledListTotal, listPrice);
+            } else {
+                if (plan != null && plan.hasDeals()) {
+                    lineTotal = calculateWithOffer(plan, quantity);
+                    int[] times = plan.groups(quantity);
+                    groups = new ArrayList<>();
+                    for (int d = 0; d < times.length; d++) {
+                        if (times[d] > 0) {
+                            groups.add(new ReceiptLine.OfferGroup(plan.dealSizes[d],
+                                    Money.ofMinor(plan.dealPrices[d]).toBigDecimal(), times[d]));
+                            remainder -= times[d] * plan.dealSizes[d];
+                        }
+                    }
+                }
+                total = Math.addExact(total, lineTotal);
+            }
+            lines.add(new ReceiptLine(item.getId(), item.getName(), quantity, Money.ofMinor(unitPrice).toBigDecimal(),
+                    groups, remainder, Money.ofMinor(listPrice - lineTotal).toBigDecimal(),
+                    Money.ofMinor(lineTotal).toBigDecimal()));
+        }
+        long bundleSavings = 0;
+        if (bundled != null) {
+            long bundledTotal = calculateBundledTotal(snapshot, bundled);
+            bundleSavings = bundledListTotal - bundledTotal;
+            total = Math.addExact(total, bundledTotal);
+        }
+        metrics.stopPricing(start, cartItems.size());
+        return new Receipt(null, null, null, lines, Money.ofMinor(bundleSavings).toBigDecimal(),
+                Money.ofMinor(listTotal - total).toBigDecimal(), Money.ofMinor(total).toBigDecimal());
+    }
+
+    private long priceLines(PriceCatalog snapshot, Collection<CartItem> cartItems) {
+        long total = 0;
+        Map<Long, Integer> bundled = null;
+        for (CartItem cartItem : cartItems) {
+            Long itemId = cartItem.getItem().getId();
+            if (snapshot.isBundled(itemId)) {
+                if (bundled == null) {
+                    bundled = new HashMap<>();
+                }
+                bundled.merge(itemId, cartItem.getQuantity(), Integer::sum);
+            } else {
+                total = Math.addExact(total, calculateItemTotal(snapshot, cartItem));
+            }
+        }
+        if (bundled != null) {
+            total = Math.addExact(total, calculateBundledTotal(snapshot, bundled));
+        }
+        return total;
+    }
+
+    /**
+     * Calculates the total price for a cart item, applying any available offers.
+     * Bundled items are priced here without their bundles; use
+     * {@link #calculateBundledTotal} for those.
+     * @param snapshot The catalog to price against
+     * @param cartItem The cart item to calculate total for
+     * @return The total price for this item in minor units, considering quantity and offers
+     */
+    public long calculateItemTotal(PriceCatalog snapshot, CartItem cartItem) {
+        Item item = cartItem.getItem();
+        int quantity = cartItem.getQuantity();
+        PriceCatalog.ItemPlan plan = snapshot.planOf(item.getId());
+
+        long total;
+        if (plan == null) {
+            // Created after this catalog was built; the next catalog will include it
+            total = Math.multiplyExact(Money.toMinorUnits(item.getUnitPrice()), quantity);
+        } else if (plan.hasDeals()) {
+            total = calculateWithOffer(plan, quantity);
+        } else {
+            total = Math.multiplyExact(plan.unitPrice, quantity);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Calculated total for item: {}, quantity: {}, total: {}",
+                    item.getName(), quantity, Money.ofMinor(total));
+        }
+        return total;
+    }
+
+    /**
+     * Calculates the total price of the lines of bundled items, applying the
+     * bundles and the single-item offers together at the lowest price the
+     * {@link OfferSolver} finds within its budget.
+     * @param snapshot The catalog to price against
+     * @param quantities Quantities of the bundled items, by item ID
+     * @return The total price of these lines in minor units
+     */
+    public long calculateBundledTotal(PriceCatalog snapshot, Map<Long, Integer> quantities) {
+        long total = offerSolver.solve(snapshot, quantities);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Applied bundles to {} items, total: {}", quantities.size(), Money.ofMinor(total));
+        }
+        return total;
+    }
+
+    /**
+     * Calculates the total price for items when one or more offers are applicable.
+     * The cheapest combination of offers and unit-priced items is precompiled
+     * in the item plan, so this is a lookup.
+     *
+     * @param plan     The compiled plan of the item, including its deals
+     * @param quantity Total quantity of items
+     * @return Total price after applying the offers, in minor units
+     */
+    private long calculateWithOffer(PriceCatalog.ItemPlan plan, int quantity) {
+        long total = plan.cost(quantity);
+        metrics.offerLookup(total < plan.unitPrice * quantity);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Applied offers: {} deals, quantity: {}, total: {}",
+                    plan.dealSizes.length, quantity, Money.ofMinor(total));
+        }
+        return total;
+    }
+}
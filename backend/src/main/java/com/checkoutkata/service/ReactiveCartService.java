@@ -0,0 +1,273 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.dto.CartSummary;
+import com.checkoutkata.dto.ScanRequest;
+import com.checkoutkata.repository.ReactiveCartItemRepository;
+import com.checkoutkata.repository.ReactiveCatalogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+ * ReactiveCartService is the non-blocking counterpart of CartService for the reactive API.
+ * Cart lines are read and written over R2DBC in the same database, validation is shared
+ * with CartService and totals are priced by the same PricingEngine, so both variants
+ * always agree on a cart's contents and total. It writes cart lines directly, so it is only
+ * available with the database cart store; with cart.store=memory the next flush of
+ * MemoryCartStore would overwrite its changes.
+ */
+@Service
+@ConditionalOnProperty(name = "cart.store", havingValue = "database", matchIfMissing = true)
+public class ReactiveCartService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveCartService.class);
+    private static final int MAX_DECREASE_ATTEMPTS = 3;
+
+    private final ReactiveCartItemRepository cartItemRepository;
+    private final ReactiveCatalogRepository catalogRepository;
+    private final PricingEngine pricingEngine;
+    private final CartTotals cartTotals;
+    private final CartAudit cartAudit;
+    private final TransactionalOperator transactionalOperator;
+
+    public ReactiveCartService(ReactiveCartItemRepository cartItemRepository,
+                               ReactiveCatalogRepository catalogRepository, PricingEngine pricingEngine,
+                               CartTotals cartTotals, CartAudit cartAudit, TransactionalOperator transactionalOperator) {
+        this.cartItemRepository = cartItemRepository;
+        this.catalogRepository = catalogRepository;
+        this.pricingEngine = pricingEngine;
+        this.cartTotals = cartTotals;
+        this.cartAudit = cartAudit;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    /**
+     * Adds one unit of an item to the cart.
+     * @param cartId ID of the cart
+     * @param itemId ID of the item to add
+     * @return The updated or created cart item, or an IllegalArgumentException if the item is not found
+     */
+    public Mono<CartItem> addToCart(String cartId, Long itemId) {
+        return Mono.defer(() -> {
+            CartService.validateCartId(cartId);
+            if (itemId == null) {
+                return Mono.error(new IllegalArgumentException("Item id cannot be null"));
+            }
+            return catalogRepository.findItemById(itemId)
+                    .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Item not found: " + itemId)))
+                    .flatMap(item -> cartItemRepository.addQuantity(cartId, itemId, 1)
+                            .then(cartItemRepository.findByCartIdAndItemId(cartId, itemId)))
+                    .as(transactionalOperator::transactional)
+                    .doOnNext(cartItem -> {
+                        cartTotals.invalidate(cartId);
+                        cartAudit.record("scan", cartId, itemId, cartItem.getQuantity());
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Added item to cart {}: {}, quantity: {}",
+                                    cartId, cartItem.getItem().getName(), cartItem.getQuantity());
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Adds a batch of scanned items to the cart in one transaction.
+     * @param cartId ID of the cart
+     * @param scans Scanned items and quantities; duplicates are collapsed
+     * @return The cart contents and total after applying the batch, or an
+     *         IllegalArgumentException if a quantity is not positive or an item is not found
+     */
+    public Mono<CartSummary> addToCart(String cartId, List<ScanRequest> scans) {
+        return Mono.defer(() -> {
+            CartService.validateCartId(cartId);
+            Map<Long, Integer> deltas = CartService.collapseScans(scans);
+            if (deltas.isEmpty()) {
+                return summarize(cartId);
+            }
+            return catalogRepository.findItemIdsIn(deltas.keySet())
+                    .collect(Collectors.toSet())
+                    .flatMap(found -> applyScans(cartId, deltas, found))
+                    .as(transactionalOperator::transactional)
+                    .then(Mono.fromRunnable(() -> {
+                        cartTotals.invalidate(cartId);
+                        cartAudit.record("batch", cartId, null, scans.size());
+                    }))
+                    .then(summarize(cartId))
+                    .doOnNext(summary -> logger.debug("Added batch of {} scans to cart {}", scans.size(), cartId));
+        });
+    }
+
+    private Mono<Void> applyScans(String cartId, Map<Long, Integer> deltas, Set<Long> found) {
+        if (found.size() != deltas.size()) {
+            List<Long> missing = deltas.keySet().stream().filter(id -> !found.contains(id)).toList();
+            return Mono.error(new IllegalArgumentException("Items not found: " + missing));
+        }
+        return Flux.fromIterable(deltas.entrySet())
+                .concatMap(delta -> cartItemRepository.addQuantity(cartId, delta.getKey(), delta.getValue()))
+                .then();
+    }
+
+    private Mono<CartSummary> summarize(String cartId) {
+        return cartItemRepository.findByCartId(cartId).collectList()
+                .flatMap(contents -> price(contents).map(total -> new CartSummary(contents, total)));
+    }
+
+    /*
+     * PricingEngine may load the catalog through JPA on a cold or invalidated cache,
+     * which blocks, so pricing runs on the bounded elastic scheduler rather than an event loop thread.
+     */
+    private Mono<BigDecimal> price(List<CartItem> contents) {
+        return Mono.fromCallable(() -> pricingEngine.calculateTotal(contents))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Retrieves all items currently in the cart.
+     * @param cartId ID of the cart
+     * @return The cart items
+     */
+    public Flux<CartItem> getCartContents(String cartId) {
+        return Flux.defer(() -> {
+            CartService.validateCartId(cartId);
+            return cartItemRepository.findByCartId(cartId);
+        });
+    }
+
+    /**
+     * Calculates the total price of all items in the cart, applying any available offers.
+     * Served from the running total kept by {@link CartService} when it is known,
+     * otherwise priced from the cart lines.
+     * @param cartId ID of the cart
+     * @return Total price
+     */
+    public Mono<BigDecimal> calculateTotal(String cartId) {
+        return Mono.defer(() -> {
+            CartService.validateCartId(cartId);
+            Optional<BigDecimal> runningTotal = cartTotals.get(cartId);
+            if (runningTotal.isPresent()) {
+                return Mono.just(runningTotal.get());
+            }
+            return cartItemRepository.findByCartId(cartId).collectList()
+                    .flatMap(this::price)
+                    .doOnNext(total -> logger.debug("Calculated total for cart {}: {}", cartId, total));
+        });
+    }
+
+    /**
+     * Calculates the total price of the items now in the cart with the prices and
+     * offers that were live at a past moment.
+     * @param cartId ID of the cart
+     * @param asOf The moment whose prices and offers apply
+     * @return Total price, or an IllegalArgumentException if the moment is in the
+     *         future or before the recorded history
+     */
+    public Mono<BigDecimal> calculateTotal(String cartId, Instant asOf) {
+        return Mono.defer(() -> {
+            CartService.validateCartId(cartId);
+            return cartItemRepository.findByCartId(cartId).collectList()
+                    .flatMap(contents -> Mono.fromCallable(() -> pricingEngine.calculateTotal(contents, asOf))
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .doOnNext(total -> logger.debug("Calculated total for cart {} as of {}: {}", cartId, asOf, total));
+        });
+    }
+
+    /**
+     * Removes all items from the cart.
+     * @param cartId ID of the cart
+     * @return Completes once the cart is cleared
+     */
+    public Mono<Void> clearCart(String cartId) {
+        return Mono.defer(() -> {
+            CartService.validateCartId(cartId);
+            return cartItemRepository.deleteByCartId(cartId)
+                    .doOnNext(deleted -> {
+                        cartTotals.invalidate(cartId);
+                        cartAudit.record("clear", cartId, null, 0);
+                        logger.info("Cart {} cleared", cartId);
+                    })
+                    .then();
+        });
+    }
+
+    /**
+     * Completely removes an item from the cart regardless of quantity.
+     * @param cartId ID of the cart
+     * @param itemId ID of the item to remove
+     * @return Completes once removed, or an IllegalArgumentException if the item is not in the cart
+     */
+    public Mono<Void> deleteCartItem(String cartId, Long itemId) {
+        return Mono.defer(() -> {
+            CartService.validateCartId(cartId);
+            return cartItemRepository.deleteByCartIdAndItemId(cartId, itemId)
+                    .flatMap(deleted -> deleted == 0
+                            ? Mono.error(new IllegalArgumentException("Item not found in cart: " + itemId))
+                            : Mono.fromRunnable(() -> {
+                                cartTotals.invalidate(cartId);
+                                cartAudit.record("remove", cartId, itemId, 0);
+                                logger.debug("Removed item {} from cart {}", itemId, cartId);
+                            }))
+                    .then();
+        });
+    }
+
+    /**
+     * Decreases the quantity of an item in the cart, removing it if the quantity reaches zero.
+     * @param cartId ID of the cart
+     * @param itemId ID of the item
+     * @param decreaseBy Amount to decrease
+     * @return The updated cart item, empty if the item was removed, or an
+     *         IllegalArgumentException if the item is not in the cart or decreaseBy is not positive
+     */
+    public Mono<CartItem> deleteCartItemByQuantity(String cartId, Long itemId, int decreaseBy) {
+        return Mono.defer(() -> {
+            CartService.validateCartId(cartId);
+            if (decreaseBy <= 0) {
+                return Mono.error(new IllegalArgumentException("Decrease amount must be positive"));
+            }
+            return decrease(cartId, itemId, decreaseBy, 0)
+                    .as(transactionalOperator::transactional)
+                    .doOnSuccess(cartItem -> {
+                        cartTotals.invalidate(cartId);
+                        cartAudit.record("decrease", cartId, itemId, cartItem == null ? 0 : cartItem.getQuantity());
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Decreased quantity of item {} in cart {} by {}", itemId, cartId, decreaseBy);
+                        }
+                    });
+        });
+    }
+
+    /*
+     * Conditional update, then conditional delete, so a concurrent add between the two
+     * statements is never deleted with the line; retried while the line keeps changing.
+     */
+    private Mono<CartItem> decrease(String cartId, Long itemId, int decreaseBy, int attempt) {
+        if (attempt == MAX_DECREASE_ATTEMPTS) {
+            return Mono.error(new IllegalStateException(
+                    "Cart line kept changing while decreasing: " + cartId + "/" + itemId));
+        }
+        Mono<CartItem> retry = cartItemRepository.findByCartIdAndItemId(cartId, itemId)
+                .hasElement()
+                .flatMap(exists -> exists
+                        ? decrease(cartId, itemId, decreaseBy, attempt + 1)
+                        : Mono.error(new IllegalArgumentException("Item not found in cart: " + itemId)));
+        Mono<CartItem> removeLine = cartItemRepository.deleteLineIfAtMost(cartId, itemId, decreaseBy)
+                .flatMap(deleted -> deleted == 0 ? retry : Mono.empty());
+        return cartItemRepository.decreaseQuantity(cartId, itemId, decreaseBy)
+                .flatMap(updated -> updated == 0
+                        ? removeLine
+                        : cartItemRepository.findByCartIdAndItemId(cartId, itemId));
+    }
+}
@@ -0,0 +1,171 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.dto.CursorPage;
+import com.checkoutkata.repository.ReactiveCatalogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.util.concurrent.Callable;
+
+/*
+ * ReactiveCatalogService serves the items and offers of the reactive API.
+ * Listings are read over R2DBC; streams emit rows only as fast as the
+ * subscriber requests them, so a slow client holds back the database cursor
+ * instead of filling memory. Changes go through ItemService and OfferService
+ * on the bounded elastic scheduler, so the price cache and price history
+ * follow them exactly as they follow changes made through the blocking API.
+ */
+@Service
+public class ReactiveCatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveCatalogService.class);
+
+    private final ReactiveCatalogRepository catalogRepository;
+    private final ItemService itemService;
+    private final OfferService offerService;
+
+    public ReactiveCatalogService(ReactiveCatalogRepository catalogRepository, ItemService itemService,
+                                  OfferService offerService) {
+        this.catalogRepository = catalogRepository;
+        this.itemService = itemService;
+        this.offerService = offerService;
+    }
+
+    /**
+     * Retrieves an item by its ID.
+     * @param id Item ID
+     * @return The item, or empty if not found
+     */
+    public Mono<Item> getItemById(Long id) {
+        return catalogRepository.findItemById(id);
+    }
+
+    /**
+     * Retrieves one page of items ordered by id, starting after the given id.
+     * @param after ID of the last item of the previous page, null for the first page
+     * @param limit Maximum number of items to return
+     * @return The page of items with the cursor of the next page
+     */
+    public Mono<CursorPage<Item>> getItemsPage(Long after, int limit) {
+        return Mono.defer(() -> {
+            CursorPage.validateLimit(limit);
+            return catalogRepository.findItemsAfter(after == null ? 0L : after, limit + 1).collectList()
+                    .map(rows -> CursorPage.of(rows, limit, Item::getId))
+                    .doOnNext(page -> logger.info("Found {} items after id: {}", page.content().size(), after));
+        });
+    }
+
+    /**
+     * Retrieves all items ordered by id, as fast as the subscriber requests them.
+     * @return The items
+     */
+    public Flux<Item> streamItems() {
+        return catalogRepository.streamItems()
+                .doOnComplete(() -> logger.info("Streamed items"));
+    }
+
+    /**
+     * Retrieves one page of offers ordered by id, starting after the given id.
+     * @param after ID of the last offer of the previous page, null for the first page
+     * @param limit Maximum number of offers to return
+     * @return The page of offers with the cursor of the next page
+     */
+    public Mono<CursorPage<Offer>> getOffersPage(Long after, int limit) {
+        return Mono.defer(() -> {
+            CursorPage.validateLimit(limit);
+            return catalogRepository.findOffersAfter(after == null ? 0L : after, limit + 1).collectList()
+                    .map(rows -> CursorPage.of(rows, limit, Offer::getId))
+                    .doOnNext(page -> logger.info("Found {} offers after id: {}", page.content().size(), after));
+        });
+    }
+
+    /**
+     * Retrieves all offers ordered by id with their items, as fast as the subscriber requests them.
+     * @return The offers
+     */
+    public Flux<Offer> streamOffers() {
+        return catalogRepository.streamOffers()
+                .doOnComplete(() -> logger.info("Streamed offers"));
+    }
+
+    /**
+     * Creates a new item.
+     * @param item Item to create
+     * @return The created item, or an IllegalArgumentException if the price is negative or the name exists
+     */
+    public Mono<Item> createItem(Item item) {
+        return blocking(() -> itemService.createItem(item));
+    }
+
+    /**
+     * Updates the price of an existing item.
+     * @param id Item ID
+     * @param newPrice New unit price
+     * @return The updated item, or an EntityNotFoundException if the item does not exist
+     */
+    public Mono<Item> updatePrice(Long id, BigDecimal newPrice) {
+        return blocking(() -> itemService.updatePrice(id, newPrice));
+    }
+
+    /**
+     * Updates the name of an existing item.
+     * @param id Item ID
+     * @param newName New name
+     * @return The updated item, an EntityNotFoundException if the item does not exist,
+     *         or an IllegalArgumentException if the name is empty or exists
+     */
+    public Mono<Item> updateName(Long id, String newName) {
+        return blocking(() -> itemService.updateName(id, newName));
+    }
+
+    /**
+     * Deletes an item.
+     * @param id Item ID
+     * @return True if the item was deleted, false if it did not exist
+     */
+    public Mono<Boolean> deleteItem(Long id) {
+        return blocking(() -> itemService.deleteItemById(id));
+    }
+
+    /**
+     * Creates a new offer for an item.
+     * @param itemId ID of the item the offer applies to
+     * @param offer Offer details
+     * @return The created offer, or an IllegalArgumentException if the offer is invalid
+     *         or an EntityNotFoundException if the item does not exist
+     */
+    public Mono<Offer> createOffer(Long itemId, Offer offer) {
+        return blocking(() -> offerService.createOffer(itemId, offer));
+    }
+
+    /**
+     * Updates an existing offer.
+     * @param id Offer ID
+     * @param offer New offer details
+     * @return The updated offer, or an IllegalArgumentException if the offer is invalid
+     *         or an EntityNotFoundException if the offer does not exist
+     */
+    public Mono<Offer> updateOffer(Long id, Offer offer) {
+        return blocking(() -> offerService.updateOffer(id, offer));
+    }
+
+    /**
+     * Deletes an offer.
+     * @param id Offer ID
+     * @return True if the offer was deleted, false if it did not exist
+     */
+    public Mono<Boolean> deleteOffer(Long id) {
+        return blocking(() -> offerService.deleteOffer(id));
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> change) {
+        return Mono.fromCallable(change).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,269 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.dto.CartSummary;
+import com.checkoutkata.dto.Receipt;
+import com.checkoutkata.dto.ScanRequest;
+import io.micrometer.observation.annotation.Observed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.checkoutkata.service.CartService.collapseScans;
+import static com.checkoutkata.service.CartService.validateCartId;
+
+/*
+ * WriteBehindCartService serves the cart endpoints from memory (cart.store=memory).
+ * Scans only change the cart held by MemoryCartStore and its running total, and
+ * items are read through the catalog cache, so a scan does not wait for the
+ * database. MemoryCartStore writes the changed lines in the background.
+ * Mutations of the same cart are serialized by the lock of the in-memory cart.
+ */
+@Service
+@Observed(name = "cart.service")
+@ConditionalOnProperty(name = "cart.store", havingValue = "memory")
+public class WriteBehindCartService implements CartOperations {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindCartService.class);
+
+    private final ItemService itemService;
+    private final MemoryCartStore cartStore;
+    private final PricingEngine pricingEngine;
+    private final CartTotals cartTotals;
+    private final CartAudit cartAudit;
+    private final OrderService orderService;
+
+    public WriteBehindCartService(ItemService itemService, MemoryCartStore cartStore, PricingEngine pricingEngine,
+                                  CartTotals cartTotals, CartAudit cartAudit, OrderService orderService) {
+        this.itemService = itemService;
+        this.cartStore = cartStore;
+        this.pricingEngine = pricingEngine;
+        this.cartTotals = cartTotals;
+        this.cartAudit = cartAudit;
+        this.orderService = orderService;
+    }
+
+    /**
+     * Adds one unit of an item to the in-memory cart.
+     * @param cartId ID of the cart
+     * @param itemId ID of the item to add
+     * @return The updated or created cart item
+     * @throws IllegalArgumentException if item not found or cart id invalid
+     */
+    @Override
+    public CartItem addToCart(String cartId, Long itemId) {
+        validateCartId(cartId);
+        Item item = itemService.getItemById(itemId)
+                .orElseThrow(() -> new IllegalArgumentException("Item not found: " + itemId));
+
+        CartItem cartItem = cartStore.withCart(cartId, cart -> {
+            CartItem line = cart.add(item, 1);
+            cartTotals.lineChanged(cartId, line);
+            cartAudit.record("scan", cartId, itemId, line.getQuantity());
+            return line;
+        });
+        if (logger.isDebugEnabled()) {
+            logger.debug("Added item to cart {}: {}, quantity: {}", cartId, item.getName(), cartItem.getQuantity());
+        }
+        return cartItem;
+    }
+
+    /**
+     * Adds a batch of scanned items to the in-memory cart at once.
+     * @param cartId ID of the cart
+     * @param scans Scanned items and quantities; duplicates are collapsed
+     * @return The cart contents and total after applying the batch
+     * @throws IllegalArgumentException if a quantity is not positive, an item is not found
+     *         or a line would hold more than Integer.MAX_VALUE units
+     */
+    @Override
+    public CartSummary addToCart(String cartId, List<ScanRequest> scans) {
+        validateCartId(cartId);
+        Map<Long, Integer> deltas = collapseScans(scans);
+
+        Map<Long, Item> items = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+        deltas.keySet().forEach(itemId -> itemService.getItemById(itemId)
+                .ifPresentOrElse(item -> items.put(itemId, item), () -> missing.add(itemId)));
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Items not found: " + missing);
+        }
+
+        CartSummary summary = cartStore.withCart(cartId, cart -> {
+            // Checked up front, as lines added to the cart are not rolled back
+            deltas.forEach((itemId, delta) -> {
+                if (!cart.canAdd(itemId, delta)) {
+                    throw new IllegalArgumentException("Quantity too large for item: " + itemId);
+                }
+            });
+            long version = cartTotals.version(cartId);
+            deltas.forEach((itemId, delta) -> cart.add(items.get(itemId), delta));
+            List<CartItem> contents = cart.lines();
+            BigDecimal total = pricingEngine.calculateTotal(contents);
+            cartTotals.cartReplaced(cartId, contents, version);
+            cartAudit.record("batch", cartId, null, scans.size());
+            return new CartSummary(contents, total);
+        });
+        if (logger.isDebugEnabled()) {
+            logger.debug("Added batch of {} scans to cart {}", scans.size(), cartId);
+        }
+        return summary;
+    }
+
+    /**
+     * Retrieves all items currently in the in-memory cart.
+     * @param cartId ID of the cart
+     * @return List of cart items
+     */
+    @Override
+    public List<CartItem> getCartContents(String cartId) {
+        validateCartId(cartId);
+        return cartStore.withCart(cartId, MemoryCartStore.Cart::lines);
+    }
+
+    /**
+     * Calculates the total price of the cart, served from its running total,
+     * which is seeded from the in-memory cart on the first read.
+     * @param cartId ID of the cart
+     * @return Total price as BigDecimal
+     */
+    @Override
+    public BigDecimal calculateTotal(String cartId) {
+        validateCartId(cartId);
+        Optional<BigDecimal> runningTotal = cartTotals.get(cartId);
+        if (runningTotal.isPresent()) {
+            return runningTotal.get();
+        }
+        BigDecimal total = cartStore.withCart(cartId, cart -> cartTotals.seed(cartId, cart.lines(), cartTotals.version(cartId)));
+        logger.debug("Calculated total for cart {}: {}", cartId, total);
+        return total;
+    }
+
+    /**
+     * Calculates the total price of the items now in the cart with the prices and
+     * offers that were live at a past moment.
+     * @param cartId ID of the cart
+     * @param asOf The moment whose prices and offers apply
+     * @return Total price as BigDecimal
+     * @throws IllegalArgumentException if the moment is in the future or before the recorded history
+     */
+    @Override
+    public BigDecimal calculateTotal(String cartId, Instant asOf) {
+        validateCartId(cartId);
+        List<CartItem> contents = cartStore.withCart(cartId, MemoryCartStore.Cart::lines);
+        BigDecimal total = pricingEngine.calculateTotal(contents, asOf);
+        logger.debug("Calculated total for cart {} as of {}: {}", cartId, asOf, total);
+        return total;
+    }
+
+    /**
+     * Sends the full contents and total of the cart to its subscribers.
+     * @param cartId ID of the cart
+     */
+    @Override
+    public void publishSnapshot(String cartId) {
+        validateCartId(cartId);
+        BigDecimal total = cartStore.withCart(cartId, cart -> cartTotals.snapshot(cartId, cart.lines(), cartTotals.version(cartId)));
+        logger.info("Published snapshot of cart {} with total {}", cartId, total);
+    }
+
+    /**
+     * Removes all items from the cart.
+     * @param cartId ID of the cart
+     */
+    @Override
+    public void clearCart(String cartId) {
+        validateCartId(cartId);
+        cartStore.withCart(cartId, cart -> {
+            cart.clear();
+            cartTotals.cartCleared(cartId);
+            cartAudit.record("clear", cartId, null, 0);
+            return null;
+        });
+        logger.info("Cart {} cleared", cartId);
+    }
+
+    /**
+     * Prices the cart once, records it as an order and clears it. Unlike other
+     * changes the clear is not written behind: the order and the deletion of the
+     * persisted lines share a transaction, so a failed write leaves the cart as it
+     * was and a crash cannot restore a cart that was checked out.
+     * @param cartId ID of the cart
+     * @return The itemized receipt of the order
+     * @throws IllegalArgumentException if the cart is empty
+     */
+    @Override
+    public Receipt checkout(String cartId) {
+        validateCartId(cartId);
+        Receipt receipt = cartStore.clearWritten(cartId, lines -> {
+            Receipt placed = orderService.placeOrder(cartId, lines);
+            cartTotals.cartCleared(cartId);
+            cartAudit.record("checkout", cartId, null, placed.lines().size());
+            return placed;
+        });
+        logger.info("Cart {} checked out as order {}", cartId, receipt.orderId());
+        return receipt;
+    }
+
+    /**
+     * Completely removes an item from the cart regardless of quantity.
+     * @param cartId ID of the cart
+     * @param itemId ID of the item to remove
+     * @throws IllegalArgumentException if item not found in cart
+     */
+    @Override
+    public void deleteCartItem(String cartId, Long itemId) {
+        validateCartId(cartId);
+        CartItem removed = cartStore.withCart(cartId, cart -> {
+            CartItem line = cart.remove(itemId)
+                    .orElseThrow(() -> new IllegalArgumentException("Item not found in cart: " + itemId));
+            cartTotals.lineRemoved(cartId, itemId);
+            cartAudit.record("remove", cartId, itemId, 0);
+            return line;
+        });
+        logger.debug("Removed item from cart: {}", removed.getItem().getName());
+    }
+
+    /**
+     * Decreases the quantity of an item in the cart by the specified amount.
+     * Removes the item if quantity reaches zero.
+     * @param cartId ID of the cart
+     * @param itemId ID of the item
+     * @param decreaseBy Amount to decrease
+     * @return Updated cart item or null if item was removed
+     * @throws IllegalArgumentException if item not found or decreaseBy <= 0
+     */
+    @Override
+    public CartItem deleteCartItemByQuantity(String cartId, Long itemId, int decreaseBy) {
+        validateCartId(cartId);
+        if (decreaseBy <= 0) {
+            throw new IllegalArgumentException("Decrease amount must be positive");
+        }
+
+        return cartStore.withCart(cartId, cart -> {
+            CartItem line = cart.line(itemId)
+                    .orElseThrow(() -> new IllegalArgumentException("Item not found in cart: " + itemId));
+            int newQuantity = line.getQuantity() - decreaseBy;
+            if (newQuantity <= 0) {
+                cart.remove(itemId);
+                cartTotals.lineRemoved(cartId, itemId);
+                cartAudit.record("decrease", cartId, itemId, 0);
+                return null;
+            }
+            CartItem updated = cart.setQuantity(itemId, newQuantity);
+            cartTotals.lineChanged(cartId, updated);
+            cartAudit.record("decrease", cartId, itemId, newQuantity);
+            return updated;
+        });
+    }
+}
@@ -0,0 +1,160 @@
+package com.checkoutkata.config;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.service.CartService;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class IdempotencyFilterTest {
+
+    private static final String CART_ID = "idempotency-test";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private IdempotencyFilter idempotencyFilter;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private CartService cartService;
+
+    private Item pear;
+
+    @BeforeEach
+    void setUp() {
+        pear = itemRepository.save(new Item("Idempotent Pear", new BigDecimal("0.25")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartService.clearCart(CART_ID);
+        itemRepository.deleteById(pear.getId());
+    }
+
+    @Test
+    void retryWithSameKey_ShouldReplayResponseWithoutScanningAgain() throws Exception {
+        String scan = "/cart/" + CART_ID + "/scan/" + pear.getId();
+
+        mockMvc.perform(post(scan).header(IdempotencyFilter.IDEMPOTENCY_KEY, "till-1-0001"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED))
+                .andExpect(jsonPath("$.quantity").value(1));
+        mockMvc.perform(post(scan).header(IdempotencyFilter.IDEMPOTENCY_KEY, "till-1-0001"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED, "true"))
+                .andExpect(jsonPath("$.quantity").value(1));
+        mockMvc.perform(post(scan).header(IdempotencyFilter.IDEMPOTENCY_KEY, "till-1-0002"))
+                .andExpect(jsonPath("$.quantity").value(2));
+
+        assertThat(cartService.getCartContents(CART_ID)).singleElement()
+                .satisfies(cartItem -> assertThat(cartItem.getQuantity()).isEqualTo(2));
+    }
+
+    @Test
+    void keyReusedForOtherRequest_ShouldBeRejected() throws Exception {
+        mockMvc.perform(post("/cart/" + CART_ID + "/scan/" + pear.getId())
+                        .header(IdempotencyFilter.IDEMPOTENCY_KEY, "till-1-0003"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/cart/other-cart/scan/" + pear.getId())
+                        .header(IdempotencyFilter.IDEMPOTENCY_KEY, "till-1-0003"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void keyReusedForOtherBody_ShouldBeRejectedAndSameBodyReplayed() throws Exception {
+        String batch = "/cart/" + CART_ID + "/scan/batch";
+        String twoPears = "[{\"itemId\": " + pear.getId() + ", \"quantity\": 2}]";
+
+        mockMvc.perform(post(batch).header(IdempotencyFilter.IDEMPOTENCY_KEY, "till-1-0004")
+                        .contentType(MediaType.APPLICATION_JSON).content(twoPears))
+                .andExpect(status().isOk());
+        mockMvc.perform(post(batch).header(IdempotencyFilter.IDEMPOTENCY_KEY, "till-1-0004")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"itemId\": " + pear.getId() + ", \"quantity\": 5}]"))
+                .andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(post(batch).header(IdempotencyFilter.IDEMPOTENCY_KEY, "till-1-0004")
+                        .contentType(MediaType.APPLICATION_JSON).content(twoPears))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED, "true"));
+
+        assertThat(cartService.getCartContents(CART_ID)).singleElement()
+                .satisfies(cartItem -> assertThat(cartItem.getQuantity()).isEqualTo(2));
+    }
+
+    @Test
+    void oversizedBody_ShouldBeRejectedWithoutClaimingKey() throws Exception {
+        String batch = "/cart/" + CART_ID + "/scan/batch";
+        byte[] oversized = new byte[1024 * 1024 + 1];
+        Arrays.fill(oversized, (byte) ' ');
+
+        mockMvc.perform(post(batch).header(IdempotencyFilter.IDEMPOTENCY_KEY, "till-1-0005")
+                        .contentType(MediaType.APPLICATION_JSON).content(oversized))
+                .andExpect(status().isPayloadTooLarge());
+        mockMvc.perform(post(batch).header(IdempotencyFilter.IDEMPOTENCY_KEY, "till-1-0005")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"itemId\": " + pear.getId() + ", \"quantity\": 1}]"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED));
+    }
+
+    @Test
+    void bodyReadWithReadListener_ShouldBeHandedOnWhole() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/cart/" + CART_ID + "/scan/batch");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY, "till-1-0006");
+        request.setContent("[]".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        AtomicBoolean allRead = new AtomicBoolean();
+
+        idempotencyFilter.doFilter(request, new MockHttpServletResponse(), (filtered, response) -> {
+            ServletInputStream in = filtered.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    while (in.isReady() && !in.isFinished()) {
+                        read.write(in.read());
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allRead.set(true);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    throw new AssertionError(t);
+                }
+            });
+        });
+
+        assertThat(read.toString(StandardCharsets.UTF_8)).isEqualTo("[]");
+        assertThat(allRead).isTrue();
+    }
+}
@@ -0,0 +1,36 @@
+package com.checkoutkata.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MoneyTest {
+
+    @Test
+    void shouldConvertDecimalToMinorUnits() {
+        assertThat(Money.of(new BigDecimal("0.45")).minorUnits()).isEqualTo(45);
+        assertThat(Money.of(BigDecimal.valueOf(130)).minorUnits()).isEqualTo(13000);
+    }
+
+    @Test
+    void shouldRoundHalfUpToTwoDecimals() {
+        assertThat(Money.of(new BigDecimal("0.125")).minorUnits()).isEqualTo(13);
+        assertThat(Money.of(new BigDecimal("0.124")).minorUnits()).isEqualTo(12);
+    }
+
+    @Test
+    void shouldConvertBackToDecimalWithTwoDecimals() {
+        Money total = Money.ofMinor(45).times(3).plus(Money.ofMinor(30));
+
+        assertThat(total.toBigDecimal()).isEqualTo(new BigDecimal("1.65"));
+        assertThat(total.toString()).isEqualTo("1.65");
+    }
+
+    @Test
+    void shouldFailOnOverflow() {
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)));
+    }
+}
@@ -0,0 +1,113 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.config.CacheConfig;
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.dto.BulkPriceUpdate;
+import com.checkoutkata.dto.BulkUpdateResult;
+import com.checkoutkata.dto.OfferChange;
+import com.checkoutkata.dto.PriceChange;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OfferRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "catalog.update.batch-size=1")
+public class BulkPriceUpdateServiceTest {
+
+    @Autowired
+    private BulkPriceUpdateService bulkPriceUpdateService;
+    @Autowired
+    private ItemService itemService;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private OfferRepository offerRepository;
+    @Autowired
+    private PricingEngine pricingEngine;
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Item pear;
+    private Item grape;
+    private Offer pearOffer;
+
+    @BeforeEach
+    void setUp() {
+        pear = itemRepository.save(new Item("Bulk Pear", new BigDecimal("0.50")));
+        grape = itemRepository.save(new Item("Bulk Grape", new BigDecimal("0.20")));
+        pearOffer = offerRepository.save(new Offer(pear, 3, new BigDecimal("1.20")));
+        pricingEngine.invalidate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        offerRepository.deleteById(pearOffer.getId());
+        itemRepository.deleteById(pear.getId());
+        itemRepository.deleteById(grape.getId());
+        pricingEngine.invalidate();
+    }
+
+    @Test
+    void apply_ShouldUpdatePricesAndOffersAndPublishNewVersion() {
+        long versionBefore = pricingEngine.getCatalog().version();
+        itemService.getItemById(pear.getId());
+
+        BulkUpdateResult result = bulkPriceUpdateService.apply(new BulkPriceUpdate(
+                List.of(new PriceChange(pear.getId(), new BigDecimal("0.45")),
+                        new PriceChange(grape.getId(), new BigDecimal("0.30")),
+                        new PriceChange(pear.getId(), new BigDecimal("0.40"))),
+                List.of(new OfferChange(pearOffer.getId(), null, new BigDecimal("1.00"), null, null))));
+
+        assertThat(result.itemsUpdated()).isEqualTo(2);
+        assertThat(result.offersUpdated()).isEqualTo(1);
+        assertThat(result.catalogVersion()).isGreaterThan(versionBefore);
+        assertThat(pricingEngine.getCatalog().version()).isEqualTo(result.catalogVersion());
+        assertThat(cacheManager.getCache(CacheConfig.ITEMS_CACHE).get(pear.getId())).isNull();
+
+        // The last change of the pear wins and the offer keeps its quantity
+        assertThat(itemService.getItemById(pear.getId())).get()
+                .extracting(Item::getUnitPrice).satisfies(price -> assertThat(price).isEqualByComparingTo("0.40"));
+        assertThat(pricingEngine.calculateTotal(List.of(new CartItem(pear, 4), new CartItem(grape, 1))))
+                .isEqualByComparingTo("1.70");
+    }
+
+    @Test
+    void apply_ShouldRollBackEverythingWhenAnOfferIsMissing() {
+        long versionBefore = pricingEngine.getCatalog().version();
+
+        assertThatThrownBy(() -> bulkPriceUpdateService.apply(new BulkPriceUpdate(
+                List.of(new PriceChange(pear.getId(), new BigDecimal("0.10")),
+                        new PriceChange(grape.getId(), new BigDecimal("0.10"))),
+                List.of(new OfferChange(Long.MAX_VALUE, 2, null, null, null)))))
+                .isInstanceOf(EntityNotFoundException.class);
+
+        assertThat(itemRepository.findById(pear.getId())).get()
+                .extracting(Item::getUnitPrice).satisfies(price -> assertThat(price).isEqualByComparingTo("0.50"));
+        assertThat(pricingEngine.getCatalog().version()).isEqualTo(versionBefore);
+    }
+
+    @Test
+    void apply_ShouldRejectInvalidChangesBeforeWriting() {
+        assertThatThrownBy(() -> bulkPriceUpdateService.apply(new BulkPriceUpdate(
+                List.of(new PriceChange(pear.getId(), new BigDecimal("0.10")),
+                        new PriceChange(grape.getId(), new BigDecimal("-1.00"))),
+                null)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(itemRepository.findById(pear.getId())).get()
+                .extracting(Item::getUnitPrice).satisfies(price -> assertThat(price).isEqualByComparingTo("0.50"));
+    }
+}
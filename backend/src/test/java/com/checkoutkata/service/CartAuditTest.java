@@ -0,0 +1,30 @@
+package com.checkoutkata.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CartAuditTest {
+
+    @Test
+    void shouldSampleCartsByIdConsistently() {
+        CartAudit none = new CartAudit(0);
+        CartAudit all = new CartAudit(1);
+        CartAudit tenth = new CartAudit(0.1);
+
+        long sampled = IntStream.range(0, 10_000).mapToObj(i -> "till-" + i).filter(tenth::isAudited).count();
+
+        assertThat(none.isAudited("till-1")).isFalse();
+        assertThat(all.isAudited("till-1")).isTrue();
+        assertThat(sampled).isBetween(800L, 1200L);
+        assertThat(tenth.isAudited("till-42")).isEqualTo(new CartAudit(0.1).isAudited("till-42"));
+    }
+
+    @Test
+    void shouldRejectSampleRateOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new CartAudit(1.5));
+    }
+}
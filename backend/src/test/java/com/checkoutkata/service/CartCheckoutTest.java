@@ -0,0 +1,92 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Order;
+import com.checkoutkata.dto.Receipt;
+import com.checkoutkata.repository.CartItemRepository;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OrderRepository;
+import com.checkoutkata.repository.QueryCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+public class CartCheckoutTest {
+
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final List<Item> items = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 6; i++) {
+            items.add(itemRepository.save(new Item("Checkout Item " + i, BigDecimal.valueOf(0.25))));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        itemRepository.deleteAll(items);
+    }
+
+    @Test
+    void checkoutShouldRecordOrderAndClearCart() {
+        cartService.addToCart("checkout-1", items.get(0).getId());
+        cartService.addToCart("checkout-1", items.get(0).getId());
+        cartService.addToCart("checkout-1", items.get(1).getId());
+
+        Receipt receipt = cartService.checkout("checkout-1");
+
+        assertThat(receipt.total()).isEqualByComparingTo("0.75");
+        assertThat(cartItemRepository.findByCartId("checkout-1")).isEmpty();
+        transactionTemplate.executeWithoutResult(status -> {
+            Order order = orderRepository.findById(receipt.orderId()).orElseThrow();
+            assertThat(order.getCartId()).isEqualTo("checkout-1");
+            assertThat(order.getTotal()).isEqualByComparingTo("0.75");
+            assertThat(order.getLines()).extracting(line -> line.getQuantity()).containsExactly(2, 1);
+        });
+    }
+
+    @Test
+    void checkoutShouldIssueSameStatementsForAnyCartSize() {
+        // Loads the catalog and allocates order ids
+        scan("checkout-warmup", 1);
+        cartService.checkout("checkout-warmup");
+
+        scan("checkout-small", 1);
+        scan("checkout-large", items.size());
+
+        assertThat(countStatements("checkout-large")).isEqualTo(countStatements("checkout-small"));
+    }
+
+    private void scan(String cartId, int lines) {
+        for (int i = 0; i < lines; i++) {
+            cartService.addToCart(cartId, items.get(i).getId());
+        }
+    }
+
+    private int countStatements(String cartId) {
+        QueryCounter.start();
+        cartService.checkout(cartId);
+        return QueryCounter.stop();
+    }
+}
@@ -0,0 +1,149 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.service.CartJournal.Event;
+import com.checkoutkata.service.CartJournal.EventType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CartJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldRecoverCartsFromEventsAfterReopening() throws IOException {
+        CartJournal journal = open(64);
+        journal.append(EventType.SCAN, "till-1", 1, 3);
+        journal.append(EventType.SCAN, "till-1", 2, 1);
+        journal.append(EventType.REMOVE, "till-1", 2, 0);
+        journal.append(EventType.CLEAR, "till-2", 0, 0);
+        journal.append(EventType.SCAN, "till-2", 1, 2);
+        journal.close();
+
+        CartJournal reopened = open(64);
+        Map<String, Map<Long, Integer>> carts = reopened.recover(cartId -> Map.of(5L, 4));
+
+        assertThat(carts).containsOnlyKeys("till-1", "till-2");
+        assertThat(carts.get("till-1")).containsExactly(Map.entry(5L, 4), Map.entry(1L, 3));
+        assertThat(carts.get("till-2")).containsExactly(Map.entry(1L, 2));
+        assertThat(reopened.nextSequence()).isEqualTo(6);
+        reopened.close();
+    }
+
+    @Test
+    void shouldReplayOnlyEventsAfterSnapshotAndDeleteReplacedSegments() throws IOException {
+        CartJournal journal = open(4);
+        for (int i = 1; i <= 500; i++) {
+            journal.append(EventType.SCAN, "till-1", 1, i);
+        }
+        journal.writeSnapshot(journal.nextSequence(), Map.of("till-1", Map.of(1L, 500)));
+        journal.append(EventType.SCAN, "till-1", 2, 1);
+        journal.close();
+
+        assertThat(segmentCount()).isEqualTo(1);
+        List<Event> replayed = new ArrayList<>();
+        CartJournal reopened = open(4);
+        reopened.read(reopened.readSnapshot().sequence(), replayed::add);
+        Map<String, Map<Long, Integer>> carts = reopened.recover(cartId -> Map.of());
+
+        assertThat(replayed).extracting(Event::sequence).containsExactly(501L);
+        assertThat(carts.get("till-1")).containsExactly(Map.entry(1L, 500), Map.entry(2L, 1));
+        reopened.close();
+    }
+
+    @Test
+    void shouldIgnoreTornEventAndContinueInNewSegment() throws IOException {
+        CartJournal journal = open(64);
+        journal.append(EventType.SCAN, "a", 1, 1);
+        journal.append(EventType.SCAN, "a", 1, 2);
+        journal.close();
+        // Length of a third event written, its body lost in a crash
+        try (FileChannel segment = FileChannel.open(onlySegment(), StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 36), 80);
+        }
+
+        CartJournal reopened = open(64);
+        reopened.append(EventType.DECREASE, "a", 1, 1);
+        List<Event> events = new ArrayList<>();
+        reopened.read(0, events::add);
+
+        assertThat(events).extracting(Event::sequence).containsExactly(1L, 2L, 3L);
+        assertThat(events.get(2).type()).isEqualTo(EventType.DECREASE);
+        assertThat(events.get(2).quantity()).isEqualTo(1);
+        reopened.close();
+    }
+
+    @Test
+    void shouldKeepEveryEventWhenForcingWhileAppendingAcrossSegments() throws Exception {
+        CartJournal journal = open(4);
+        int threads = 8;
+        int appends = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean appending = new AtomicBoolean(true);
+        try {
+            Future<?> forcer = executor.submit(() -> {
+                while (appending.get()) {
+                    journal.force();
+                }
+            });
+            List<Future<?>> appenders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String cartId = "till-" + t;
+                appenders.add(executor.submit(() -> {
+                    for (int i = 1; i <= appends; i++) {
+                        journal.append(EventType.SCAN, cartId, 1, i);
+                    }
+                }));
+            }
+            for (Future<?> appender : appenders) {
+                appender.get();
+            }
+            appending.set(false);
+            forcer.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Event> events = new ArrayList<>();
+        journal.read(0, events::add);
+        assertThat(events).extracting(Event::sequence)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, threads * appends).boxed().toList());
+        assertThat(journal.nextSequence()).isEqualTo(threads * appends + 1);
+        journal.close();
+    }
+
+    private CartJournal open(int segmentKilobytes) throws IOException {
+        return new CartJournal(directory, DataSize.ofKilobytes(segmentKilobytes), 0);
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+    }
+}
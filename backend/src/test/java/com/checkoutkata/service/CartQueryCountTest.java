@@ -0,0 +1,89 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.QueryCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+public class CartQueryCountTest {
+
+    private static final int LINES = 8;
+
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private CartTotals cartTotals;
+    @Autowired
+    private ItemRepository itemRepository;
+
+    private final List<Item> items = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < LINES; i++) {
+            items.add(itemRepository.save(new Item("Query Count Item " + i, BigDecimal.valueOf(0.20))));
+        }
+        // Loads the price catalog
+        cartService.calculateTotal("query-count-warmup");
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartService.clearCart("query-count-1");
+        cartService.clearCart("query-count-" + LINES);
+        itemRepository.deleteAll(items);
+    }
+
+    @Test
+    void cartReadsShouldIssueSameStatementsForAnyCartSize() {
+        scan("query-count-1", 1);
+        scan("query-count-" + LINES, LINES);
+
+        assertSameStatements(cartService::getCartContents);
+        assertSameStatements(cartId -> {
+            cartTotals.invalidate(cartId);
+            cartService.calculateTotal(cartId);
+        });
+        assertSameStatements(cartId -> cartService.addToCart(cartId, items.get(0).getId()));
+        assertSameStatements(cartId -> cartService.deleteCartItemByQuantity(cartId, items.get(0).getId(), 1));
+    }
+
+    @Test
+    void scanShouldReadLineWithItemInOneStatement() {
+        scan("query-count-1", 1);
+
+        // Increment, then the updated line joined with its item
+        assertThat(countStatements("query-count-1", cartId -> cartService.addToCart(cartId, items.get(0).getId())))
+                .isEqualTo(2);
+    }
+
+    private void scan(String cartId, int lines) {
+        for (int i = 0; i < lines; i++) {
+            cartService.addToCart(cartId, items.get(i).getId());
+        }
+    }
+
+    private void assertSameStatements(Consumer<String> operation) {
+        int small = countStatements("query-count-1", operation);
+        int large = countStatements("query-count-" + LINES, operation);
+        assertThat(large).isEqualTo(small);
+    }
+
+    private int countStatements(String cartId, Consumer<String> operation) {
+        QueryCounter.start();
+        operation.accept(cartId);
+        return QueryCounter.stop();
+    }
+}
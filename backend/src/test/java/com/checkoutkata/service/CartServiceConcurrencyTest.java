@@ -0,0 +1,94 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.repository.CartItemRepository;
+import com.checkoutkata.repository.ItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "logging.level.com.checkoutkata.service=WARN")
+public class CartServiceConcurrencyTest {
+
+    private static final int SCANS = 10_000;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    private Item item;
+
+    @BeforeEach
+    void setUp() {
+        item = itemRepository.save(new Item("Stress Apple", BigDecimal.valueOf(0.30)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll(cartItemRepository.findAll().stream()
+                .filter(cartItem -> cartItem.getItem().getId().equals(item.getId()))
+                .toList());
+        itemRepository.delete(item);
+    }
+
+    @Test
+    void parallelScansOfSameItemShouldNotLoseUpdates() throws Exception {
+        cartService.calculateTotal("stress-cart");
+        runInParallel(SCANS, i -> cartService.addToCart("stress-cart", item.getId()));
+
+        List<CartItem> lines = cartItemRepository.findByCartId("stress-cart");
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0).getQuantity()).isEqualTo(SCANS);
+        assertThat(cartService.calculateTotal("stress-cart")).isEqualByComparingTo(BigDecimal.valueOf(0.30 * SCANS));
+    }
+
+    @Test
+    void parallelScansAcrossCartsShouldKeepCartsIsolated() throws Exception {
+        int carts = 20;
+        int scans = 2_000;
+        runInParallel(scans, i -> cartService.addToCart("till-" + (i % carts), item.getId()));
+
+        for (int cart = 0; cart < carts; cart++) {
+            List<CartItem> lines = cartItemRepository.findByCartId("till-" + cart);
+            assertThat(lines).hasSize(1);
+            assertThat(lines.get(0).getQuantity()).isEqualTo(scans / carts);
+        }
+    }
+
+    private void runInParallel(int scans, ScanTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(scans);
+            for (int i = 0; i < scans; i++) {
+                int scan = i;
+                futures.add(executor.submit(() -> task.scan(scan)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ScanTask {
+        void scan(int index);
+    }
+}
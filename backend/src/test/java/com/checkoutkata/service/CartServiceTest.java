@@ -3,50 +3,78 @@ package com.checkoutkata.service;
 import com.checkoutkata.domain.CartItem;
 import com.checkoutkata.domain.Item;
 import com.checkoutkata.domain.Offer;
+import com.checkoutkata.domain.Order;
+import com.checkoutkata.dto.CartSummary;
+import com.checkoutkata.dto.Receipt;
+import com.checkoutkata.dto.ReceiptLine;
+import com.checkoutkata.dto.ScanRequest;
 import com.checkoutkata.repository.CartItemRepository;
+import com.checkoutkata.repository.ItemPriceVersionRepository;
 import com.checkoutkata.repository.ItemRepository;
 import com.checkoutkata.repository.OfferRepository;
+import com.checkoutkata.repository.OfferVersionRepository;
+import com.checkoutkata.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class CartServiceTest {
 
+    private static final String CART_ID = "till-1";
+
     @Mock
     private ItemRepository itemRepository;
     @Mock
     private CartItemRepository cartItemRepository;
     @Mock
     private OfferRepository offerRepository;
+    @Mock
+    private OrderRepository orderRepository;
 
     private CartService cartService;
 
     @BeforeEach
     void setUp() {
-        cartService = new CartService(itemRepository, cartItemRepository, offerRepository);
+        HotPathMetrics metrics = new HotPathMetrics(new SimpleMeterRegistry(), 1.0);
+        PricingEngine pricingEngine = new PricingEngine(itemRepository, offerRepository, new OfferSolver(Duration.ofMillis(2)), metrics,
+                new CatalogHistory(mock(ItemPriceVersionRepository.class), mock(OfferVersionRepository.class),
+                        mock(PlatformTransactionManager.class)));
+        cartService = new CartService(itemRepository, new ItemService(itemRepository, pricingEngine), cartItemRepository,
+                pricingEngine, new CartLocks(16), new CartTotals(pricingEngine, new CartUpdates(), metrics, "maximumSize=100"),
+                new CartAudit(0), new OrderService(orderRepository, pricingEngine), mock(PlatformTransactionManager.class));
     }
 
     @Test
     void shouldAddNewItemToCart() {
         Item item = new Item("Apple", BigDecimal.valueOf(50));
         when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
-        when(cartItemRepository.findByItemId(1L)).thenReturn(Optional.empty());
-        when(cartItemRepository.save(any())).thenReturn(new CartItem(item, 1));
+        when(cartItemRepository.addQuantity(CART_ID, 1L, 1)).thenReturn(1);
+        when(cartItemRepository.findByCartIdAndItemId(CART_ID, 1L)).thenReturn(Optional.of(new CartItem(CART_ID, item, 1)));
 
-        CartItem result = cartService.addToCart(1L);
+        CartItem result = cartService.addToCart(CART_ID, 1L);
 
         assertThat(result.getQuantity()).isEqualTo(1);
         assertThat(result.getItem()).isEqualTo(item);
@@ -55,15 +83,56 @@ public class CartServiceTest {
        @Test
     void shouldCalculateTotalWithOffer() {
         Item item = new Item("Apple", BigDecimal.valueOf(50));
+        item.setId(1L);
         CartItem cartItem = new CartItem(item, 3);
         Offer offer = new Offer(item, 2, BigDecimal.valueOf(80));
 
-        when(cartItemRepository.findAll()).thenReturn(List.of(cartItem));
-        when(offerRepository.findByItem(item)).thenReturn(Optional.of(offer));
+        when(cartItemRepository.findByCartId(CART_ID)).thenReturn(List.of(cartItem));
+        when(itemRepository.findAll()).thenReturn(List.of(item));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(offer));
+
+        BigDecimal total = cartService.calculateTotal(CART_ID);
+
+        assertThat(total).isEqualByComparingTo(BigDecimal.valueOf(130));
+    }
+
+    @Test
+    void shouldNotQueryOffersPerCartLine() {
+        Item apple = new Item("Apple", BigDecimal.valueOf(50));
+        apple.setId(1L);
+        Item banana = new Item("Banana", BigDecimal.valueOf(30));
+        banana.setId(2L);
+        Offer offer = new Offer(apple, 2, BigDecimal.valueOf(80));
+
+        when(cartItemRepository.findByCartId(CART_ID)).thenReturn(List.of(new CartItem(apple, 3), new CartItem(banana, 2)));
+        when(itemRepository.findAll()).thenReturn(List.of(apple, banana));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(offer));
+
+        cartService.calculateTotal(CART_ID);
+        BigDecimal total = cartService.calculateTotal(CART_ID);
+
+        assertThat(total).isEqualByComparingTo(BigDecimal.valueOf(190));
+        verify(offerRepository, times(1)).findAllWithBundleItems();
+        verifyNoMoreInteractions(offerRepository);
+    }
+
+    @Test
+    void shouldUpdateRunningTotalWithoutRereadingCart() {
+        Item apple = new Item("Apple", BigDecimal.valueOf(50));
+        apple.setId(1L);
+        Offer offer = new Offer(apple, 2, BigDecimal.valueOf(80));
+        when(cartItemRepository.findByCartId(CART_ID)).thenReturn(List.of(new CartItem(CART_ID, apple, 1)));
+        when(itemRepository.findAll()).thenReturn(List.of(apple));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(offer));
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(apple));
+        when(cartItemRepository.addQuantity(CART_ID, 1L, 1)).thenReturn(1);
+        when(cartItemRepository.findByCartIdAndItemId(CART_ID, 1L)).thenReturn(Optional.of(new CartItem(CART_ID, apple, 2)));
 
-        BigDecimal total = cartService.calculateTotal();
+        assertThat(cartService.calculateTotal(CART_ID)).isEqualByComparingTo(BigDecimal.valueOf(50));
+        cartService.addToCart(CART_ID, 1L);
 
-        assertThat(total).isEqualTo(BigDecimal.valueOf(130));
+        assertThat(cartService.calculateTotal(CART_ID)).isEqualByComparingTo(BigDecimal.valueOf(80));
+        verify(cartItemRepository, times(1)).findByCartId(CART_ID);
     }
 
     @Test
@@ -72,12 +141,12 @@ public class CartServiceTest {
                 new CartItem(new Item("Apple", BigDecimal.valueOf(50)), 1),
                 new CartItem(new Item("Banana", BigDecimal.valueOf(30)), 2)
         );
-        when(cartItemRepository.findAll()).thenReturn(items);
+        when(cartItemRepository.findByCartId(CART_ID)).thenReturn(items);
 
-        List<CartItem> result = cartService.getCartContents();
+        List<CartItem> result = cartService.getCartContents(CART_ID);
 
         assertThat(result).hasSize(2);
-        verify(cartItemRepository).findAll();
+        verify(cartItemRepository).findByCartId(CART_ID);
     }
 
     @Test
@@ -85,15 +154,111 @@ public class CartServiceTest {
         when(itemRepository.findById(1L)).thenReturn(Optional.empty());
 
         assertThrows(IllegalArgumentException.class, () ->
-                cartService.addToCart(1L)
+                cartService.addToCart(CART_ID, 1L)
+        );
+    }
+
+    @Test
+    void shouldIncrementExistingItemAtomically() {
+        Item item = new Item("Apple", BigDecimal.valueOf(50));
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
+        when(cartItemRepository.addQuantity(CART_ID, 1L, 1)).thenReturn(1);
+        when(cartItemRepository.findByCartIdAndItemId(CART_ID, 1L)).thenReturn(Optional.of(new CartItem(CART_ID, item, 2)));
+
+        CartItem result = cartService.addToCart(CART_ID, 1L);
+
+        assertThat(result.getQuantity()).isEqualTo(2);
+        verify(cartItemRepository, never()).save(any());
+    }
+
+    @Test
+    void shouldCollapseDuplicateScansInBatch() {
+        Item apple = new Item("Apple", BigDecimal.valueOf(50));
+        apple.setId(1L);
+        Item banana = new Item("Banana", BigDecimal.valueOf(30));
+        banana.setId(2L);
+        CartItem existingApple = new CartItem(CART_ID, apple, 4);
+        when(itemRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(apple, banana));
+        when(cartItemRepository.findByCartId(CART_ID)).thenReturn(List.of(existingApple, new CartItem(CART_ID, banana, 2)));
+        when(itemRepository.findAll()).thenReturn(List.of(apple, banana));
+        when(cartItemRepository.addQuantity(CART_ID, 1L, 3)).thenReturn(1);
+        when(cartItemRepository.addQuantity(CART_ID, 2L, 2)).thenReturn(1);
+
+        CartSummary summary = cartService.addToCart(CART_ID, List.of(
+                new ScanRequest(1L, 1), new ScanRequest(2L, 2), new ScanRequest(1L, 2)));
+
+        assertThat(summary.items()).hasSize(2);
+        assertThat(summary.total()).isEqualByComparingTo(BigDecimal.valueOf(260));
+        verify(itemRepository, times(1)).findAllById(any());
+        verify(cartItemRepository).addQuantity(CART_ID, 1L, 3);
+        verify(cartItemRepository).addQuantity(CART_ID, 2L, 2);
+    }
+
+    @Test
+    void shouldRejectBatchWithUnknownItem() {
+        when(itemRepository.findAllById(Set.of(9L))).thenReturn(List.of());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                cartService.addToCart(CART_ID, List.of(new ScanRequest(9L, 1)))
+        );
+    }
+
+    @Test
+    void shouldRejectBatchOverflowingQuantity() {
+        assertThrows(IllegalArgumentException.class, () ->
+                cartService.addToCart(CART_ID, List.of(new ScanRequest(1L, Integer.MAX_VALUE), new ScanRequest(1L, 1)))
+        );
+        verify(cartItemRepository, never()).addQuantity(any(), any(), anyInt());
+    }
+
+    @Test
+    void shouldRejectBlankCartId() {
+        assertThrows(IllegalArgumentException.class, () ->
+                cartService.addToCart(" ", 1L)
         );
     }
 
     @Test
     void shouldClearCart() {
-        cartService.clearCart();
+        cartService.clearCart(CART_ID);
+
+        verify(cartItemRepository).deleteByCartId(CART_ID);
+    }
+
+    @Test
+    void shouldCheckOutItemizedReceiptAndClearCart() {
+        Item apple = new Item("Apple", BigDecimal.valueOf(0.50));
+        apple.setId(1L);
+        Item banana = new Item("Banana", BigDecimal.valueOf(0.30));
+        banana.setId(2L);
+        when(cartItemRepository.findByCartId(CART_ID)).thenReturn(List.of(new CartItem(apple, 7), new CartItem(banana, 2)));
+        when(itemRepository.findAll()).thenReturn(List.of(apple, banana));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(
+                new Offer(apple, 3, BigDecimal.valueOf(1.30)),
+                new Offer(apple, 2, BigDecimal.valueOf(0.95))));
+        when(orderRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Receipt receipt = cartService.checkout(CART_ID);
+
+        ReceiptLine apples = receipt.lines().get(0);
+        assertThat(apples.offerGroups()).containsExactly(new ReceiptLine.OfferGroup(3, new BigDecimal("1.30"), 2));
+        assertThat(apples.remainder()).isEqualTo(1);
+        assertThat(apples.total()).isEqualByComparingTo("3.10");
+        assertThat(apples.savings()).isEqualByComparingTo("0.40");
+        assertThat(receipt.lines().get(1).offerGroups()).isEmpty();
+        assertThat(receipt.total()).isEqualByComparingTo("3.70");
+        assertThat(receipt.savings()).isEqualByComparingTo("0.40");
+        verify(orderRepository).save(argThat((Order order) -> order.getLines().size() == 2
+                && order.getLines().get(0).getOffers().equals("2 x 3 for 1.30")));
+        verify(cartItemRepository).deleteByCartId(CART_ID);
+    }
+
+    @Test
+    void shouldNotCheckOutEmptyCart() {
+        when(cartItemRepository.findByCartId(CART_ID)).thenReturn(List.of());
 
-        verify(cartItemRepository).deleteAll();
+        assertThrows(IllegalArgumentException.class, () -> cartService.checkout(CART_ID));
+        verify(cartItemRepository, never()).deleteByCartId(CART_ID);
     }
 
 }
@@ -0,0 +1,147 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.dto.CartUpdate;
+import com.checkoutkata.repository.ItemPriceVersionRepository;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OfferRepository;
+import com.checkoutkata.repository.OfferVersionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CartUpdatesTest {
+
+    private static final String CART_ID = "till-1";
+
+    @Mock
+    private ItemRepository itemRepository;
+    @Mock
+    private OfferRepository offerRepository;
+
+    private CartUpdates cartUpdates;
+    private CartTotals cartTotals;
+    private Item apple;
+
+    @BeforeEach
+    void setUp() {
+        HotPathMetrics metrics = new HotPathMetrics(new SimpleMeterRegistry(), 1.0);
+        PricingEngine pricingEngine = new PricingEngine(itemRepository, offerRepository, new OfferSolver(Duration.ofMillis(2)), metrics,
+                new CatalogHistory(mock(ItemPriceVersionRepository.class), mock(OfferVersionRepository.class),
+                        mock(PlatformTransactionManager.class)));
+        cartUpdates = new CartUpdates();
+        cartTotals = new CartTotals(pricingEngine, cartUpdates, metrics, "maximumSize=100");
+        apple = new Item("Apple", new BigDecimal("0.50"));
+        apple.setId(1L);
+    }
+
+    @Test
+    void shouldPublishSnapshotFollowedByChangedLinesInOrder() {
+        when(itemRepository.findAll()).thenReturn(List.of(apple));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(new Offer(apple, 2, new BigDecimal("0.80"))));
+
+        StepVerifier.create(cartUpdates.subscribe(CART_ID))
+                .then(() -> cartTotals.snapshot(CART_ID, List.of(new CartItem(CART_ID, apple, 1)), cartTotals.version(CART_ID)))
+                .assertNext(update -> {
+                    assertThat(update.type()).isEqualTo(CartUpdate.Type.SNAPSHOT);
+                    assertThat(update.lines()).singleElement()
+                            .satisfies(line -> assertThat(line.lineTotal()).isEqualByComparingTo("0.50"));
+                    assertThat(update.total()).isEqualByComparingTo("0.50");
+                })
+                .then(() -> cartTotals.lineChanged(CART_ID, new CartItem(CART_ID, apple, 3)))
+                .assertNext(update -> {
+                    assertThat(update.type()).isEqualTo(CartUpdate.Type.CHANGE);
+                    assertThat(update.lines()).singleElement().satisfies(line -> {
+                        assertThat(line.quantity()).isEqualTo(3);
+                        assertThat(line.lineTotal()).isEqualByComparingTo("1.30");
+                    });
+                    assertThat(update.total()).isEqualByComparingTo("1.30");
+                })
+                .then(() -> cartTotals.lineRemoved(CART_ID, apple.getId()))
+                .assertNext(update -> {
+                    assertThat(update.lines()).singleElement().satisfies(line -> {
+                        assertThat(line.itemId()).isEqualTo(apple.getId());
+                        assertThat(line.quantity()).isZero();
+                        assertThat(line.item()).isNull();
+                    });
+                    assertThat(update.total()).isEqualByComparingTo("0");
+                })
+                .then(() -> cartTotals.invalidate(CART_ID))
+                .assertNext(update -> assertThat(update.type()).isEqualTo(CartUpdate.Type.RESYNC))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void shouldPublishEmptySnapshotOnClearAndForgetCartWithoutSubscribers() {
+        StepVerifier.create(cartUpdates.subscribe(CART_ID))
+                .then(() -> cartTotals.cartCleared(CART_ID))
+                .assertNext(update -> {
+                    assertThat(update.type()).isEqualTo(CartUpdate.Type.SNAPSHOT);
+                    assertThat(update.lines()).isEmpty();
+                    assertThat(update.total()).isEqualByComparingTo("0");
+                })
+                .thenCancel()
+                .verify();
+
+        assertThat(cartUpdates.hasSubscribers(CART_ID)).isFalse();
+        cartUpdates.publish(CartUpdate.resync(CART_ID));
+        assertThat(cartUpdates.hasSubscribers(CART_ID)).isFalse();
+    }
+
+    @Test
+    void shouldDeliverToEverySubscriberWhileOthersComeAndGo() throws Exception {
+        List<AtomicInteger> staying = new CopyOnWriteArrayList<>();
+        List<Disposable> subscriptions = new CopyOnWriteArrayList<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                boolean stays = i % 10 == 0;
+                futures.add(executor.submit(() -> {
+                    if (stays) {
+                        AtomicInteger received = new AtomicInteger();
+                        staying.add(received);
+                        subscriptions.add(cartUpdates.subscribe(CART_ID).subscribe(update -> received.incrementAndGet()));
+                    } else {
+                        cartUpdates.subscribe(CART_ID).subscribe().dispose();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        cartUpdates.publish(CartUpdate.resync(CART_ID));
+        assertThat(staying).hasSize(200).allSatisfy(received -> assertThat(received).hasValue(1));
+        subscriptions.forEach(Disposable::dispose);
+        assertThat(cartUpdates.hasSubscribers(CART_ID)).isFalse();
+    }
+}
@@ -0,0 +1,83 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.domain.OfferType;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OfferRepository;
+import com.checkoutkata.repository.QueryCounter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+public class CatalogExportServiceTest {
+
+    @Autowired
+    private CatalogExportService catalogExportService;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private OfferRepository offerRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void writeItems_ShouldWriteOneJsonObjectPerLineInIdOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = catalogExportService.writeItems(out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(count).isEqualTo(itemRepository.count());
+        assertThat(lines).hasSize((int) count);
+        long previousId = 0;
+        for (String line : lines) {
+            JsonNode item = objectMapper.readTree(line);
+            assertThat(item.get("id").asLong()).isGreaterThan(previousId);
+            previousId = item.get("id").asLong();
+        }
+    }
+
+    @Test
+    void writeOffers_ShouldLoadBundleItemsOncePerChunk() throws Exception {
+        List<Item> items = new ArrayList<>();
+        List<Offer> offers = new ArrayList<>();
+        try {
+            for (int i = 0; i < 6; i++) {
+                items.add(itemRepository.save(new Item("Export Bundle Item " + i, BigDecimal.valueOf(0.50))));
+            }
+            for (int i = 0; i < 5; i++) {
+                Offer bundle = new Offer(OfferType.BUNDLE, items.get(i), 1, BigDecimal.valueOf(0.80));
+                bundle.setBundleItems(List.of(items.get(i), items.get(i + 1)));
+                offers.add(offerRepository.save(bundle));
+            }
+            long offerCount = offerRepository.count();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            QueryCounter.start();
+            long count = catalogExportService.writeOffers(out);
+            int statements = QueryCounter.stop();
+
+            assertThat(count).isEqualTo(offerCount);
+            // The cursor, then the bundle items of each chunk
+            long chunks = (offerCount + CatalogExportService.CHUNK_SIZE - 1) / CatalogExportService.CHUNK_SIZE;
+            assertThat(statements).isEqualTo(1 + chunks);
+            JsonNode last = objectMapper.readTree(out.toString(StandardCharsets.UTF_8).lines().reduce((a, b) -> b).orElseThrow());
+            assertThat(last.get("bundleItems")).hasSize(2);
+        } finally {
+            offerRepository.deleteAll(offers);
+            itemRepository.deleteAll(items);
+        }
+    }
+}
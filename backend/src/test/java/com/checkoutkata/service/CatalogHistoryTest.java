@@ -0,0 +1,137 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.ItemPriceVersion;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.repository.ItemPriceVersionRepository;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OfferRepository;
+import com.checkoutkata.repository.OfferVersionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class CatalogHistoryTest {
+
+    @Mock
+    private ItemPriceVersionRepository priceVersionRepository;
+    @Mock
+    private OfferVersionRepository offerVersionRepository;
+
+    private CatalogHistory history;
+    private PricingEngine pricingEngine;
+
+    private Item apple;
+    private Offer appleOffer;
+
+    @BeforeEach
+    void setUp() {
+        history = new CatalogHistory(priceVersionRepository, offerVersionRepository,
+                mock(PlatformTransactionManager.class));
+        pricingEngine = new PricingEngine(mock(ItemRepository.class), mock(OfferRepository.class),
+                new OfferSolver(Duration.ofMillis(2)), new HotPathMetrics(new SimpleMeterRegistry(), 1.0), history);
+        apple = new Item("Apple", BigDecimal.valueOf(0.30));
+        apple.setId(1L);
+        appleOffer = new Offer(apple, 2, BigDecimal.valueOf(0.45));
+        appleOffer.setId(10L);
+    }
+
+    @Test
+    void shouldPriceCartWithPricesAndOffersLiveAtTheMoment() {
+        Instant now = Instant.now();
+        history.record(List.of(apple), List.of(appleOffer), now.minus(Duration.ofHours(2)));
+        Item repriced = new Item("Apple", BigDecimal.valueOf(0.35));
+        repriced.setId(1L);
+        history.record(List.of(repriced), List.of(), now.minus(Duration.ofHours(1)));
+
+        List<CartItem> cart = List.of(new CartItem(repriced, 3));
+
+        assertThat(pricingEngine.calculateTotal(cart, now.minus(Duration.ofMinutes(90)))).isEqualByComparingTo("0.75");
+        assertThat(pricingEngine.calculateTotal(cart, now.minus(Duration.ofMinutes(30)))).isEqualByComparingTo("1.05");
+    }
+
+    @Test
+    void shouldRecordOnlyChangedCatalogs() {
+        Instant now = Instant.now();
+
+        assertThat(history.record(List.of(apple), List.of(appleOffer), now.minus(Duration.ofHours(2)))).isTrue();
+        assertThat(history.record(List.of(apple), List.of(appleOffer), now.minus(Duration.ofHours(1)))).isFalse();
+    }
+
+    @Test
+    void shouldRetryFailedWritesBeforeLaterChanges() throws InterruptedException {
+        Instant now = Instant.now();
+        Instant first = now.minus(Duration.ofHours(2)).truncatedTo(ChronoUnit.MICROS);
+        Instant second = now.minus(Duration.ofHours(1)).truncatedTo(ChronoUnit.MICROS);
+        doThrow(new IllegalStateException("Database down")).doReturn(List.of())
+                .when(priceVersionRepository).saveAll(any());
+
+        history.record(List.of(apple), List.of(), first);
+        Item repriced = new Item("Apple", BigDecimal.valueOf(0.35));
+        repriced.setId(1L);
+        history.record(List.of(repriced), List.of(), second);
+        history.shutdown();
+
+        InOrder inOrder = inOrder(priceVersionRepository);
+        inOrder.verify(priceVersionRepository, times(2)).saveAll(argThat(prices -> startsAt(prices, first)));
+        inOrder.verify(priceVersionRepository).close(1L, first, second);
+        inOrder.verify(priceVersionRepository).saveAll(argThat(prices -> startsAt(prices, second)));
+        assertThat(history.unwrittenChanges()).isZero();
+    }
+
+    @Test
+    void shouldCountChangesThatCannotBeWritten() throws InterruptedException {
+        Instant now = Instant.now();
+        doThrow(new IllegalStateException("Database down")).when(priceVersionRepository).saveAll(any());
+
+        history.record(List.of(apple), List.of(), now.minus(Duration.ofHours(2)));
+        Item repriced = new Item("Apple", BigDecimal.valueOf(0.35));
+        repriced.setId(1L);
+        history.record(List.of(repriced), List.of(), now.minus(Duration.ofHours(1)));
+        history.shutdown();
+
+        assertThat(history.unwrittenChanges()).isEqualTo(2);
+        verify(priceVersionRepository, never()).close(any(), any(), any());
+    }
+
+    @Test
+    void shouldRejectMomentsOutsideTheHistory() {
+        Instant now = Instant.now();
+        history.record(List.of(apple), List.of(appleOffer), now.minus(Duration.ofHours(1)));
+
+        assertThatThrownBy(() -> history.catalogAsOf(now.minus(Duration.ofHours(2))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> history.catalogAsOf(now.plus(Duration.ofHours(1))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static boolean startsAt(Iterable<ItemPriceVersion> prices, Instant validFrom) {
+        Iterator<ItemPriceVersion> iterator = prices.iterator();
+        return iterator.hasNext() && iterator.next().getValidFrom().equals(validFrom);
+    }
+}
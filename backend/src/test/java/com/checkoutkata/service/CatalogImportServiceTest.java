@@ -0,0 +1,81 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.dto.ImportResult;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OfferRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "catalog.import.batch-size=2")
+public class CatalogImportServiceTest {
+
+    @Autowired
+    private CatalogImportService catalogImportService;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private OfferRepository offerRepository;
+
+    @Test
+    void importItems_ShouldUpsertByNameAndRejectInvalidRows() throws Exception {
+        ImportResult first = catalogImportService.importItems(input("""
+                name,unitPrice
+                Import Fig,0.80
+                "Import Date, Medjool",1.20
+                ,0.10
+                Import Lime,-0.10
+                Import Plum,0.40
+                """), CatalogImportService.Format.CSV);
+
+        assertThat(first.read()).isEqualTo(5);
+        assertThat(first.imported()).isEqualTo(3);
+        assertThat(first.rejected()).isEqualTo(2);
+        assertThat(first.errors()).hasSize(2);
+
+        ImportResult second = catalogImportService.importItems(input("""
+                {"name": "Import Fig", "unitPrice": 0.75}
+                """), CatalogImportService.Format.JSONL);
+
+        assertThat(second.imported()).isEqualTo(1);
+        assertThat(itemRepository.findAll())
+                .filteredOn(item -> item.getName().equals("Import Fig"))
+                .singleElement()
+                .extracting(Item::getUnitPrice)
+                .satisfies(price -> assertThat(price).isEqualByComparingTo("0.75"));
+        assertThat(itemRepository.findAll()).anyMatch(item -> item.getName().equals("Import Date, Medjool"));
+    }
+
+    @Test
+    void importOffers_ShouldRejectUnknownItems() throws Exception {
+        catalogImportService.importItems(input("""
+                name,unitPrice
+                Import Melon,2.00
+                """), CatalogImportService.Format.CSV);
+        long offersBefore = offerRepository.count();
+
+        ImportResult result = catalogImportService.importOffers(input("""
+                itemName,type,quantity,totalPrice,freeQuantity
+                Import Melon,MULTI_BUY,2,3.50,
+                Import Melon,BUY_X_GET_Y,2,,1
+                Import Melon,MULTI_BUY,2,3.00,
+                Unknown Fruit,MULTI_BUY,2,1.00,
+                """), CatalogImportService.Format.CSV);
+
+        assertThat(result.imported()).isEqualTo(3);
+        assertThat(result.rejected()).isEqualTo(1);
+        // The third row updates the offer of the first one
+        assertThat(offerRepository.count()).isEqualTo(offersBefore + 2);
+    }
+
+    private static InputStream input(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,76 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.config.CacheConfig;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.repository.ItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+public class ItemServiceCacheTest {
+
+    @Autowired
+    private ItemService itemService;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Item item;
+    private Cache cache;
+
+    @BeforeEach
+    void setUp() {
+        item = itemRepository.save(new Item("Cached Apple", BigDecimal.valueOf(0.30)));
+        cache = cacheManager.getCache(CacheConfig.ITEMS_CACHE);
+        cache.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        itemRepository.deleteById(item.getId());
+    }
+
+    @Test
+    void getItemById_ShouldPopulateCacheOnFirstRead() {
+        itemService.getItemById(item.getId());
+
+        assertThat(cache.get(item.getId())).isNotNull();
+        assertThat(itemService.getItemById(item.getId())).get()
+                .extracting(Item::getName).isEqualTo("Cached Apple");
+    }
+
+    @Test
+    void updatePrice_ShouldEvictCachedItem() {
+        itemService.getItemById(item.getId());
+
+        itemService.updatePrice(item.getId(), BigDecimal.valueOf(0.40));
+
+        assertThat(cache.get(item.getId())).isNull();
+        assertThat(itemService.getItemById(item.getId())).get()
+                .extracting(Item::getUnitPrice).satisfies(price -> assertThat(price).isEqualByComparingTo("0.40"));
+    }
+
+    @Test
+    void createItem_ShouldEvictCachedAbsence() {
+        Long nextId = item.getId() + 1;
+        assertThat(itemService.getItemById(nextId)).isEmpty();
+
+        Item created = itemService.createItem(new Item("Cached Banana", BigDecimal.valueOf(0.50)));
+        try {
+            assertThat(created.getId()).isEqualTo(nextId);
+            assertThat(itemService.getItemById(nextId)).isPresent();
+        } finally {
+            itemRepository.deleteById(created.getId());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.checkoutkata.service;
 
 import com.checkoutkata.domain.Item;
+import com.checkoutkata.dto.CursorPage;
 import com.checkoutkata.repository.ItemRepository;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -16,6 +18,7 @@ import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -24,12 +27,14 @@ public class ItemServiceTest {
 
     @Mock
     private ItemRepository itemRepository;
+    @Mock
+    private PricingEngine pricingEngine;
 
     private ItemService itemService;
 
     @BeforeEach
     void setUp() {
-        itemService = new ItemService(itemRepository);
+        itemService = new ItemService(itemRepository, pricingEngine);
     }
 
     @Test
@@ -43,6 +48,15 @@ public class ItemServiceTest {
         verify(itemRepository).save(item);
     }
 
+    @Test
+    void createItem_ShouldRejectExistingName() {
+        when(itemRepository.existsByName("Apple")).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () ->
+                itemService.createItem(new Item("Apple", BigDecimal.valueOf(50))));
+        verify(itemRepository, never()).save(any(Item.class));
+    }
+
     @Test
     void updatePrice_ShouldUpdateAndReturnItem() {
         Item item = new Item("Apple", BigDecimal.valueOf(50));
@@ -54,6 +68,7 @@ public class ItemServiceTest {
 
         assertThat(result.getUnitPrice()).isEqualTo(BigDecimal.valueOf(60));
         verify(itemRepository).save(any(Item.class));
+        verify(pricingEngine).invalidate();
     }
 
     @Test
@@ -70,6 +85,27 @@ public class ItemServiceTest {
         verify(itemRepository).findAll();
     }
 
+    @Test
+    void getItemsPage_ShouldReturnCursorOfLastItemWhenMoreFollow() {
+        Item first = new Item("Apple", BigDecimal.valueOf(50));
+        first.setId(11L);
+        Item second = new Item("Orange", BigDecimal.valueOf(30));
+        second.setId(12L);
+        Item third = new Item("Pear", BigDecimal.valueOf(40));
+        third.setId(13L);
+        when(itemRepository.findByIdGreaterThanOrderByIdAsc(10L, Limit.of(3))).thenReturn(List.of(first, second, third));
+
+        CursorPage<Item> page = itemService.getItemsPage(10L, 2);
+
+        assertThat(page.content()).containsExactly(first, second);
+        assertThat(page.nextCursor()).isEqualTo(12L);
+    }
+
+    @Test
+    void getItemsPage_ShouldRejectLimitOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> itemService.getItemsPage(null, CursorPage.MAX_LIMIT + 1));
+    }
+
     @Test
     void deleteItemById_ShouldReturnTrueWhenSuccessful() {
         when(itemRepository.existsById(1L)).thenReturn(true);
@@ -0,0 +1,101 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.domain.OfferType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OfferSolverTest {
+
+    @Test
+    void shouldFindCheaperBundleCombinationThanGreedy() {
+        List<Item> items = items(4, BigDecimal.valueOf(0.50));
+        List<Offer> offers = List.of(
+                bundle(items.get(1), items.get(2), BigDecimal.valueOf(0.50)),
+                bundle(items.get(0), items.get(1), BigDecimal.valueOf(0.60)),
+                bundle(items.get(2), items.get(3), BigDecimal.valueOf(0.60)));
+        PriceCatalog catalog = PriceCatalog.of(items, offers);
+        Map<Long, Integer> quantities = Map.of(1L, 1, 2L, 1, 3L, 1, 4L, 1);
+
+        OfferSolver solver = new OfferSolver(Duration.ofMillis(2));
+
+        // Greedy takes the most valuable bundle B+C and prices A and D on their own
+        assertThat(solver.greedy(catalog, quantities)).isEqualTo(150);
+        assertThat(solver.solve(catalog, quantities)).isEqualTo(120);
+    }
+
+    @Test
+    void shouldCombineBundlesWithSingleItemOffers() {
+        List<Item> items = items(2, BigDecimal.valueOf(0.50));
+        List<Offer> offers = List.of(
+                bundle(items.get(0), items.get(1), BigDecimal.valueOf(0.80)),
+                new Offer(items.get(0), 3, BigDecimal.valueOf(0.90)));
+        PriceCatalog catalog = PriceCatalog.of(items, offers);
+
+        long total = new OfferSolver(Duration.ofMillis(2)).solve(catalog, Map.of(1L, 3, 2L, 1));
+
+        // Three A for 0.90 plus B at 0.50 beats the bundle plus two A at 0.50
+        assertThat(total).isEqualTo(140);
+    }
+
+    @Test
+    void shouldNotBeWorseThanGreedyWhenBudgetIsExhausted() {
+        List<Item> items = items(40, BigDecimal.valueOf(0.50));
+        List<Offer> offers = new ArrayList<>();
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            quantities.put(items.get(i).getId(), 5);
+            if (i + 1 < items.size()) {
+                offers.add(bundle(items.get(i), items.get(i + 1), BigDecimal.valueOf(0.55 + (i % 5) * 0.05)));
+            }
+        }
+        PriceCatalog catalog = PriceCatalog.of(items, offers);
+
+        OfferSolver solver = new OfferSolver(Duration.ZERO);
+
+        assertThat(solver.solve(catalog, quantities)).isLessThanOrEqualTo(solver.greedy(catalog, quantities));
+    }
+
+    @Test
+    void shouldPriceLikeGreedyWithZeroBudget() {
+        List<Item> items = items(3, BigDecimal.valueOf(0.50));
+        List<Offer> offers = List.of(
+                bundle(items.get(0), items.get(1), BigDecimal.valueOf(0.90)),
+                bundle(items.get(1), items.get(2), BigDecimal.valueOf(0.70)));
+        PriceCatalog catalog = PriceCatalog.of(items, offers);
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        items.forEach(item -> quantities.put(item.getId(), 1));
+
+        OfferSolver solver = new OfferSolver(Duration.ZERO);
+
+        // The search decides A+B first, but greedy takes the more valuable B+C
+        assertThat(solver.greedy(catalog, quantities)).isEqualTo(120);
+        assertThat(solver.solve(catalog, quantities)).isEqualTo(solver.greedy(catalog, quantities));
+    }
+
+    private static List<Item> items(int count, BigDecimal unitPrice) {
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Item item = new Item("Item " + i, unitPrice);
+            item.setId((long) i);
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static Offer bundle(Item first, Item second, BigDecimal price) {
+        Offer offer = new Offer(OfferType.BUNDLE, first, 1, price);
+        offer.setBundleItems(List.of(second));
+        return offer;
+    }
+}
@@ -0,0 +1,165 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.domain.OfferType;
+import com.checkoutkata.repository.ItemPriceVersionRepository;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OfferRepository;
+import com.checkoutkata.repository.OfferVersionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PricingEngineTest {
+
+    @Mock
+    private ItemRepository itemRepository;
+    @Mock
+    private OfferRepository offerRepository;
+
+    private SimpleMeterRegistry registry;
+    private PricingEngine pricingEngine;
+
+    private Item apple;
+    private Item banana;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        HotPathMetrics metrics = new HotPathMetrics(registry, 1.0);
+        pricingEngine = new PricingEngine(itemRepository, offerRepository, new OfferSolver(Duration.ofMillis(2)), metrics,
+                new CatalogHistory(mock(ItemPriceVersionRepository.class), mock(OfferVersionRepository.class),
+                        mock(PlatformTransactionManager.class)));
+        apple = new Item("Apple", BigDecimal.valueOf(0.30));
+        apple.setId(1L);
+        banana = new Item("Banana", BigDecimal.valueOf(0.50));
+        banana.setId(2L);
+    }
+
+    @Test
+    void shouldApplyOfferGroupsAndRemainder() {
+        when(itemRepository.findAll()).thenReturn(List.of(apple));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(new Offer(apple, 2, BigDecimal.valueOf(0.45))));
+
+        BigDecimal total = pricingEngine.calculateTotal(List.of(new CartItem(apple, 5)));
+
+        assertThat(total).isEqualByComparingTo("1.20");
+    }
+
+    @Test
+    void shouldRecordOfferHitsAndPricingTimeBySize() {
+        when(itemRepository.findAll()).thenReturn(List.of(apple, banana));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(new Offer(apple, 2, BigDecimal.valueOf(0.45))));
+
+        pricingEngine.calculateTotal(List.of(new CartItem(apple, 2), new CartItem(banana, 1)));
+        pricingEngine.calculateTotal(List.of(new CartItem(apple, 1)));
+
+        assertThat(registry.get("pricing.offers").tag("result", "applied").counter().count()).isEqualTo(1);
+        assertThat(registry.get("pricing.offers").tag("result", "not_applied").counter().count()).isEqualTo(1);
+        assertThat(registry.get("cart.pricing").tag("cart.size", "2-5").timer().count()).isEqualTo(1);
+        assertThat(registry.get("cart.pricing").tag("cart.size", "1").timer().count()).isEqualTo(1);
+        assertThat(registry.get("cart.size").summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldPickCheapestCombinationOfTiers() {
+        when(itemRepository.findAll()).thenReturn(List.of(apple));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(
+                new Offer(apple, 3, BigDecimal.valueOf(0.75)),
+                new Offer(apple, 4, BigDecimal.valueOf(0.96))));
+
+        BigDecimal total = pricingEngine.calculateTotal(List.of(new CartItem(apple, 6)));
+
+        // Two groups of 3 beat the cheaper-per-unit group of 4 plus two singles
+        assertThat(total).isEqualByComparingTo("1.50");
+    }
+
+    @Test
+    void shouldApplyBuyOneGetOneFree() {
+        Offer bogof = new Offer(OfferType.BUY_X_GET_Y, banana, 1, null);
+        bogof.setFreeQuantity(1);
+        when(itemRepository.findAll()).thenReturn(List.of(banana));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(bogof));
+
+        BigDecimal total = pricingEngine.calculateTotal(List.of(new CartItem(banana, 3)));
+
+        assertThat(total).isEqualByComparingTo("1.00");
+    }
+
+    @Test
+    void shouldApplyPercentageOff() {
+        Offer tenPercent = new Offer(OfferType.PERCENT_OFF, apple, 0, null);
+        tenPercent.setPercentOff(BigDecimal.TEN);
+        when(itemRepository.findAll()).thenReturn(List.of(apple));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(tenPercent));
+
+        BigDecimal total = pricingEngine.calculateTotal(List.of(new CartItem(apple, 3)));
+
+        assertThat(total).isEqualByComparingTo("0.81");
+    }
+
+    @Test
+    void shouldApplyCrossItemBundle() {
+        Offer bundle = new Offer(OfferType.BUNDLE, apple, 1, BigDecimal.valueOf(0.70));
+        bundle.setBundleItems(List.of(banana));
+        when(itemRepository.findAll()).thenReturn(List.of(apple, banana));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(bundle));
+
+        BigDecimal total = pricingEngine.calculateTotal(List.of(new CartItem(apple, 2), new CartItem(banana, 1)));
+
+        assertThat(total).isEqualByComparingTo("1.00");
+    }
+
+    @Test
+    void shouldReuseCatalogUntilInvalidated() {
+        when(itemRepository.findAll()).thenReturn(List.of(apple));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of());
+
+        pricingEngine.calculateTotal(List.of(new CartItem(apple, 1)));
+        pricingEngine.calculateTotal(List.of(new CartItem(apple, 2)));
+        verify(itemRepository, times(1)).findAll();
+
+        Item repriced = new Item("Apple", BigDecimal.valueOf(0.40));
+        repriced.setId(1L);
+        when(itemRepository.findAll()).thenReturn(List.of(repriced));
+        pricingEngine.invalidate();
+
+        BigDecimal total = pricingEngine.calculateTotal(List.of(new CartItem(apple, 2)));
+
+        assertThat(total).isEqualByComparingTo("0.80");
+        verify(itemRepository, times(2)).findAll();
+    }
+
+    @Test
+    void shouldPriceFromSnapshotWhenEntityChangesAndIdsAreSparse() {
+        Item melon = new Item("Melon", BigDecimal.valueOf(2.00));
+        melon.setId(1_000_000L);
+        when(itemRepository.findAll()).thenReturn(List.of(apple, melon));
+        when(offerRepository.findAllWithBundleItems()).thenReturn(List.of(new Offer(melon, 2, BigDecimal.valueOf(3.00))));
+        pricingEngine.getCatalog();
+
+        // The snapshot is detached from the entities it was built from
+        melon.setUnitPrice(BigDecimal.valueOf(9.99));
+        BigDecimal total = pricingEngine.calculateTotal(List.of(new CartItem(apple, 1), new CartItem(melon, 3)));
+
+        assertThat(total).isEqualByComparingTo("5.30");
+        assertThat(pricingEngine.getCatalog().size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,182 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.domain.Offer;
+import com.checkoutkata.dto.ScanRequest;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OfferRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class ReactiveCartServiceTest {
+
+    private static final String CART_ID = "reactive-test";
+
+    @Autowired
+    private ReactiveCartService reactiveCartService;
+    @Autowired
+    private ReactiveCatalogService reactiveCatalogService;
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private OfferRepository offerRepository;
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    private Item lemon;
+    private Offer lemonOffer;
+
+    @BeforeEach
+    void setUp() {
+        lemon = itemRepository.save(new Item("Reactive Lemon", new BigDecimal("0.40")));
+        lemonOffer = offerRepository.save(new Offer(lemon, 3, new BigDecimal("1.00")));
+        pricingEngine.invalidate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartService.clearCart(CART_ID);
+        offerRepository.deleteById(lemonOffer.getId());
+        itemRepository.deleteById(lemon.getId());
+        pricingEngine.invalidate();
+    }
+
+    @Test
+    void addToCart_ShouldShareCartsAndPricingWithBlockingService() {
+        // Seed the running total of the blocking service first
+        assertThat(cartService.calculateTotal(CART_ID)).isEqualByComparingTo("0");
+
+        StepVerifier.create(reactiveCartService.addToCart(CART_ID, lemon.getId()))
+                .assertNext(cartItem -> assertThat(cartItem.getQuantity()).isEqualTo(1))
+                .verifyComplete();
+        StepVerifier.create(reactiveCartService.addToCart(CART_ID, List.of(new ScanRequest(lemon.getId(), 3))))
+                .assertNext(summary -> assertThat(summary.total()).isEqualByComparingTo("1.40"))
+                .verifyComplete();
+
+        assertThat(cartService.getCartContents(CART_ID)).singleElement()
+                .extracting(CartItem::getQuantity).isEqualTo(4);
+        assertThat(cartService.calculateTotal(CART_ID)).isEqualByComparingTo("1.40");
+
+        cartService.addToCart(CART_ID, lemon.getId());
+        StepVerifier.create(reactiveCartService.calculateTotal(CART_ID))
+                .assertNext(total -> assertThat(total).isEqualByComparingTo("1.80"))
+                .verifyComplete();
+    }
+
+    @Test
+    void addToCart_ShouldRejectBatchWithUnknownItemWithoutWriting() {
+        StepVerifier.create(reactiveCartService.addToCart(CART_ID,
+                        List.of(new ScanRequest(lemon.getId(), 1), new ScanRequest(Long.MAX_VALUE, 1))))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        StepVerifier.create(reactiveCartService.getCartContents(CART_ID)).verifyComplete();
+    }
+
+    @Test
+    void addToCart_ShouldRejectOverflowingQuantityWithoutWriting() {
+        reactiveCartService.addToCart(CART_ID, List.of(new ScanRequest(lemon.getId(), Integer.MAX_VALUE))).block();
+
+        StepVerifier.create(reactiveCartService.addToCart(CART_ID, lemon.getId()))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        assertThrows(IllegalArgumentException.class, () ->
+                cartService.addToCart(CART_ID, List.of(new ScanRequest(lemon.getId(), 1))));
+
+        assertThat(cartService.getCartContents(CART_ID)).singleElement()
+                .extracting(CartItem::getQuantity).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    void deleteCartItemByQuantity_ShouldRemoveLineWhenQuantityReachesZero() {
+        reactiveCartService.addToCart(CART_ID, List.of(new ScanRequest(lemon.getId(), 2))).block();
+
+        StepVerifier.create(reactiveCartService.deleteCartItemByQuantity(CART_ID, lemon.getId(), 1))
+                .assertNext(cartItem -> assertThat(cartItem.getQuantity()).isEqualTo(1))
+                .verifyComplete();
+        StepVerifier.create(reactiveCartService.deleteCartItemByQuantity(CART_ID, lemon.getId(), 1))
+                .verifyComplete();
+        StepVerifier.create(reactiveCartService.deleteCartItemByQuantity(CART_ID, lemon.getId(), 1))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    @Test
+    void addToCart_ShouldNotLoseScansMixedWithBlockingBatches() throws Exception {
+        int rounds = 200;
+        // Seed the running total so blocking scans update it while reactive scans invalidate it
+        assertThat(cartService.calculateTotal(CART_ID)).isEqualByComparingTo("0");
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < rounds; i++) {
+                futures.add(executor.submit(() -> cartService.addToCart(CART_ID,
+                        List.of(new ScanRequest(lemon.getId(), 1), new ScanRequest(lemon.getId(), 1)))));
+                futures.add(executor.submit(() -> reactiveCartService.addToCart(CART_ID, lemon.getId()).block()));
+                futures.add(executor.submit(() -> cartService.addToCart(CART_ID, lemon.getId())));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<CartItem> lines = cartService.getCartContents(CART_ID);
+        assertThat(lines).singleElement().extracting(CartItem::getQuantity).isEqualTo(rounds * 4);
+        assertThat(cartService.calculateTotal(CART_ID)).isEqualByComparingTo(pricingEngine.calculateTotal(lines));
+    }
+
+    @Test
+    void updatePrice_ShouldRepriceCartsLikeBlockingApi() {
+        reactiveCartService.addToCart(CART_ID, List.of(new ScanRequest(lemon.getId(), 1))).block();
+
+        StepVerifier.create(reactiveCatalogService.updatePrice(lemon.getId(), new BigDecimal("0.50")))
+                .assertNext(item -> assertThat(item.getUnitPrice()).isEqualByComparingTo("0.50"))
+                .verifyComplete();
+
+        StepVerifier.create(reactiveCartService.calculateTotal(CART_ID))
+                .assertNext(total -> assertThat(total).isEqualByComparingTo("0.50"))
+                .verifyComplete();
+        StepVerifier.create(reactiveCartService.calculateTotal(CART_ID, Instant.now().plusSeconds(3600)))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    @Test
+    void streamItems_ShouldEmitOnlyRequestedItems() {
+        StepVerifier.create(reactiveCatalogService.streamItems(), 2)
+                .expectNextCount(2)
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenRequest(1)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+
+        StepVerifier.create(reactiveCatalogService.getOffersPage(lemonOffer.getId() - 1, 1))
+                .assertNext(page -> assertThat(page.content()).singleElement()
+                        .satisfies(offer -> assertThat(offer.getItem().getName()).isEqualTo("Reactive Lemon")))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,205 @@
+package com.checkoutkata.service;
+
+import com.checkoutkata.domain.CartItem;
+import com.checkoutkata.domain.Item;
+import com.checkoutkata.dto.Receipt;
+import com.checkoutkata.repository.CartItemRepository;
+import com.checkoutkata.repository.ItemRepository;
+import com.checkoutkata.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"cart.store=memory", "cart.write-behind.flush-interval=1h"})
+public class WriteBehindCartServiceTest {
+
+    private static final String CART_ID = "write-behind-cart";
+
+    @Autowired
+    private CartOperations cartService;
+    @Autowired
+    private MemoryCartStore cartStore;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectProvider<ReactiveCartService> reactiveCartService;
+
+    private Item apple;
+    private Item pear;
+
+    @BeforeEach
+    void setUp() {
+        apple = itemRepository.save(new Item("Write-behind Apple", BigDecimal.valueOf(0.30)));
+        pear = itemRepository.save(new Item("Write-behind Pear", BigDecimal.valueOf(0.45)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartService.clearCart(CART_ID);
+        cartStore.flush();
+        itemRepository.deleteAll(List.of(apple, pear));
+    }
+
+    @Test
+    void scansShouldBeServedFromMemoryAndWrittenOnFlush() {
+        assertThat(cartService).isInstanceOf(WriteBehindCartService.class);
+        // Would write cart lines behind the back of the in-memory carts
+        assertThat(reactiveCartService.getIfAvailable()).isNull();
+        for (int i = 0; i < 5; i++) {
+            cartService.addToCart(CART_ID, apple.getId());
+        }
+        cartService.addToCart(CART_ID, pear.getId());
+        cartService.deleteCartItemByQuantity(CART_ID, pear.getId(), 1);
+
+        assertThat(cartService.getCartContents(CART_ID)).extracting(CartItem::getQuantity).containsExactly(5);
+        assertThat(cartService.calculateTotal(CART_ID)).isEqualByComparingTo("1.50");
+        assertThat(cartItemRepository.findByCartId(CART_ID)).isEmpty();
+        assertThat(cartStore.pendingCarts()).isEqualTo(1);
+
+        assertThat(cartStore.flush()).isTrue();
+
+        List<CartItem> persisted = cartItemRepository.findByCartId(CART_ID);
+        assertThat(persisted).hasSize(1);
+        assertThat(persisted.get(0).getItem().getId()).isEqualTo(apple.getId());
+        assertThat(persisted.get(0).getQuantity()).isEqualTo(5);
+        assertThat(cartStore.pendingCarts()).isZero();
+    }
+
+    @Test
+    void checkoutShouldRecordOrderBeforeClearingCart() {
+        cartService.addToCart(CART_ID, apple.getId());
+        cartService.addToCart(CART_ID, pear.getId());
+        cartStore.flush();
+
+        Receipt receipt = cartService.checkout(CART_ID);
+
+        assertThat(receipt.orderId()).isNotNull();
+        assertThat(receipt.total()).isEqualByComparingTo("0.75");
+        assertThat(orderRepository.existsById(receipt.orderId())).isTrue();
+        assertThat(cartService.getCartContents(CART_ID)).isEmpty();
+        cartStore.flush();
+        assertThat(cartItemRepository.findByCartId(CART_ID)).isEmpty();
+    }
+
+    @Test
+    void checkoutShouldDeletePersistedLinesBeforeReturning() {
+        cartService.addToCart(CART_ID, apple.getId());
+        cartStore.flush();
+        // Still pending when checking out
+        cartService.addToCart(CART_ID, pear.getId());
+
+        cartService.checkout(CART_ID);
+
+        assertThat(cartItemRepository.findByCartId(CART_ID)).isEmpty();
+        assertThat(cartStore.flush()).isTrue();
+        assertThat(cartItemRepository.findByCartId(CART_ID)).isEmpty();
+    }
+
+    @Test
+    void flushedCartShouldBeRecoveredByNewStore() {
+        cartService.addToCart(CART_ID, apple.getId());
+        cartService.addToCart(CART_ID, pear.getId());
+        cartService.addToCart(CART_ID, pear.getId());
+        cartStore.flush();
+        cartService.deleteCartItem(CART_ID, apple.getId());
+        cartStore.flush();
+
+        MemoryCartStore restarted = newStore(Optional.empty());
+        List<CartItem> recovered = restarted.withCart(CART_ID, MemoryCartStore.Cart::lines);
+
+        assertThat(recovered).hasSize(1);
+        assertThat(recovered.get(0).getItem().getId()).isEqualTo(pear.getId());
+        assertThat(recovered.get(0).getQuantity()).isEqualTo(2);
+    }
+
+    @Test
+    void unflushedChangesShouldBeRecoveredFromJournal(@TempDir Path journalDirectory) throws IOException {
+        String cartId = "journal-cart";
+        CartJournal journal = new CartJournal(journalDirectory, DataSize.ofMegabytes(1), 0);
+        MemoryCartStore crashed = newStore(Optional.of(journal));
+        crashed.recover();
+        crashed.withCart(cartId, cart -> cart.add(apple, 3));
+        crashed.withCart(cartId, cart -> cart.add(pear, 1));
+        crashed.withCart(cartId, cart -> cart.remove(pear.getId()));
+        journal.close();
+
+        MemoryCartStore restarted = newStore(Optional.of(new CartJournal(journalDirectory, DataSize.ofMegabytes(1), 0)));
+        restarted.start();
+        restarted.recover();
+        try {
+            List<CartItem> recovered = restarted.withCart(cartId, MemoryCartStore.Cart::lines);
+            assertThat(cartItemRepository.findByCartId(cartId)).isEmpty();
+            assertThat(recovered).extracting(line -> line.getItem().getId()).containsExactly(apple.getId());
+            assertThat(recovered.get(0).getQuantity()).isEqualTo(3);
+        } finally {
+            restarted.stop();
+            cartItemRepository.deleteAll(cartItemRepository.findByCartId(cartId));
+        }
+    }
+
+    @Test
+    void failingCartShouldBeParkedWithoutHoldingBackOthers() {
+        Item discontinued = itemRepository.save(new Item("Write-behind Quince", BigDecimal.valueOf(0.90)));
+        MemoryCartStore store = newStore(Optional.empty(), Duration.ofHours(1), 1);
+        store.withCart("healthy-cart", cart -> cart.add(apple, 2));
+        store.withCart("failing-cart", cart -> cart.add(discontinued, 1));
+        // The line can no longer be inserted
+        itemRepository.delete(discontinued);
+
+        assertThat(store.flush()).isFalse();
+
+        assertThat(cartItemRepository.findByCartId("healthy-cart")).extracting(CartItem::getQuantity).containsExactly(2);
+        assertThat(store.pendingCarts()).isZero();
+        assertThat(store.parkedCarts()).isEqualTo(1);
+        store.withCart("failing-cart", cart -> cart.remove(discontinued.getId()));
+        assertThat(store.parkedCarts()).isZero();
+        assertThat(store.flush()).isTrue();
+        cartItemRepository.deleteAll(cartItemRepository.findByCartId("healthy-cart"));
+    }
+
+    @Test
+    void idleWrittenCartsShouldBeEvictedAndReloaded() {
+        MemoryCartStore store = newStore(Optional.empty(), Duration.ofNanos(1), 5);
+        store.withCart("idle-cart", cart -> cart.add(pear, 3));
+
+        assertThat(store.evictIdle()).isZero();
+        store.flush();
+        assertThat(store.evictIdle()).isEqualTo(1);
+
+        assertThat(store.withCart("idle-cart", MemoryCartStore.Cart::lines))
+                .extracting(CartItem::getQuantity).containsExactly(3);
+        cartItemRepository.deleteAll(cartItemRepository.findByCartId("idle-cart"));
+    }
+
+    private MemoryCartStore newStore(Optional<CartJournal> journal) {
+        return newStore(journal, Duration.ofHours(1), 5);
+    }
+
+    private MemoryCartStore newStore(Optional<CartJournal> journal, Duration idleTimeout, int maxWriteAttempts) {
+        return new MemoryCartStore(cartItemRepository, itemRepository, transactionManager,
+                new SimpleMeterRegistry(), journal, Duration.ofHours(1), 100, Duration.ofHours(1),
+                idleTimeout, maxWriteAttempts);
+    }
+}
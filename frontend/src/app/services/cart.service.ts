@@ -1,9 +1,10 @@
 import { HttpClient } from '@angular/common/http';
-import { Injectable, signal } from '@angular/core';
+import { Injectable, OnDestroy, signal } from '@angular/core';
 import { environment } from '../../environments/environment';
 
 export interface CartItem {
-  id: number;
+  /** Unset for lines of in-memory carts not yet written to the database. */
+  id?: number;
   item: {
     id: number;
     name: string;
@@ -12,18 +13,84 @@ export interface CartItem {
   quantity: number;
 }
 
+/** Change of the cart pushed by the backend, see CartUpdate on the server. */
+interface CartUpdate {
+  type: 'SNAPSHOT' | 'CHANGE' | 'RESYNC';
+  cartId: string;
+  lines: {
+    id: number | null;
+    itemId: number;
+    item: CartItem['item'] | null;
+    quantity: number;
+  }[];
+  total: number | null;
+}
+
 @Injectable({
   providedIn: 'root'
 })
-export class CartService {
+export class CartService implements OnDestroy {
   private readonly apiUrl = `${environment.apiUrl}/cart`;
+  private updates?: EventSource;
 
   readonly items = signal<CartItem[]>([]);
   readonly total = signal(0);
   readonly error = signal<string | null>(null);
 
   constructor(private http: HttpClient) {
-    this.loadCart();
+    if (typeof EventSource === 'undefined') {
+      this.loadCart();
+    } else {
+      this.subscribeToUpdates();
+    }
+  }
+
+  ngOnDestroy(): void {
+    this.updates?.close();
+  }
+
+  /**
+   * Follows the cart through server-sent events instead of re-fetching it after
+   * every change. The stream starts with a snapshot and EventSource reconnects
+   * on its own, receiving a fresh snapshot each time. If the browser gives up
+   * reconnecting, the cart is loaded once and then after every change.
+   */
+  private subscribeToUpdates(): void {
+    const updates = new EventSource(`${this.apiUrl}/updates`);
+    this.updates = updates;
+    const apply = (event: MessageEvent<string>) => this.applyUpdate(JSON.parse(event.data));
+    for (const type of ['SNAPSHOT', 'CHANGE', 'RESYNC']) {
+      updates.addEventListener(type, apply);
+    }
+    updates.onerror = () => {
+      if (updates.readyState === EventSource.CLOSED) {
+        this.updates = undefined;
+        this.loadCart();
+      }
+    };
+  }
+
+  private applyUpdate(update: CartUpdate): void {
+    if (update.type === 'RESYNC') {
+      this.loadCart();
+      return;
+    }
+    const items = update.type === 'SNAPSHOT' ? [] : [...this.items()];
+    for (const line of update.lines) {
+      const index = items.findIndex(cartItem => cartItem.item.id === line.itemId);
+      if (line.quantity === 0 || !line.item) {
+        if (index >= 0) {
+          items.splice(index, 1);
+        }
+      } else if (index >= 0) {
+        items[index] = { ...items[index], quantity: line.quantity };
+      } else {
+        items.push({ id: line.id ?? undefined, item: line.item, quantity: line.quantity });
+      }
+    }
+    this.items.set(items);
+    this.total.set(update.total ?? 0);
+    this.error.set(null);
   }
 
   private loadCart(): void {
@@ -34,10 +101,7 @@ export class CartService {
   scanItem(id: number): void {
     this.http.post<CartItem>(`${this.apiUrl}/scan/${id}`, {})
       .subscribe({
-        next: () => {
-          this.getCartContents();
-          this.getCartTotal();
-        },
+        next: () => this.refreshUnlessStreamed(),
         error: () => this.error.set('Failed to scan item')
       });
   }
@@ -62,10 +126,7 @@ export class CartService {
     this.http.put<CartItem | null>(`${this.apiUrl}/items/${id}/decrease`, null, {
       params: { quantity: quantity.toString() }
     }).subscribe({
-      next: () => {
-        this.getCartContents();
-        this.getCartTotal();
-      },
+      next: () => this.refreshUnlessStreamed(),
       error: () => this.error.set('Failed to decrease item quantity')
     });
   }
@@ -73,14 +134,17 @@ export class CartService {
   removeItem(id: number): void {
     this.http.delete(`${this.apiUrl}/items/${id}`)
       .subscribe({
-        next: () => {
-          this.getCartContents();
-          this.getCartTotal();
-        },
+        next: () => this.refreshUnlessStreamed(),
         error: () => this.error.set('Failed to remove item')
       });
   }
 
+  private refreshUnlessStreamed(): void {
+    if (!this.updates) {
+      this.loadCart();
+    }
+  }
+
   clearCart(): void {
     this.http.delete(this.apiUrl)
       .subscribe({